@@ -0,0 +1,158 @@
+package com.gmail.vitortorreao.math;
+
+/**
+ * This class implements the view frustum of a camera: the six planes
+ * which bound what it sees. They are taken from the
+ * <code>Matrix4</code> which projects the scene, as described by Gribb
+ * and Hartmann, so that the frustum is exactly the volume OpenGL draws.
+ * <p>
+ * Axis-aligned boxes are tested against it by the corners of the box
+ * furthest along and against the normal of each plane, six plane tests
+ * in all, so a box can be found outside which still crosses the
+ * frustum's corners. That only costs drawing a bit more than needed.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public final class Frustum {
+
+	/**
+	 * A box entirely outside of the frustum
+	 */
+	public static final int OUTSIDE = 0;
+
+	/**
+	 * A box which crosses the sides of the frustum
+	 */
+	public static final int INTERSECTS = 1;
+
+	/**
+	 * A box entirely inside of the frustum
+	 */
+	public static final int INSIDE = 2;
+
+	/**
+	 * The planes a, b, c and d, one after the other, such that the
+	 * points (x, y, z) inside have ax + by + cz + d &gt;= 0 for all of them
+	 */
+	private final double[] planes = new double[24];
+
+	/**
+	 * Instantiates the <code>Frustum</code> of a projection.
+	 * @param viewProjection	The <code>Matrix4</code> which takes points
+	 * 							of the scene to the view volume, from -1
+	 * 							to 1 on every axis
+	 */
+	public Frustum(Matrix4 viewProjection) {
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 4; j++) {
+				double w = viewProjection.get(3, j);
+				double m = viewProjection.get(i, j);
+				//Left, bottom and near, then right, top and far
+				planes[8*i + j] = w + m;
+				planes[8*i + 4 + j] = w - m;
+			}
+		}
+	}
+
+	/**
+	 * Instantiates the <code>Frustum</code> of a perspective seen from an
+	 * eye, with the parameters of <code>gluPerspective</code> and
+	 * <code>gluLookAt</code>.
+	 * @param fovy		The field of view, in degrees, in the y direction
+	 * @param aspect	The width of the view divided by its height
+	 * @param near		The distance from the eye to the near plane
+	 * @param far		The distance from the eye to the far plane
+	 * @param eyex		The x coordinate of the eye
+	 * @param eyey		The y coordinate of the eye
+	 * @param eyez		The z coordinate of the eye
+	 * @param centerx	The x coordinate of the point looked at
+	 * @param centery	The y coordinate of the point looked at
+	 * @param centerz	The z coordinate of the point looked at
+	 * @param upx		The x coordinate of the up direction
+	 * @param upy		The y coordinate of the up direction
+	 * @param upz		The z coordinate of the up direction
+	 * @return the <code>Frustum</code>
+	 */
+	public static Frustum perspective(double fovy, double aspect,
+			double near, double far, double eyex, double eyey, double eyez,
+			double centerx, double centery, double centerz,
+			double upx, double upy, double upz) {
+		return new Frustum(Matrix4.perspective(fovy, aspect, near, far).mult(
+				Matrix4.lookAt(eyex, eyey, eyez, centerx, centery, centerz,
+						upx, upy, upz)));
+	}
+
+	/**
+	 * Tells where an axis-aligned box is relative to this
+	 * <code>Frustum</code>.
+	 * @param minX	The smallest x coordinate of the box
+	 * @param minY	The smallest y coordinate of the box
+	 * @param minZ	The smallest z coordinate of the box
+	 * @param maxX	The largest x coordinate of the box
+	 * @param maxY	The largest y coordinate of the box
+	 * @param maxZ	The largest z coordinate of the box
+	 * @return	{@link #OUTSIDE}, {@link #INTERSECTS} or {@link #INSIDE}
+	 */
+	public int classify(double minX, double minY, double minZ,
+			double maxX, double maxY, double maxZ) {
+		int result = INSIDE;
+		for (int p = 0; p < 24; p += 4) {
+			double a = planes[p];
+			double b = planes[p+1];
+			double c = planes[p+2];
+			double d = planes[p+3];
+			//The corner furthest along the normal of the plane
+			double far = a*(a > 0 ? maxX : minX) + b*(b > 0 ? maxY : minY)
+					+ c*(c > 0 ? maxZ : minZ) + d;
+			if (far < 0) {
+				return OUTSIDE;
+			}
+			//And the one furthest against it
+			double near = a*(a > 0 ? minX : maxX) + b*(b > 0 ? minY : maxY)
+					+ c*(c > 0 ? minZ : maxZ) + d;
+			if (near < 0) {
+				result = INTERSECTS;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tells where the bounds of a part of the scene are relative to this
+	 * <code>Frustum</code>.
+	 * @param min	The corner of the bounds with the smallest coordinates
+	 * @param max	The corner of the bounds with the largest coordinates
+	 * @return	{@link #OUTSIDE}, {@link #INTERSECTS} or {@link #INSIDE}
+	 */
+	public int classify(Vertex min, Vertex max) {
+		return classify(min.getCoord(0), min.getCoord(1), min.getCoord(2),
+				max.getCoord(0), max.getCoord(1), max.getCoord(2));
+	}
+
+	/**
+	 * This function is only used for testing
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		//An eye at (0, 0, 10) looking at the origin, 90 degrees wide
+		Frustum f = perspective(90, 1, 1, 100, 0, 0, 10, 0, 0, 0, 0, 1, 0);
+		System.out.println("Origin: "+f.classify(-1, -1, -1, 1, 1, 1));
+		System.out.println("Behind the eye: "
+				+f.classify(-1, -1, 11, 1, 1, 12));
+		System.out.println("Beyond the far plane: "
+				+f.classify(-1, -1, -100, 1, 1, -95));
+		System.out.println("Off to the side: "
+				+f.classify(20, -1, -1, 22, 1, 1));
+		System.out.println("Across the left side: "
+				+f.classify(-15, -1, -1, -5, 1, 1));
+	}
+
+}
@@ -129,10 +129,18 @@ public class Matrix {
 	 * @return The resulting <code>Vector</code>
 	 */
 	public Vector mult(Vector v) {
-		double[] ds = new double[v.getDimension()];
-		Matrix m = this.mult(v.toMatrix());
-		for (int i = 0; i < m.getNumRows(); i++) {
-			ds[i] = m.get(i, 0);
+		if (this.numColumns != v.getDimension()) {
+			throw new IllegalArgumentException(
+					"matrix is "+this.numRows+"x"+this.numColumns+
+					" while vector is of dimension "+v.getDimension());
+		}
+		double[] ds = new double[this.numRows];
+		for (int i = 0; i < this.numRows; i++) {
+			double sum = 0;
+			for (int k = 0; k < this.numColumns; k++) {
+				sum += array[(i*this.numColumns)+k] * v.get(k);
+			}
+			ds[i] = sum;
 		}
 		return new Vector(ds);
 	}
@@ -154,17 +162,27 @@ public class Matrix {
 	
 	/**
 	 * Inverts this <code>Matrix</code>.<br />
-	 * This implementation currently only inverts 2x2 Matrices.
+	 * This implementation inverts 2x2, 3x3 and 4x4 Matrices, the latter
+	 * two through {@link Matrix3} and {@link Matrix4}.
 	 * @return The inverted <code>Matrix</code>
 	 */
 	public Matrix inverse() {
-		if(this.getNumColumns() != this.getNumRows() &&
-				this.getNumRows() != 2) {
+		if (this.getNumColumns() != this.getNumRows()) {
+			throw new IllegalArgumentException("Only square matrices "
+					+ "have an inverse");
+		}
+		if (this.getNumRows() == 3) {
+			return Matrix3.fromMatrix(this).inverse().toMatrix();
+		}
+		if (this.getNumRows() == 4) {
+			return Matrix4.fromMatrix(this).inverse().toMatrix();
+		}
+		if (this.getNumRows() != 2) {
 			/* It can be computed, of course,
 			 * but it is outside the scope of this program 
 			 */
-			throw new IllegalArgumentException("The only implemented inverse"
-					+ " in this program is for 2x2 matrices");
+			throw new IllegalArgumentException("The only implemented inverses"
+					+ " in this program are for 2x2, 3x3 and 4x4 matrices");
 		}
 		double[] inv = new double[4];
 		double determinant =	(this.get(0, 0)*this.get(1, 1)) -
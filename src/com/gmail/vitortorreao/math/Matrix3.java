@@ -0,0 +1,240 @@
+package com.gmail.vitortorreao.math;
+
+/**
+ * This class implements an immutable 3x3 <code>Matrix</code>. Unlike
+ * <code>Matrix</code>, its elements are final fields and its operations
+ * are written out element by element, with no loops and no bounds
+ * checks, so it is suited to transforming many vectors, such as the
+ * change of base of every vertex to the view of a <code>Camera</code>.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public final class Matrix3 {
+
+	/**
+	 * The identity <code>Matrix3</code>
+	 */
+	public static final Matrix3 IDENTITY = new Matrix3(
+			1, 0, 0,
+			0, 1, 0,
+			0, 0, 1);
+
+	private final double m00, m01, m02;
+	private final double m10, m11, m12;
+	private final double m20, m21, m22;
+
+	/**
+	 * Instantiates a <code>Matrix3</code> from its elements, row by row.
+	 */
+	public Matrix3(
+			double m00, double m01, double m02,
+			double m10, double m11, double m12,
+			double m20, double m21, double m22) {
+		this.m00 = m00;
+		this.m01 = m01;
+		this.m02 = m02;
+		this.m10 = m10;
+		this.m11 = m11;
+		this.m12 = m12;
+		this.m20 = m20;
+		this.m21 = m21;
+		this.m22 = m22;
+	}
+
+	/**
+	 * Instantiates a <code>Matrix3</code> with the elements of a
+	 * <code>Matrix</code>, such as {@link
+	 * com.gmail.vitortorreao.scene.Camera#getToViewBase()}.
+	 * @param m The <code>Matrix</code>, which must be 3x3
+	 * @return the <code>Matrix3</code>
+	 */
+	public static Matrix3 fromMatrix(Matrix m) {
+		if (m.getNumRows() != 3 || m.getNumColumns() != 3) {
+			throw new IllegalArgumentException("Matrix must be 3x3, but is "
+					+m.getNumRows()+"x"+m.getNumColumns());
+		}
+		return new Matrix3(
+				m.get(0, 0), m.get(0, 1), m.get(0, 2),
+				m.get(1, 0), m.get(1, 1), m.get(1, 2),
+				m.get(2, 0), m.get(2, 1), m.get(2, 2));
+	}
+
+	/**
+	 * Returns a <code>Matrix</code> with the elements of this
+	 * <code>Matrix3</code>.
+	 * @return the <code>Matrix</code>
+	 */
+	public Matrix toMatrix() {
+		return new Matrix(new double[] {
+				m00, m01, m02,
+				m10, m11, m12,
+				m20, m21, m22
+		}, 3, 3);
+	}
+
+	/**
+	 * Returns the element at position <i>(i,j)</i>.
+	 * @param i row index
+	 * @param j column index
+	 * @return the element
+	 */
+	public double get(int i, int j) {
+		switch (3*i + j) {
+		case 0: return m00;
+		case 1: return m01;
+		case 2: return m02;
+		case 3: return m10;
+		case 4: return m11;
+		case 5: return m12;
+		case 6: return m20;
+		case 7: return m21;
+		case 8: return m22;
+		default:
+			throw new IndexOutOfBoundsException("A Matrix3 has no element ("
+					+i+","+j+")");
+		}
+	}
+
+	/**
+	 * Multiplies this <code>Matrix3</code> by another.
+	 * @param m The other <code>Matrix3</code>, on the right
+	 * @return the product
+	 */
+	public Matrix3 mult(Matrix3 m) {
+		return new Matrix3(
+				m00*m.m00 + m01*m.m10 + m02*m.m20,
+				m00*m.m01 + m01*m.m11 + m02*m.m21,
+				m00*m.m02 + m01*m.m12 + m02*m.m22,
+				m10*m.m00 + m11*m.m10 + m12*m.m20,
+				m10*m.m01 + m11*m.m11 + m12*m.m21,
+				m10*m.m02 + m11*m.m12 + m12*m.m22,
+				m20*m.m00 + m21*m.m10 + m22*m.m20,
+				m20*m.m01 + m21*m.m11 + m22*m.m21,
+				m20*m.m02 + m21*m.m12 + m22*m.m22);
+	}
+
+	/**
+	 * Multiplies a <code>Vec3</code> by this <code>Matrix3</code>.
+	 * @param v The <code>Vec3</code>
+	 * @return the transformed <code>Vec3</code>
+	 */
+	public Vec3 mult(Vec3 v) {
+		double x = v.getX(), y = v.getY(), z = v.getZ();
+		return new Vec3(
+				m00*x + m01*y + m02*z,
+				m10*x + m11*y + m12*z,
+				m20*x + m21*y + m22*z);
+	}
+
+	/**
+	 * Multiplies a <code>MutableVec3</code> by this <code>Matrix3</code>,
+	 * in place.
+	 * @param v The <code>MutableVec3</code>
+	 * @return <code>v</code>
+	 */
+	public MutableVec3 transform(MutableVec3 v) {
+		double x = v.getX(), y = v.getY(), z = v.getZ();
+		return v.set(
+				m00*x + m01*y + m02*z,
+				m10*x + m11*y + m12*z,
+				m20*x + m21*y + m22*z);
+	}
+
+	/**
+	 * Multiplies many vectors by this <code>Matrix3</code>. The vectors
+	 * are read from and written to arrays of three coordinates per
+	 * vector, such as the positions or normals of a <code>Mesh</code>.
+	 * @param src	The vectors to transform
+	 * @param dst	The array to store the transformed vectors into, which
+	 * 				may be <code>src</code>
+	 * @param count	The number of vectors
+	 */
+	public void transform(float[] src, float[] dst, int count) {
+		for (int i = 0; i < 3*count; i += 3) {
+			double x = src[i], y = src[i+1], z = src[i+2];
+			dst[i]   = (float) (m00*x + m01*y + m02*z);
+			dst[i+1] = (float) (m10*x + m11*y + m12*z);
+			dst[i+2] = (float) (m20*x + m21*y + m22*z);
+		}
+	}
+
+	/**
+	 * Transposes this <code>Matrix3</code>.
+	 * @return the transposed <code>Matrix3</code>
+	 */
+	public Matrix3 transpose() {
+		return new Matrix3(
+				m00, m10, m20,
+				m01, m11, m21,
+				m02, m12, m22);
+	}
+
+	/**
+	 * Returns the determinant of this <code>Matrix3</code>.
+	 * @return the determinant
+	 */
+	public double determinant() {
+		return m00*(m11*m22 - m12*m21)
+				- m01*(m10*m22 - m12*m20)
+				+ m02*(m10*m21 - m11*m20);
+	}
+
+	/**
+	 * Inverts this <code>Matrix3</code>, through its adjugate.
+	 * @return the inverted <code>Matrix3</code>
+	 * @throws IllegalArgumentException If this <code>Matrix3</code> is
+	 * 			singular
+	 */
+	public Matrix3 inverse() {
+		double c00 = m11*m22 - m12*m21;
+		double c01 = m12*m20 - m10*m22;
+		double c02 = m10*m21 - m11*m20;
+		double determinant = m00*c00 + m01*c01 + m02*c02;
+		if (determinant == 0) {
+			throw new IllegalArgumentException("A singular matrix has no "
+					+ "inverse");
+		}
+		double k = 1/determinant;
+		return new Matrix3(
+				k*c00, k*(m02*m21 - m01*m22), k*(m01*m12 - m02*m11),
+				k*c01, k*(m00*m22 - m02*m20), k*(m02*m10 - m00*m12),
+				k*c02, k*(m01*m20 - m00*m21), k*(m00*m11 - m01*m10));
+	}
+
+	/**
+	 * Renders this <code>Matrix3</code> in a <code>String</code>, the same
+	 * way <code>Matrix</code> does.
+	 * @return the <code>String</code>
+	 */
+	@Override
+	public String toString() {
+		return toMatrix().toString();
+	}
+
+	//Just for testing
+	/**
+	 * This method is only used to test this Matrix3 implementation.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Matrix3 m = new Matrix3(
+				2, 0, 1,
+				1, 3, 2,
+				1, 1, 2);
+		System.out.println("Matrix = "+m);
+		System.out.println("Determinant = "+m.determinant());
+		System.out.println("Matrix * inverse = "+m.mult(m.inverse()));
+		System.out.println("Matrix * [1, 2, 3] = "
+				+m.mult(new Vec3(1, 2, 3)));
+		System.out.println("Matrix transposed = "+m.transpose());
+	}
+
+}
@@ -0,0 +1,456 @@
+package com.gmail.vitortorreao.math;
+
+/**
+ * This class implements an immutable 4x4 <code>Matrix</code>, for the
+ * homogeneous coordinates of the view and projection transformations.
+ * Like {@link Matrix3}, its elements are final fields and its operations
+ * are written out element by element.
+ * <p>
+ * The transformations built here follow the conventions of OpenGL: the
+ * view looks down the negative z axis, and the projection maps the view
+ * volume to the cube from -1 to 1 on every axis, so that projecting a
+ * point on the CPU gives the same result as drawing it with
+ * <code>gluLookAt</code> and <code>gluPerspective</code>.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public final class Matrix4 {
+
+	/**
+	 * The identity <code>Matrix4</code>
+	 */
+	public static final Matrix4 IDENTITY = new Matrix4(
+			1, 0, 0, 0,
+			0, 1, 0, 0,
+			0, 0, 1, 0,
+			0, 0, 0, 1);
+
+	private final double m00, m01, m02, m03;
+	private final double m10, m11, m12, m13;
+	private final double m20, m21, m22, m23;
+	private final double m30, m31, m32, m33;
+
+	/**
+	 * Instantiates a <code>Matrix4</code> from its elements, row by row.
+	 */
+	public Matrix4(
+			double m00, double m01, double m02, double m03,
+			double m10, double m11, double m12, double m13,
+			double m20, double m21, double m22, double m23,
+			double m30, double m31, double m32, double m33) {
+		this.m00 = m00;
+		this.m01 = m01;
+		this.m02 = m02;
+		this.m03 = m03;
+		this.m10 = m10;
+		this.m11 = m11;
+		this.m12 = m12;
+		this.m13 = m13;
+		this.m20 = m20;
+		this.m21 = m21;
+		this.m22 = m22;
+		this.m23 = m23;
+		this.m30 = m30;
+		this.m31 = m31;
+		this.m32 = m32;
+		this.m33 = m33;
+	}
+
+	/**
+	 * Instantiates a <code>Matrix4</code> with the elements of a
+	 * <code>Matrix</code>.
+	 * @param m The <code>Matrix</code>, which must be 4x4
+	 * @return the <code>Matrix4</code>
+	 */
+	public static Matrix4 fromMatrix(Matrix m) {
+		if (m.getNumRows() != 4 || m.getNumColumns() != 4) {
+			throw new IllegalArgumentException("Matrix must be 4x4, but is "
+					+m.getNumRows()+"x"+m.getNumColumns());
+		}
+		return new Matrix4(
+				m.get(0, 0), m.get(0, 1), m.get(0, 2), m.get(0, 3),
+				m.get(1, 0), m.get(1, 1), m.get(1, 2), m.get(1, 3),
+				m.get(2, 0), m.get(2, 1), m.get(2, 2), m.get(2, 3),
+				m.get(3, 0), m.get(3, 1), m.get(3, 2), m.get(3, 3));
+	}
+
+	/**
+	 * Instantiates the projection <code>Matrix4</code> of a perspective,
+	 * the same one <code>gluPerspective</code> multiplies by.
+	 * @param fovy		The field of view, in degrees, in the y direction
+	 * @param aspect	The width of the view divided by its height
+	 * @param near		The distance from the viewer to the near plane
+	 * @param far		The distance from the viewer to the far plane
+	 * @return the projection <code>Matrix4</code>
+	 */
+	public static Matrix4 perspective(double fovy, double aspect,
+			double near, double far) {
+		if (near == far || aspect == 0) {
+			throw new IllegalArgumentException("The view volume is empty");
+		}
+		double f = 1/Math.tan(Math.toRadians(fovy)/2);
+		return new Matrix4(
+				f/aspect, 0, 0, 0,
+				0, f, 0, 0,
+				0, 0, (far + near)/(near - far), 2*far*near/(near - far),
+				0, 0, -1, 0);
+	}
+
+	/**
+	 * Instantiates the view <code>Matrix4</code> of a camera, the same
+	 * one <code>gluLookAt</code> multiplies by.
+	 * @param toViewBase	The change of base to the view of the camera,
+	 * 						whose rows are its U, V and N vectors, as in
+	 * 						{@link
+	 * 						com.gmail.vitortorreao.scene.Camera#getToViewBase()}
+	 * @param eye			The focus of the camera
+	 * @return the view <code>Matrix4</code>
+	 */
+	public static Matrix4 view(Matrix3 toViewBase, Vertex eye) {
+		double ex = eye.getCoord(0), ey = eye.getCoord(1), ez = eye.getCoord(2);
+		double ux = toViewBase.get(0, 0);
+		double uy = toViewBase.get(0, 1);
+		double uz = toViewBase.get(0, 2);
+		double vx = toViewBase.get(1, 0);
+		double vy = toViewBase.get(1, 1);
+		double vz = toViewBase.get(1, 2);
+		//The camera looks along N, but OpenGL's looks down the negative z
+		double nx = -toViewBase.get(2, 0);
+		double ny = -toViewBase.get(2, 1);
+		double nz = -toViewBase.get(2, 2);
+		return new Matrix4(
+				ux, uy, uz, -(ux*ex + uy*ey + uz*ez),
+				vx, vy, vz, -(vx*ex + vy*ey + vz*ez),
+				nx, ny, nz, -(nx*ex + ny*ey + nz*ez),
+				0, 0, 0, 1);
+	}
+
+	/**
+	 * Instantiates the view <code>Matrix4</code> of an eye looking at a
+	 * point, with the same parameters as <code>gluLookAt</code> and the
+	 * same result.
+	 * @param eyex		The x coordinate of the eye
+	 * @param eyey		The y coordinate of the eye
+	 * @param eyez		The z coordinate of the eye
+	 * @param centerx	The x coordinate of the point looked at
+	 * @param centery	The y coordinate of the point looked at
+	 * @param centerz	The z coordinate of the point looked at
+	 * @param upx		The x coordinate of the up direction
+	 * @param upy		The y coordinate of the up direction
+	 * @param upz		The z coordinate of the up direction
+	 * @return the view <code>Matrix4</code>
+	 */
+	public static Matrix4 lookAt(double eyex, double eyey, double eyez,
+			double centerx, double centery, double centerz,
+			double upx, double upy, double upz) {
+		MutableVec3 f = new MutableVec3(centerx - eyex, centery - eyey,
+				centerz - eyez).normalizeInPlace();
+		MutableVec3 up = new MutableVec3(upx, upy, upz);
+		MutableVec3 s = new MutableVec3().setCross(f, up).normalizeInPlace();
+		MutableVec3 u = new MutableVec3().setCross(s, f);
+		return new Matrix4(
+				s.getX(), s.getY(), s.getZ(),
+				-(s.getX()*eyex + s.getY()*eyey + s.getZ()*eyez),
+				u.getX(), u.getY(), u.getZ(),
+				-(u.getX()*eyex + u.getY()*eyey + u.getZ()*eyez),
+				-f.getX(), -f.getY(), -f.getZ(),
+				f.getX()*eyex + f.getY()*eyey + f.getZ()*eyez,
+				0, 0, 0, 1);
+	}
+
+	/**
+	 * Instantiates the <code>Matrix4</code> which takes points of the scene
+	 * to the view volume of a camera: its projection times its view.
+	 * @param toViewBase	The change of base to the view of the camera
+	 * @param eye			The focus of the camera
+	 * @param fovy			The field of view, in degrees, in the y direction
+	 * @param aspect		The width of the view divided by its height
+	 * @param near			The distance from the camera to the near plane
+	 * @param far			The distance from the camera to the far plane
+	 * @return the view-projection <code>Matrix4</code>
+	 * @see #view(Matrix3, Vertex)
+	 * @see #perspective(double, double, double, double)
+	 */
+	public static Matrix4 viewProjection(Matrix3 toViewBase, Vertex eye,
+			double fovy, double aspect, double near, double far) {
+		return perspective(fovy, aspect, near, far).mult(view(toViewBase, eye));
+	}
+
+	/**
+	 * Returns a <code>Matrix</code> with the elements of this
+	 * <code>Matrix4</code>.
+	 * @return the <code>Matrix</code>
+	 */
+	public Matrix toMatrix() {
+		return new Matrix(new double[] {
+				m00, m01, m02, m03,
+				m10, m11, m12, m13,
+				m20, m21, m22, m23,
+				m30, m31, m32, m33
+		}, 4, 4);
+	}
+
+	/**
+	 * Returns the elements of this <code>Matrix4</code> column by column,
+	 * as <code>glLoadMatrixf</code> takes them.
+	 * @return the 16 elements
+	 */
+	public float[] toColumnMajor() {
+		return new float[] {
+				(float) m00, (float) m10, (float) m20, (float) m30,
+				(float) m01, (float) m11, (float) m21, (float) m31,
+				(float) m02, (float) m12, (float) m22, (float) m32,
+				(float) m03, (float) m13, (float) m23, (float) m33
+		};
+	}
+
+	/**
+	 * Returns the element at position <i>(i,j)</i>.
+	 * @param i row index
+	 * @param j column index
+	 * @return the element
+	 */
+	public double get(int i, int j) {
+		switch (4*i + j) {
+		case 0: return m00;
+		case 1: return m01;
+		case 2: return m02;
+		case 3: return m03;
+		case 4: return m10;
+		case 5: return m11;
+		case 6: return m12;
+		case 7: return m13;
+		case 8: return m20;
+		case 9: return m21;
+		case 10: return m22;
+		case 11: return m23;
+		case 12: return m30;
+		case 13: return m31;
+		case 14: return m32;
+		case 15: return m33;
+		default:
+			throw new IndexOutOfBoundsException("A Matrix4 has no element ("
+					+i+","+j+")");
+		}
+	}
+
+	/**
+	 * Multiplies this <code>Matrix4</code> by another.
+	 * @param m The other <code>Matrix4</code>, on the right
+	 * @return the product
+	 */
+	public Matrix4 mult(Matrix4 m) {
+		return new Matrix4(
+				m00*m.m00 + m01*m.m10 + m02*m.m20 + m03*m.m30,
+				m00*m.m01 + m01*m.m11 + m02*m.m21 + m03*m.m31,
+				m00*m.m02 + m01*m.m12 + m02*m.m22 + m03*m.m32,
+				m00*m.m03 + m01*m.m13 + m02*m.m23 + m03*m.m33,
+				m10*m.m00 + m11*m.m10 + m12*m.m20 + m13*m.m30,
+				m10*m.m01 + m11*m.m11 + m12*m.m21 + m13*m.m31,
+				m10*m.m02 + m11*m.m12 + m12*m.m22 + m13*m.m32,
+				m10*m.m03 + m11*m.m13 + m12*m.m23 + m13*m.m33,
+				m20*m.m00 + m21*m.m10 + m22*m.m20 + m23*m.m30,
+				m20*m.m01 + m21*m.m11 + m22*m.m21 + m23*m.m31,
+				m20*m.m02 + m21*m.m12 + m22*m.m22 + m23*m.m32,
+				m20*m.m03 + m21*m.m13 + m22*m.m23 + m23*m.m33,
+				m30*m.m00 + m31*m.m10 + m32*m.m20 + m33*m.m30,
+				m30*m.m01 + m31*m.m11 + m32*m.m21 + m33*m.m31,
+				m30*m.m02 + m31*m.m12 + m32*m.m22 + m33*m.m32,
+				m30*m.m03 + m31*m.m13 + m32*m.m23 + m33*m.m33);
+	}
+
+	/**
+	 * Transforms a point by this <code>Matrix4</code>, dividing by the
+	 * homogeneous coordinate.
+	 * @param p The point
+	 * @return the transformed point
+	 */
+	public Vec3 transformPoint(Vec3 p) {
+		double x = p.getX(), y = p.getY(), z = p.getZ();
+		double w = m30*x + m31*y + m32*z + m33;
+		return new Vec3(
+				(m00*x + m01*y + m02*z + m03) / w,
+				(m10*x + m11*y + m12*z + m13) / w,
+				(m20*x + m21*y + m22*z + m23) / w);
+	}
+
+	/**
+	 * Transforms many points by this <code>Matrix4</code>, dividing each by
+	 * its homogeneous coordinate. The points are read from and written to
+	 * arrays of three coordinates per point, such as the positions of a
+	 * <code>Mesh</code>, so that a whole object is projected in one call
+	 * without allocating.
+	 * <p>
+	 * With a view-projection, the points in the view volume end up between
+	 * -1 and 1 on every axis. Points behind the camera have a negative
+	 * homogeneous coordinate, so they must be told apart by their depth
+	 * before the division, for instance with a view <code>Matrix4</code>.
+	 * @param src	The points to transform
+	 * @param dst	The array to store the transformed points into, which
+	 * 				may be <code>src</code>
+	 * @param count	The number of points
+	 */
+	public void transform(float[] src, float[] dst, int count) {
+		for (int i = 0; i < 3*count; i += 3) {
+			double x = src[i], y = src[i+1], z = src[i+2];
+			double w = 1/(m30*x + m31*y + m32*z + m33);
+			dst[i]   = (float) ((m00*x + m01*y + m02*z + m03) * w);
+			dst[i+1] = (float) ((m10*x + m11*y + m12*z + m13) * w);
+			dst[i+2] = (float) ((m20*x + m21*y + m22*z + m23) * w);
+		}
+	}
+
+	/**
+	 * Transposes this <code>Matrix4</code>.
+	 * @return the transposed <code>Matrix4</code>
+	 */
+	public Matrix4 transpose() {
+		return new Matrix4(
+				m00, m10, m20, m30,
+				m01, m11, m21, m31,
+				m02, m12, m22, m32,
+				m03, m13, m23, m33);
+	}
+
+	/**
+	 * Returns the determinant of this <code>Matrix4</code>.
+	 * @return the determinant
+	 */
+	public double determinant() {
+		double s0 = m00*m11 - m10*m01;
+		double s1 = m00*m12 - m10*m02;
+		double s2 = m00*m13 - m10*m03;
+		double s3 = m01*m12 - m11*m02;
+		double s4 = m01*m13 - m11*m03;
+		double s5 = m02*m13 - m12*m03;
+		double c5 = m22*m33 - m32*m23;
+		double c4 = m21*m33 - m31*m23;
+		double c3 = m21*m32 - m31*m22;
+		double c2 = m20*m33 - m30*m23;
+		double c1 = m20*m32 - m30*m22;
+		double c0 = m20*m31 - m30*m21;
+		return s0*c5 - s1*c4 + s2*c3 + s3*c2 - s4*c1 + s5*c0;
+	}
+
+	/**
+	 * Inverts this <code>Matrix4</code>, through its adjugate. The
+	 * determinants of the 2x2 blocks of the first two rows and of the last
+	 * two are shared by all of the cofactors.
+	 * @return the inverted <code>Matrix4</code>
+	 * @throws IllegalArgumentException If this <code>Matrix4</code> is
+	 * 			singular
+	 */
+	public Matrix4 inverse() {
+		//2x2 determinants of the first two rows
+		double s0 = m00*m11 - m10*m01;
+		double s1 = m00*m12 - m10*m02;
+		double s2 = m00*m13 - m10*m03;
+		double s3 = m01*m12 - m11*m02;
+		double s4 = m01*m13 - m11*m03;
+		double s5 = m02*m13 - m12*m03;
+		//2x2 determinants of the last two rows
+		double c5 = m22*m33 - m32*m23;
+		double c4 = m21*m33 - m31*m23;
+		double c3 = m21*m32 - m31*m22;
+		double c2 = m20*m33 - m30*m23;
+		double c1 = m20*m32 - m30*m22;
+		double c0 = m20*m31 - m30*m21;
+		double determinant = s0*c5 - s1*c4 + s2*c3 + s3*c2 - s4*c1 + s5*c0;
+		if (determinant == 0) {
+			throw new IllegalArgumentException("A singular matrix has no "
+					+ "inverse");
+		}
+		double k = 1/determinant;
+		return new Matrix4(
+				k*( m11*c5 - m12*c4 + m13*c3),
+				k*(-m01*c5 + m02*c4 - m03*c3),
+				k*( m31*s5 - m32*s4 + m33*s3),
+				k*(-m21*s5 + m22*s4 - m23*s3),
+				k*(-m10*c5 + m12*c2 - m13*c1),
+				k*( m00*c5 - m02*c2 + m03*c1),
+				k*(-m30*s5 + m32*s2 - m33*s1),
+				k*( m20*s5 - m22*s2 + m23*s1),
+				k*( m10*c4 - m11*c2 + m13*c0),
+				k*(-m00*c4 + m01*c2 - m03*c0),
+				k*( m30*s4 - m31*s2 + m33*s0),
+				k*(-m20*s4 + m21*s2 - m23*s0),
+				k*(-m10*c3 + m11*c1 - m12*c0),
+				k*( m00*c3 - m01*c1 + m02*c0),
+				k*(-m30*s3 + m31*s1 - m32*s0),
+				k*( m20*s3 - m21*s1 + m22*s0));
+	}
+
+	/**
+	 * Renders this <code>Matrix4</code> in a <code>String</code>, the same
+	 * way <code>Matrix</code> does.
+	 * @return the <code>String</code>
+	 */
+	@Override
+	public String toString() {
+		return toMatrix().toString();
+	}
+
+	//Just for testing
+	/**
+	 * This method is only used to test this Matrix4 implementation.
+	 * <p>
+	 * It also projects a million points with both <code>Matrix</code> and
+	 * <code>Matrix4</code>, and prints how long each took.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Matrix4 m = new Matrix4(
+				2, 0, 1, 3,
+				1, 3, 2, 0,
+				1, 1, 1, 2,
+				0, 2, 0, 1);
+		System.out.println("Matrix = "+m);
+		System.out.println("Determinant = "+m.determinant());
+		System.out.println("Matrix * inverse = "+m.mult(m.inverse()));
+
+		//A camera at (0, 0, 10) looking at the origin
+		Matrix3 toViewBase = new Matrix3(
+				1, 0, 0,
+				0, 1, 0,
+				0, 0, -1);
+		Vertex eye = new Vertex(new double[] {0, 0, 10});
+		Matrix4 vp = viewProjection(toViewBase, eye, 90, 1, 1, 100);
+		System.out.println("Origin projected = "
+				+vp.transformPoint(Vec3.ZERO));
+		System.out.println("Near corner projected = "
+				+vp.transformPoint(new Vec3(1, 1, 9)));
+
+		int count = 1000000;
+		java.util.Random random = new java.util.Random(42);
+		float[] points = new float[3*count];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = random.nextFloat();
+		}
+		float[] projected = new float[3*count];
+		Matrix generic = vp.toMatrix();
+		for (int run = 0; run < 5; run++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 3) {
+				Vector h = generic.mult(new Vector(new double[] {
+						points[i], points[i+1], points[i+2], 1}));
+				projected[i] = (float) (h.get(0)/h.get(3));
+				projected[i+1] = (float) (h.get(1)/h.get(3));
+				projected[i+2] = (float) (h.get(2)/h.get(3));
+			}
+			long middle = System.nanoTime();
+			vp.transform(points, projected, count);
+			long end = System.nanoTime();
+			System.out.printf("Matrix: %.1f ms, Matrix4: %.1f ms%n",
+					(middle - start)/1e6, (end - middle)/1e6);
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+package com.gmail.vitortorreao.math;
+
+/**
+ * This class implements a three dimensional vector which is changed in
+ * place. It is meant to be allocated once and reused in loops, such as
+ * the ones calculating normals or moving the camera, so that they don't
+ * allocate at all. The operations change this vector and return it, so
+ * they can be chained.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public final class MutableVec3 {
+
+	private double x;
+	private double y;
+	private double z;
+
+	/**
+	 * Instantiates a <code>MutableVec3</code> whose coordinates are all 0.
+	 */
+	public MutableVec3() {
+	}
+
+	/**
+	 * Instantiates a <code>MutableVec3</code>.
+	 * @param x The first coordinate
+	 * @param y The second coordinate
+	 * @param z The third coordinate
+	 */
+	public MutableVec3(double x, double y, double z) {
+		set(x, y, z);
+	}
+
+	/**
+	 * Returns the first coordinate.
+	 * @return the first coordinate
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * Returns the second coordinate.
+	 * @return the second coordinate
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Returns the third coordinate.
+	 * @return the third coordinate
+	 */
+	public double getZ() {
+		return z;
+	}
+
+	/**
+	 * Sets the coordinates.
+	 * @param x The first coordinate
+	 * @param y The second coordinate
+	 * @param z The third coordinate
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 set(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	/**
+	 * Sets the coordinates to the ones of a <code>Vec3</code>.
+	 * @param v The <code>Vec3</code>
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 set(Vec3 v) {
+		return set(v.getX(), v.getY(), v.getZ());
+	}
+
+	/**
+	 * Sets the coordinates to the ones of a <code>Vector</code>.
+	 * @param v The <code>Vector</code>, of dimension 3
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 set(Vector v) {
+		if (v.getDimension() != 3) {
+			throw new IllegalArgumentException(
+					"Vector must be of dimension 3");
+		}
+		return set(v.get(0), v.get(1), v.get(2));
+	}
+
+	/**
+	 * Sets the coordinates to the difference of two points, the vector
+	 * from the second to the first.
+	 * @param to	The first point
+	 * @param from	The second point
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 setDifference(Vertex to, Vertex from) {
+		return set(to.getCoord(0) - from.getCoord(0),
+				to.getCoord(1) - from.getCoord(1),
+				to.getCoord(2) - from.getCoord(2));
+	}
+
+	/**
+	 * Adds some coordinates to this <code>MutableVec3</code>.
+	 * @param x The first coordinate to add
+	 * @param y The second coordinate to add
+	 * @param z The third coordinate to add
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 addInPlace(double x, double y, double z) {
+		return set(this.x + x, this.y + y, this.z + z);
+	}
+
+	/**
+	 * Adds another <code>MutableVec3</code> to this one.
+	 * @param v The other <code>MutableVec3</code>
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 addInPlace(MutableVec3 v) {
+		return addInPlace(v.x, v.y, v.z);
+	}
+
+	/**
+	 * Adds a <code>Vec3</code> to this <code>MutableVec3</code>.
+	 * @param v The <code>Vec3</code>
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 addInPlace(Vec3 v) {
+		return addInPlace(v.getX(), v.getY(), v.getZ());
+	}
+
+	/**
+	 * Subtracts another <code>MutableVec3</code> from this one.
+	 * @param v The other <code>MutableVec3</code>
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 subInPlace(MutableVec3 v) {
+		return set(x - v.x, y - v.y, z - v.z);
+	}
+
+	/**
+	 * Multiplies this <code>MutableVec3</code> by a scalar.
+	 * @param d The scalar
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 multInPlace(double d) {
+		return set(d*x, d*y, d*z);
+	}
+
+	/**
+	 * Sets this <code>MutableVec3</code> to the vector product of two
+	 * others, which may be this one.
+	 * @param a The first <code>MutableVec3</code>
+	 * @param b The second <code>MutableVec3</code>
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 setCross(MutableVec3 a, MutableVec3 b) {
+		return set(
+				(a.y*b.z) - (a.z*b.y),
+				(a.z*b.x) - (a.x*b.z),
+				(a.x*b.y) - (a.y*b.x));
+	}
+
+	/**
+	 * Returns the scalar product of this <code>MutableVec3</code> and
+	 * another.
+	 * @param v The other <code>MutableVec3</code>
+	 * @return the scalar product
+	 */
+	public double dot(MutableVec3 v) {
+		return x*v.x + y*v.y + z*v.z;
+	}
+
+	/**
+	 * Returns the norm of this <code>MutableVec3</code>.
+	 * @return the norm
+	 */
+	public double getNorm() {
+		return Math.sqrt(x*x + y*y + z*z);
+	}
+
+	/**
+	 * Normalizes this <code>MutableVec3</code>.
+	 * @return this <code>MutableVec3</code>
+	 */
+	public MutableVec3 normalizeInPlace() {
+		return normalizeInto(this);
+	}
+
+	/**
+	 * Stores the normalized version of this <code>MutableVec3</code>
+	 * into another, which may be this one.
+	 * @param out The <code>MutableVec3</code> to store the result into
+	 * @return <code>out</code>
+	 */
+	public MutableVec3 normalizeInto(MutableVec3 out) {
+		double norm = getNorm();
+		return out.set(x / norm, y / norm, z / norm);
+	}
+
+	/**
+	 * Returns an immutable copy of this <code>MutableVec3</code>.
+	 * @return the <code>Vec3</code>
+	 */
+	public Vec3 toVec3() {
+		return new Vec3(x, y, z);
+	}
+
+	/**
+	 * Returns a <code>Vector</code> with the coordinates of this
+	 * <code>MutableVec3</code>.
+	 * @return the <code>Vector</code>
+	 */
+	public Vector toVector() {
+		return new Vector(new double[] {x, y, z});
+	}
+
+	@Override
+	public String toString() {
+		return "[" + (x+0.0) + ", " + (y+0.0) + ", " + (z+0.0) + "]";
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.gmail.vitortorreao.math;
+
+/**
+ * This class implements an immutable three dimensional vector. Unlike
+ * <code>Vector</code>, it has no array: its coordinates are final
+ * fields, so short-lived <code>Vec3</code>s are often not allocated at
+ * all once the JIT compiler has inlined the methods creating them.
+ * For loops which must never allocate, see {@link MutableVec3}.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public final class Vec3 {
+
+	/**
+	 * The vector whose coordinates are all 0
+	 */
+	public static final Vec3 ZERO = new Vec3(0, 0, 0);
+
+	private final double x;
+	private final double y;
+	private final double z;
+
+	/**
+	 * Instantiates a <code>Vec3</code>.
+	 * @param x The first coordinate
+	 * @param y The second coordinate
+	 * @param z The third coordinate
+	 */
+	public Vec3(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	/**
+	 * Instantiates a <code>Vec3</code> with the coordinates of a
+	 * <code>Vector</code>.
+	 * @param v The <code>Vector</code>, of dimension 3
+	 * @return the <code>Vec3</code>
+	 */
+	public static Vec3 fromVector(Vector v) {
+		if (v.getDimension() != 3) {
+			throw new IllegalArgumentException(
+					"Vector must be of dimension 3");
+		}
+		return new Vec3(v.get(0), v.get(1), v.get(2));
+	}
+
+	/**
+	 * Instantiates a <code>Vec3</code> with the coordinates of a
+	 * <code>Vertex</code>, as the vector from the origin to it.
+	 * @param v The <code>Vertex</code>, of dimension 3
+	 * @return the <code>Vec3</code>
+	 */
+	public static Vec3 fromVertex(Vertex v) {
+		if (v.getDimension() != 3) {
+			throw new IllegalArgumentException(
+					"Vertex must be of dimension 3");
+		}
+		return new Vec3(v.getCoord(0), v.getCoord(1), v.getCoord(2));
+	}
+
+	/**
+	 * Returns the first coordinate.
+	 * @return the first coordinate
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * Returns the second coordinate.
+	 * @return the second coordinate
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Returns the third coordinate.
+	 * @return the third coordinate
+	 */
+	public double getZ() {
+		return z;
+	}
+
+	/**
+	 * Returns one of the coordinates.
+	 * @param index The coordinate, from 0 to 2
+	 * @return the coordinate
+	 */
+	public double get(int index) {
+		switch (index) {
+		case 0:
+			return x;
+		case 1:
+			return y;
+		case 2:
+			return z;
+		default:
+			throw new IndexOutOfBoundsException("A Vec3 has no coordinate "
+					+index);
+		}
+	}
+
+	/**
+	 * Returns the sum of this <code>Vec3</code> and another.
+	 * @param v The other <code>Vec3</code>
+	 * @return the sum
+	 */
+	public Vec3 add(Vec3 v) {
+		return new Vec3(x + v.x, y + v.y, z + v.z);
+	}
+
+	/**
+	 * Returns this <code>Vec3</code> minus another.
+	 * @param v The other <code>Vec3</code>
+	 * @return the difference
+	 */
+	public Vec3 sub(Vec3 v) {
+		return new Vec3(x - v.x, y - v.y, z - v.z);
+	}
+
+	/**
+	 * Returns this <code>Vec3</code> multiplied by a scalar.
+	 * @param d The scalar
+	 * @return the product
+	 */
+	public Vec3 mult(double d) {
+		return new Vec3(d*x, d*y, d*z);
+	}
+
+	/**
+	 * Returns the scalar product of this <code>Vec3</code> and another.
+	 * @param v The other <code>Vec3</code>
+	 * @return the scalar product
+	 */
+	public double dot(Vec3 v) {
+		return x*v.x + y*v.y + z*v.z;
+	}
+
+	/**
+	 * Returns the vector product of this <code>Vec3</code> and another.
+	 * @param v The other <code>Vec3</code>
+	 * @return the vector product
+	 */
+	public Vec3 cross(Vec3 v) {
+		return new Vec3(
+				(y*v.z) - (z*v.y),
+				(z*v.x) - (x*v.z),
+				(x*v.y) - (y*v.x));
+	}
+
+	/**
+	 * Returns the norm of this <code>Vec3</code>.
+	 * @return the norm
+	 */
+	public double getNorm() {
+		return Math.sqrt(x*x + y*y + z*z);
+	}
+
+	/**
+	 * Returns the normalized version of this <code>Vec3</code>.
+	 * @return the normalized <code>Vec3</code>
+	 */
+	public Vec3 normalize() {
+		double norm = getNorm();
+		return new Vec3(x / norm, y / norm, z / norm);
+	}
+
+	/**
+	 * Stores the normalized version of this <code>Vec3</code> into a
+	 * <code>MutableVec3</code>, without allocating.
+	 * @param out The <code>MutableVec3</code> to store the result into
+	 * @return <code>out</code>
+	 */
+	public MutableVec3 normalizeInto(MutableVec3 out) {
+		double norm = getNorm();
+		return out.set(x / norm, y / norm, z / norm);
+	}
+
+	/**
+	 * Returns a <code>Vector</code> with the coordinates of this
+	 * <code>Vec3</code>.
+	 * @return the <code>Vector</code>
+	 */
+	public Vector toVector() {
+		return new Vector(new double[] {x, y, z});
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Vec3)) {
+			return false;
+		}
+		Vec3 v = (Vec3) o;
+		return x == v.x && y == v.y && z == v.z;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash(hash(hash(1, x), y), z);
+	}
+
+	/**
+	 * Combines the hash of the coordinates before one with it, the same
+	 * way <code>Vertex</code> does.
+	 * @param hash	The hash of the coordinates before
+	 * @param coord	The coordinate
+	 * @return the combined hash
+	 */
+	private static int hash(int hash, double coord) {
+		//0.0 and -0.0 are equal, so they must hash the same
+		long bits = Double.doubleToLongBits(coord + 0.0);
+		return 31*hash + (int) (bits ^ (bits >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "[" + (x+0.0) + ", " + (y+0.0) + ", " + (z+0.0) + "]";
+	}
+
+}
@@ -177,7 +177,7 @@ public class Vector {
 	public double getNorm() {
 		double d = 0.0;
 		for(int i = 0; i < getDimension(); i++) {
-			d += Math.pow(get(i), 2);
+			d += array[i]*array[i];
 		}
 		return Math.sqrt(d);
 	}
@@ -195,6 +195,16 @@ public class Vector {
 		return new Vector(ds);
 	}
 	
+	/**
+	 * Returns a <code>Vec3</code> with the coordinates of this 
+	 * <code>Vector</code>, which must be of dimension 3.
+	 * @return the <code>Vec3</code>
+	 * @see Vec3#fromVector(Vector)
+	 */
+	public Vec3 toVec3() {
+		return Vec3.fromVector(this);
+	}
+	
 	/**
 	 * Returns the array representation of this <code>Vector</code>
 	 * @return array representing the <code>Vector</code>
@@ -20,7 +20,11 @@ import com.gmail.vitortorreao.scene.Triangle;
 public class Vertex {
 	
 	private double[] coords;
-	private Vector normal;
+	/**
+	 * Volatile since normals may be set by a loading thread 
+	 * while the vertex is drawn
+	 */
+	private volatile Vector normal;
 	private String label;
 	
 	/**
@@ -196,4 +200,20 @@ public class Vertex {
 		return true;
 	}
 
+	/**
+	 * Computes a hash code consistent with {@link #equals(Object)}, 
+	 * so vertices can be keys of hash tables.
+	 * @return the hash code of the coordinates
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for(int i = 0; i < this.getDimension(); i++) {
+			//0.0 and -0.0 are equal, so they must hash the same
+			long bits = Double.doubleToLongBits(this.getCoord(i) + 0.0);
+			hash = 31*hash + (int) (bits ^ (bits >>> 32));
+		}
+		return hash;
+	}
+
 }
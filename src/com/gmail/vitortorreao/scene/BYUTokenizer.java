@@ -0,0 +1,688 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class implements a line based tokenizer for .byu files.
+ * It reads the file's bytes into a reusable buffer and parses
+ * <code>int</code>, <code>double</code> and <code>float</code> values
+ * directly from them, so no <code>String</code> or boxed value is created
+ * for each token. Tokens may be separated by any number of spaces or tabs.
+ * <p>
+ * The bytes either come from an <code>InputStream</code> or from a file
+ * mapped into memory. Mapped files are read through windows of at most
+ * {@link #DEFAULT_WINDOW_SIZE} bytes, so files larger than 2 GB can be read.
+ * <p>
+ * Besides reading line by line, a whole block of lines can be made
+ * available at once with {@link #nextBlock(int, int)}. The block is split
+ * into chunks at line boundaries, and each chunk can be read by its own
+ * tokenizer, so the chunks can be parsed in parallel.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class BYUTokenizer implements Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Largest buffer or window the tokenizer can use
+	 */
+	private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Size of the mapped windows over a file
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+	/**
+	 * Largest mantissa which is exactly representable as a double
+	 */
+	private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+	/**
+	 * Largest mantissa which is exactly representable as a float
+	 */
+	private static final long MAX_EXACT_FLOAT = 1L << 24;
+
+	/**
+	 * Powers of ten which are exactly representable as doubles
+	 */
+	private static final double[] DOUBLE_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Powers of ten which are exactly representable as floats
+	 */
+	private static final float[] FLOAT_POWERS_OF_TEN = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+
+	private InputStream in;
+	private FileChannel channel;
+	private long bufferOffset;
+	private int windowSize;
+	private ByteBuffer buffer;
+	private int limit;
+	private int position;
+	private boolean endOfStream;
+
+	private int lineStart;
+	private int lineEnd;
+	private int[] tokenStarts;
+	private int[] tokenEnds;
+	private int tokenCount;
+
+	private int[] chunkStarts;
+	private int[] chunkLines;
+	private int chunkCount;
+	private int blockEnd;
+
+	/**
+	 * Creates a tokenizer which reads the given stream.
+	 * @param in The stream with the contents of a .byu file
+	 */
+	public BYUTokenizer(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a tokenizer which reads the given stream.
+	 * @param in			The stream with the contents of a .byu file
+	 * @param bufferSize	The initial size of the buffer. It grows if a
+	 * 						line doesn't fit into it.
+	 */
+	public BYUTokenizer(InputStream in, int bufferSize) {
+		this.in = in;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.tokenStarts = new int[8];
+		this.tokenEnds = new int[8];
+	}
+
+	/**
+	 * Creates a tokenizer which reads the given file mapped into memory.
+	 * @param channel A channel opened for reading a .byu file
+	 */
+	public BYUTokenizer(FileChannel channel) {
+		this(channel, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a tokenizer which reads the given file mapped into memory.
+	 * @param channel		A channel opened for reading a .byu file
+	 * @param windowSize	The number of bytes mapped at a time. It grows
+	 * 						if a line doesn't fit into it.
+	 */
+	public BYUTokenizer(FileChannel channel, int windowSize) {
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.buffer = ByteBuffer.allocate(0);
+		this.tokenStarts = new int[8];
+		this.tokenEnds = new int[8];
+	}
+
+	/**
+	 * Creates a tokenizer which reads a range of another one's buffer.
+	 * @param buffer	The buffer
+	 * @param start		The first byte of the range
+	 * @param end		The byte after the last of the range
+	 */
+	private BYUTokenizer(ByteBuffer buffer, int start, int end) {
+		this.buffer = buffer;
+		this.position = start;
+		this.limit = end;
+		this.endOfStream = true;
+		this.tokenStarts = new int[8];
+		this.tokenEnds = new int[8];
+	}
+
+	/**
+	 * Advances to the next line and splits it into tokens.
+	 * @return	<code>true</code> if there was another line,
+	 * 			<code>false</code> if the end of the stream was reached
+	 * @throws IOException If the underlying stream can't be read
+	 */
+	public boolean nextLine() throws IOException {
+		int i = position;
+		while (true) {
+			while (i < limit && buffer.get(i) != '\n') {
+				i++;
+			}
+			if (i < limit || endOfStream) {
+				break;
+			}
+			//The line doesn't end inside the buffer, read some more
+			i -= position;
+			fill();
+			i += position;
+		}
+		if (i == position && i >= limit) {
+			tokenCount = 0;
+			return false;
+		}
+		lineStart = position;
+		lineEnd = i;
+		position = i < limit ? i + 1 : i;
+		tokenize();
+		return true;
+	}
+
+	/**
+	 * Makes more bytes available after the unread ones, which are moved 
+	 * to the start of the buffer.
+	 * @throws IOException If the underlying stream can't be read
+	 */
+	private void fill() throws IOException {
+		if (channel != null) {
+			mapNextWindow();
+			return;
+		}
+		int remaining = limit - position;
+		byte[] array = buffer.array();
+		if (remaining == array.length) {
+			byte[] larger = new byte[(int) Math.min(2L * array.length, 
+					MAX_BUFFER_SIZE)];
+			System.arraycopy(array, position, larger, 0, remaining);
+			buffer = ByteBuffer.wrap(larger);
+			array = larger;
+		} else if (position > 0) {
+			System.arraycopy(array, position, array, 0, remaining);
+		}
+		bufferOffset += position;
+		position = 0;
+		limit = remaining;
+		int read = in.read(array, limit, array.length - limit);
+		if (read < 0) {
+			endOfStream = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	/**
+	 * Maps the window of the file which starts at the first unread byte.
+	 * @throws IOException If the file can't be mapped
+	 */
+	private void mapNextWindow() throws IOException {
+		int remaining = limit - position;
+		if (remaining == windowSize) {
+			//A single line is larger than the window
+			if (windowSize == MAX_BUFFER_SIZE) {
+				throw new IOException("Line longer than "
+						+MAX_BUFFER_SIZE+" bytes");
+			}
+			windowSize = (int) Math.min(2L * windowSize, MAX_BUFFER_SIZE);
+		}
+		bufferOffset += position;
+		long size = Math.min(windowSize, channel.size() - bufferOffset);
+		buffer = channel.map(MapMode.READ_ONLY, bufferOffset, size);
+		position = 0;
+		limit = (int) size;
+		endOfStream = bufferOffset + size == channel.size();
+	}
+
+	/**
+	 * Returns the number of bytes the buffer or window currently holds.
+	 * @return the capacity
+	 */
+	private int capacity() {
+		return channel != null ? windowSize : buffer.capacity();
+	}
+
+	/**
+	 * Makes the next lines available as a single block of the buffer, 
+	 * split into chunks of about <code>chunkSize</code> bytes at line 
+	 * boundaries, and skips them. The chunks are read through 
+	 * {@link #getChunk(int)} and stay valid until the next call to 
+	 * {@link #nextLine()} or to this method.
+	 * @param lines		The number of lines in the block
+	 * @param chunkSize	The minimum number of bytes in each chunk
+	 * @return	The number of lines in the block, which is less than 
+	 * 			<code>lines</code> if the stream ended before, or 
+	 * 			<code>-1</code> if the lines don't fit into a buffer. 
+	 * 			In the latter case nothing is skipped.
+	 * @throws IOException If the underlying stream can't be read
+	 */
+	public int nextBlock(int lines, int chunkSize) throws IOException {
+		if (chunkStarts == null) {
+			chunkStarts = new int[16];
+			chunkLines = new int[16];
+		}
+		//Chunk starts are kept relative to the block start until the end,
+		//since filling the buffer moves the block
+		chunkCount = 0;
+		addChunk(0, 0);
+		int found = 0;
+		int lineBegin = 0;
+		int i = position;
+		while (found < lines) {
+			while (i < limit && found < lines) {
+				if (buffer.get(i++) == '\n') {
+					found++;
+					lineBegin = i - position;
+					if (lineBegin - chunkStarts[chunkCount-1] >= chunkSize
+							&& found < lines) {
+						addChunk(lineBegin, found);
+					}
+				}
+			}
+			if (found == lines) {
+				break;
+			}
+			if (endOfStream) {
+				if (i - position > lineBegin) {
+					//The last line has no line terminator
+					found++;
+				}
+				break;
+			}
+			if (limit - position == capacity() && 
+					capacity() == MAX_BUFFER_SIZE) {
+				return -1;
+			}
+			i -= position;
+			fill();
+			i += position;
+		}
+		for (int c = 0; c < chunkCount; c++) {
+			chunkStarts[c] += position;
+		}
+		blockEnd = i;
+		position = i;
+		tokenCount = 0;
+		return found;
+	}
+
+	/**
+	 * Records the start of a chunk of the current block.
+	 * @param start	The offset of the chunk from the start of the block
+	 * @param line	The index of its first line in the block
+	 */
+	private void addChunk(int start, int line) {
+		if (chunkCount == chunkStarts.length) {
+			int[] starts = new int[chunkCount * 2];
+			int[] lines = new int[chunkCount * 2];
+			System.arraycopy(chunkStarts, 0, starts, 0, chunkCount);
+			System.arraycopy(chunkLines, 0, lines, 0, chunkCount);
+			chunkStarts = starts;
+			chunkLines = lines;
+		}
+		chunkStarts[chunkCount] = start;
+		chunkLines[chunkCount] = line;
+		chunkCount++;
+	}
+
+	/**
+	 * Goes back to the start of the last block, so that its lines are 
+	 * read again by {@link #nextLine()}, as if it had never been skipped. 
+	 * Nothing may be read between the block and this call.
+	 */
+	public void rewindBlock() {
+		position = chunkStarts[0];
+		tokenCount = 0;
+	}
+
+	/**
+	 * Returns the number of chunks in the last block.
+	 * @return the number of chunks
+	 */
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Returns the index, inside the last block, of the first line 
+	 * of a chunk.
+	 * @param chunk The index of the chunk
+	 * @return the index of its first line
+	 */
+	public int getChunkFirstLine(int chunk) {
+		return chunkLines[chunk];
+	}
+
+	/**
+	 * Returns a tokenizer which reads the lines of a chunk of the last 
+	 * block. Tokenizers of different chunks may be used by different 
+	 * threads at the same time.
+	 * @param chunk The index of the chunk
+	 * @return a tokenizer over the chunk
+	 */
+	public BYUTokenizer getChunk(int chunk) {
+		int end = chunk + 1 < chunkCount ? chunkStarts[chunk + 1] : blockEnd;
+		return new BYUTokenizer(buffer, chunkStarts[chunk], end);
+	}
+
+	/**
+	 * Finds the tokens of the current line.
+	 */
+	private void tokenize() {
+		tokenCount = 0;
+		int i = lineStart;
+		while (i < lineEnd) {
+			while (i < lineEnd && isBlank(buffer.get(i))) {
+				i++;
+			}
+			if (i == lineEnd) {
+				break;
+			}
+			int start = i;
+			while (i < lineEnd && !isBlank(buffer.get(i))) {
+				i++;
+			}
+			if (tokenCount == tokenStarts.length) {
+				int[] starts = new int[tokenCount * 2];
+				int[] ends = new int[tokenCount * 2];
+				System.arraycopy(tokenStarts, 0, starts, 0, tokenCount);
+				System.arraycopy(tokenEnds, 0, ends, 0, tokenCount);
+				tokenStarts = starts;
+				tokenEnds = ends;
+			}
+			tokenStarts[tokenCount] = start;
+			tokenEnds[tokenCount] = i;
+			tokenCount++;
+		}
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+	}
+
+	/**
+	 * Returns how many bytes of the stream or file were read so far, 
+	 * up to the end of the current line or block.
+	 * @return the number of bytes read
+	 */
+	public long getBytesRead() {
+		return bufferOffset + position;
+	}
+
+	/**
+	 * Returns the number of tokens in the current line.
+	 * @return the number of tokens
+	 */
+	public int tokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * Parses a token of the current line as an <code>int</code>.
+	 * @param index The index of the token in the line
+	 * @return The parsed value
+	 * @throws NumberFormatException If the token is not an integer
+	 */
+	public int getInt(int index) {
+		return parseInt(index, tokenStarts[index], tokenEnds[index]);
+	}
+
+	/**
+	 * Parses the part of a token of the current line before the first 
+	 * occurrence of a separator as an <code>int</code>, such as the 
+	 * vertex index of a <code>1/2/3</code> token of an .obj file.
+	 * @param index		The index of the token in the line
+	 * @param separator	The separator, which may be absent
+	 * @return The parsed value
+	 * @throws NumberFormatException If that part is not an integer
+	 */
+	public int getInt(int index, char separator) {
+		int start = tokenStarts[index];
+		int end = start;
+		while (end < tokenEnds[index] && buffer.get(end) != separator) {
+			end++;
+		}
+		return parseInt(index, start, end);
+	}
+
+	/**
+	 * Parses a range of the buffer as an <code>int</code>.
+	 * @param index	The index of the token the range is part of
+	 * @param i		The first byte
+	 * @param end	The byte after the last
+	 * @return The parsed value
+	 * @throws NumberFormatException If the range is not an integer
+	 */
+	private int parseInt(int index, int i, int end) {
+		boolean negative = false;
+		if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException(getToken(index));
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException(getToken(index));
+			}
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException(getToken(index));
+			}
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException(getToken(index));
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a token of the current line as a <code>double</code>.
+	 * The result is the same as {@link Double#parseDouble(String)}'s.
+	 * @param index The index of the token in the line
+	 * @return The parsed value
+	 * @throws NumberFormatException If the token is not a number
+	 */
+	public double getDouble(int index) {
+		int start = tokenStarts[index];
+		int end = tokenEnds[index];
+		int i = start;
+		boolean negative = false;
+		if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+
+		/* Fast path: a decimal mantissa with few enough digits to be
+		 * exact, scaled by an exact power of ten. The single rounding
+		 * of the multiplication or division gives the correctly rounded
+		 * result. Everything else is handed to Double.parseDouble.
+		 */
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean seenDigit = false;
+		for (; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9'; i++) {
+			seenDigit = true;
+			if (mantissa != 0 || buffer.get(i) != '0') {
+				mantissa = mantissa * 10 + (buffer.get(i) - '0');
+				digits++;
+			}
+		}
+		if (i < end && buffer.get(i) == '.') {
+			for (i++; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9'; i++) {
+				seenDigit = true;
+				if (mantissa != 0 || buffer.get(i) != '0') {
+					mantissa = mantissa * 10 + (buffer.get(i) - '0');
+					digits++;
+				}
+				exponent--;
+			}
+		}
+		if (seenDigit && i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+				negativeExponent = buffer.get(i) == '-';
+				i++;
+			}
+			int explicit = 0;
+			int expStart = i;
+			for (; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9'
+					&& explicit < 10000; i++) {
+				explicit = explicit * 10 + (buffer.get(i) - '0');
+			}
+			if (i == expStart) {
+				seenDigit = false;
+			}
+			exponent += negativeExponent ? -explicit : explicit;
+		}
+		if (!seenDigit || i != end || digits > 18) {
+			return Double.parseDouble(getToken(index));
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (mantissa <= MAX_EXACT_DOUBLE &&
+				exponent >= -22 && exponent <= 22) {
+			value = exponent < 0 ?
+					mantissa / DOUBLE_POWERS_OF_TEN[-exponent] :
+					mantissa * DOUBLE_POWERS_OF_TEN[exponent];
+		} else {
+			return Double.parseDouble(getToken(index));
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a token of the current line as a <code>float</code>.
+	 * The result is the same as {@link Float#parseFloat(String)}'s.
+	 * @param index The index of the token in the line
+	 * @return The parsed value
+	 * @throws NumberFormatException If the token is not a number
+	 */
+	public float getFloat(int index) {
+		int i = tokenStarts[index];
+		int end = tokenEnds[index];
+		boolean negative = false;
+		if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		//Same fast path as getDouble, with float's exact ranges
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean seenDigit = false;
+		for (; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9'; i++) {
+			seenDigit = true;
+			if (mantissa != 0 || buffer.get(i) != '0') {
+				mantissa = mantissa * 10 + (buffer.get(i) - '0');
+				digits++;
+			}
+		}
+		if (i < end && buffer.get(i) == '.') {
+			for (i++; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9'; i++) {
+				seenDigit = true;
+				if (mantissa != 0 || buffer.get(i) != '0') {
+					mantissa = mantissa * 10 + (buffer.get(i) - '0');
+					digits++;
+				}
+				exponent--;
+			}
+		}
+		if (!seenDigit || i != end || digits > 18) {
+			return Float.parseFloat(getToken(index));
+		}
+		float value;
+		if (mantissa == 0) {
+			value = 0.0f;
+		} else if (mantissa <= MAX_EXACT_FLOAT &&
+				exponent >= -10 && exponent <= 10) {
+			value = exponent < 0 ?
+					mantissa / FLOAT_POWERS_OF_TEN[-exponent] :
+					mantissa * FLOAT_POWERS_OF_TEN[exponent];
+		} else {
+			return Float.parseFloat(getToken(index));
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Tells whether a token of the current line is the given text, 
+	 * without decoding it.
+	 * @param index	The index of the token in the line
+	 * @param text	The ASCII text
+	 * @return <code>true</code> if the token is the text
+	 */
+	public boolean tokenEquals(int index, String text) {
+		int start = tokenStarts[index];
+		if (tokenEnds[index] - start != text.length()) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (buffer.get(start + i) != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a token of the current line as a <code>String</code>.
+	 * @param index The index of the token in the line
+	 * @return The token
+	 */
+	public String getToken(int index) {
+		return decode(tokenStarts[index], tokenEnds[index]);
+	}
+
+	/**
+	 * Decodes a range of the buffer as ASCII text.
+	 * @param start The first byte
+	 * @param end	The byte after the last
+	 * @return The text
+	 */
+	private String decode(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = start; i < end; i++) {
+			bytes[i - start] = buffer.get(i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Returns the current line as a <code>String</code>,
+	 * without its line terminator. Meant for error messages.
+	 * @return The current line
+	 */
+	public String getLine() {
+		int end = lineEnd;
+		if (end > lineStart && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		return decode(lineStart, end);
+	}
+
+	/**
+	 * Closes the underlying stream or channel.
+	 * @throws IOException If the stream can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		} else if (in != null) {
+			in.close();
+		}
+	}
+
+}
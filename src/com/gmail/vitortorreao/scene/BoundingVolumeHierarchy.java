@@ -0,0 +1,1206 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import com.gmail.vitortorreao.math.Frustum;
+
+/**
+ * This class implements a bounding volume hierarchy of all of the
+ * triangles of a <code>Scene</code>, to find the ones in a box, in a
+ * frustum or hit by a ray without looking at every one of them.
+ * <p>
+ * The tree is binary, and built from the top down with the surface area
+ * heuristic: the triangles of a node are put into {@link #BINS} bins by
+ * the centers of their bounds along each axis, and split between two
+ * bins where the areas of the bounds of both sides, times their numbers
+ * of triangles, add up the least. A node becomes a leaf when splitting
+ * it would cost more than testing its triangles, which may only happen
+ * for at most {@link #MAX_LEAF_TRIANGLES}. The triangles of a larger
+ * node whose centers are all the same are split in halves instead.
+ * <p>
+ * The building runs on a <code>ForkJoinPool</code>. The two sides of a
+ * large node are built by tasks of their own, and the binning of the
+ * largest ones is split across tasks too. Below a few thousand
+ * triangles, each task builds its part of the tree on its own, and the
+ * parts are put together at the end.
+ * <p>
+ * The nodes are kept in flat arrays: their bounds, and two
+ * <code>int</code>s each, which are the first of its two children, one
+ * after the other, for a node which isn't a leaf, and the range of
+ * {@link #triangles} of a leaf. The triangles under any node are a
+ * range of {@link #triangles} too.
+ * <p>
+ * Triangles are numbered across the scene, the ones of each
+ * <code>Mesh</code> after the ones of the meshes before it. Only the
+ * triangles published when the hierarchy is built are in it.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class BoundingVolumeHierarchy {
+
+	/**
+	 * Number of bins along each axis where the splits are looked for
+	 */
+	public static final int BINS = 16;
+
+	/**
+	 * Largest number of triangles of a leaf
+	 */
+	public static final int MAX_LEAF_TRIANGLES = 8;
+
+	/**
+	 * Cost of opening a node, relative to testing one triangle
+	 */
+	private static final float TRAVERSAL_COST = 1;
+
+	/**
+	 * Number of triangles up to which a part of the tree is built by a
+	 * single task
+	 */
+	private static final int TASK_TRIANGLES = 1 << 14;
+
+	/**
+	 * Number of triangles up to which a node is binned by a single task
+	 */
+	private static final int BINNING_TRIANGLES = 1 << 16;
+
+	/**
+	 * The test of a query made through
+	 * {@link BoundingVolumeHierarchy#traverse(Visitor)}.
+	 */
+	public interface Visitor {
+
+		/**
+		 * Tells where the bounds of a node are relative to the query.
+		 * @param minX	The smallest x coordinate of the bounds
+		 * @param minY	The smallest y coordinate of the bounds
+		 * @param minZ	The smallest z coordinate of the bounds
+		 * @param maxX	The largest x coordinate of the bounds
+		 * @param maxY	The largest y coordinate of the bounds
+		 * @param maxZ	The largest z coordinate of the bounds
+		 * @return	{@link Frustum#OUTSIDE} if none of the triangles of
+		 * 			the node can match, {@link Frustum#INSIDE} if all of
+		 * 			them do, or {@link Frustum#INTERSECTS}
+		 */
+		int classify(float minX, float minY, float minZ,
+				float maxX, float maxY, float maxZ);
+
+		/**
+		 * Is told of a triangle of a node which isn't outside of the query.
+		 * @param triangle	The triangle, numbered across the scene
+		 * @param inside	Whether the node was inside of the query
+		 * @return <code>false</code> to stop the traversal
+		 */
+		boolean visit(int triangle, boolean inside);
+
+	}
+
+	/**
+	 * A <code>Visitor</code> which collects the triangles it matches.
+	 */
+	private static abstract class Query implements Visitor {
+
+		private int[] found = new int[64];
+		private int count;
+
+		void add(int triangle) {
+			if (count == found.length) {
+				found = Arrays.copyOf(found, 2*count);
+			}
+			found[count++] = triangle;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(found, count);
+		}
+
+	}
+
+	/**
+	 * Part of the tree while it is built, with its root first and the
+	 * two children of a node one after the other.
+	 */
+	private static final class Nodes {
+
+		private float[] bounds = new float[6*64];
+		private int[] data = new int[2*64];
+		private int size;
+
+		int add() {
+			if (size == data.length/2) {
+				bounds = Arrays.copyOf(bounds, 2*bounds.length);
+				data = Arrays.copyOf(data, 2*data.length);
+			}
+			return size++;
+		}
+
+	}
+
+	/**
+	 * The number of triangles and the bounds of the triangles in each
+	 * bin along each axis.
+	 */
+	private final class Binning {
+
+		private final int[] counts = new int[3*BINS];
+		private final float[] boxes = new float[18*BINS];
+		/**
+		 * The number of bins used along each axis
+		 */
+		private int binCount = BINS;
+
+		Binning() {
+			for (int i = 0; i < 3*BINS; i++) {
+				empty(boxes, 6*i);
+			}
+		}
+
+		/**
+		 * Puts a range of {@link #triangles} into the bins.
+		 * @param first		The first of the range
+		 * @param end		The end of the range, exclusive
+		 * @param centers	Holds the bounds of the centers of the range
+		 * @param c			Where they are in <code>centers</code>
+		 */
+		void add(int first, int end, float[] centers, int c) {
+			int n = binCount;
+			float scaleX = scale(centers, c, 0, n);
+			float scaleY = scale(centers, c, 1, n);
+			float scaleZ = scale(centers, c, 2, n);
+			float[] triangleBoxes = BoundingVolumeHierarchy.this.boxes;
+			for (int i = first; i < end; i++) {
+				int b = 6*i;
+				add(triangleBoxes, b,
+						bin(triangleBoxes, b, 0, centers[c], scaleX, n));
+				add(triangleBoxes, b,
+						BINS + bin(triangleBoxes, b, 1, centers[c+1], scaleY, n));
+				add(triangleBoxes, b,
+						2*BINS + bin(triangleBoxes, b, 2, centers[c+2], scaleZ, n));
+			}
+		}
+
+		/**
+		 * Empties the bins, and sets how many are used.
+		 * @param binCount The number of bins used along each axis
+		 */
+		void clear(int binCount) {
+			this.binCount = binCount;
+			for (int k = 0; k < 3; k++) {
+				for (int i = k*BINS; i < k*BINS + binCount; i++) {
+					counts[i] = 0;
+					empty(boxes, 6*i);
+				}
+			}
+		}
+
+		private void add(float[] triangleBoxes, int b, int bin) {
+			counts[bin]++;
+			union(boxes, 6*bin, triangleBoxes, b);
+		}
+
+		/**
+		 * Adds the triangles of other bins to these.
+		 * @param other The other bins
+		 */
+		void add(Binning other) {
+			for (int i = 0; i < 3*BINS; i++) {
+				counts[i] += other.counts[i];
+				union(boxes, 6*i, other.boxes, 6*i);
+			}
+		}
+
+	}
+
+	/**
+	 * Finds the bounds of a range of triangles, and their centers.
+	 */
+	private final class BoxTask extends RecursiveTask<float[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int first;
+		private final int end;
+
+		BoxTask(int first, int end) {
+			this.first = first;
+			this.end = end;
+		}
+
+		@Override
+		protected float[] compute() {
+			if (end - first > TASK_TRIANGLES) {
+				int middle = (first + end) >>> 1;
+				BoxTask left = new BoxTask(first, middle);
+				left.fork();
+				float[] box = new BoxTask(middle, end).compute();
+				float[] other = left.join();
+				union(box, 0, other, 0);
+				union(box, 6, other, 6);
+				return box;
+			}
+			float[] box = new float[12];
+			empty(box, 0);
+			empty(box, 6);
+			int m = meshOf(first);
+			for (int t = first; t < end; t++) {
+				while (t >= firstTriangles[m+1]) {
+					m++;
+				}
+				Mesh mesh = meshes[m];
+				int triangle = t - firstTriangles[m];
+				int b = 6*t;
+				for (int k = 0; k < 3; k++) {
+					double min = Double.POSITIVE_INFINITY;
+					double max = Double.NEGATIVE_INFINITY;
+					for (int corner = 0; corner < 3; corner++) {
+						double coord =
+								mesh.getCoord(mesh.getIndex(triangle, corner), k);
+						min = Math.min(min, coord);
+						max = Math.max(max, coord);
+					}
+					boxes[b+k] = down(min);
+					boxes[b+k+3] = up(max);
+				}
+				triangles[t] = t;
+				union(box, 0, boxes, b);
+				include(box, 6, boxes, b);
+			}
+			return box;
+		}
+
+	}
+
+	/**
+	 * Puts a range of {@link #triangles} into bins.
+	 */
+	private final class BinTask extends RecursiveTask<Binning> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int first;
+		private final int end;
+		private final float[] centers;
+		private final int c;
+
+		BinTask(int first, int end, float[] centers, int c) {
+			this.first = first;
+			this.end = end;
+			this.centers = centers;
+			this.c = c;
+		}
+
+		@Override
+		protected Binning compute() {
+			if (end - first > BINNING_TRIANGLES) {
+				int middle = (first + end) >>> 1;
+				BinTask left = new BinTask(first, middle, centers, c);
+				left.fork();
+				Binning binning = new BinTask(middle, end, centers, c).compute();
+				binning.add(left.join());
+				return binning;
+			}
+			Binning binning = new Binning();
+			binning.add(first, end, centers, c);
+			return binning;
+		}
+
+	}
+
+	/**
+	 * Builds the part of the tree over a range of {@link #triangles}.
+	 */
+	private final class Build extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int first;
+		private final int end;
+		/**
+		 * The bounds of the triangles, then the bounds of their centers
+		 */
+		private final float[] box;
+		/**
+		 * The part of the tree, if it was built by this task alone
+		 */
+		private Nodes nodes;
+		private Build left;
+		private Build right;
+		private int nodeCount;
+		private int depth;
+
+		Build(int first, int end, float[] box) {
+			this.first = first;
+			this.end = end;
+			this.box = box;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - first <= TASK_TRIANGLES) {
+				buildAlone();
+				return;
+			}
+			float[] split = new float[24];
+			int middle = split(first, end, box, 0, box, 6, null, split);
+			left = new Build(first, middle, Arrays.copyOfRange(split, 0, 12));
+			right = new Build(middle, end, Arrays.copyOfRange(split, 12, 24));
+			invokeAll(left, right);
+			nodeCount = 1 + left.nodeCount + right.nodeCount;
+			depth = 1 + Math.max(left.depth, right.depth);
+		}
+
+		/**
+		 * Builds the part of the tree on this thread, with a stack of the
+		 * nodes still to be split instead of recursion, since the tree
+		 * can be deep where the triangles are uneven.
+		 */
+		private void buildAlone() {
+			nodes = new Nodes();
+			Binning binning = new Binning();
+			float[] split = new float[24];
+			int[] stack = new int[4*16];
+			float[] centers = new float[6*16];
+			int top = 0;
+			System.arraycopy(box, 0, nodes.bounds, 6*nodes.add(), 6);
+			stack[0] = 0;
+			stack[1] = first;
+			stack[2] = end;
+			stack[3] = 1;
+			System.arraycopy(box, 6, centers, 0, 6);
+			top++;
+			while (top > 0) {
+				top--;
+				int node = stack[4*top];
+				int from = stack[4*top + 1];
+				int to = stack[4*top + 2];
+				int level = stack[4*top + 3];
+				int middle = split(from, to, nodes.bounds, 6*node, centers, 6*top,
+						binning, split);
+				if (middle < 0) {
+					nodes.data[2*node] = from;
+					nodes.data[2*node+1] = to - from;
+					depth = Math.max(depth, level);
+					continue;
+				}
+				int child = nodes.add();
+				nodes.add();
+				nodes.data[2*node] = child;
+				nodes.data[2*node+1] = 0;
+				System.arraycopy(split, 0, nodes.bounds, 6*child, 6);
+				System.arraycopy(split, 12, nodes.bounds, 6*child + 6, 6);
+				if (4*top + 8 > stack.length) {
+					stack = Arrays.copyOf(stack, 2*stack.length);
+					centers = Arrays.copyOf(centers, 2*centers.length);
+				}
+				//The first child is split first
+				stack[4*top] = child + 1;
+				stack[4*top + 1] = middle;
+				stack[4*top + 2] = to;
+				stack[4*top + 3] = level + 1;
+				System.arraycopy(split, 18, centers, 6*top, 6);
+				top++;
+				stack[4*top] = child;
+				stack[4*top + 1] = from;
+				stack[4*top + 2] = middle;
+				stack[4*top + 3] = level + 1;
+				System.arraycopy(split, 6, centers, 6*top, 6);
+				top++;
+			}
+			nodeCount = nodes.size;
+		}
+
+	}
+
+	private Mesh[] meshes;
+	/**
+	 * The number of the first triangle of each mesh, and the number of
+	 * triangles at the end
+	 */
+	private int[] firstTriangles;
+	/**
+	 * The triangles, in the order of the leaves of the tree
+	 */
+	private int[] triangles;
+	/**
+	 * The bounds of each node, as its smallest then largest coordinates
+	 */
+	private float[] bounds;
+	/**
+	 * The first child of each node, or the first of its range of
+	 * {@link #triangles}, and the number of triangles, 0 for a node which
+	 * isn't a leaf
+	 */
+	private int[] nodes;
+	private int nodeCount;
+	private int depth;
+	/**
+	 * The bounds of each of {@link #triangles}, in the same order, while
+	 * the tree is built. They are moved with the triangles, so that they
+	 * are read one after the other.
+	 */
+	private float[] boxes;
+
+	/**
+	 * Builds the hierarchy of the triangles of a <code>Scene</code>
+	 * published so far, on a pool of as many threads as there are
+	 * processors.
+	 * @param scene The <code>Scene</code>
+	 */
+	public BoundingVolumeHierarchy(Scene scene) {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			build(scene.getMeshes(), pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds the hierarchy of the triangles of some meshes published so
+	 * far.
+	 * @param meshes	The meshes
+	 * @param pool		The pool which runs the building
+	 */
+	public BoundingVolumeHierarchy(List<Mesh> meshes, ForkJoinPool pool) {
+		build(meshes, pool);
+	}
+
+	private void build(List<Mesh> list, ForkJoinPool pool) {
+		meshes = list.toArray(new Mesh[list.size()]);
+		firstTriangles = new int[meshes.length + 1];
+		long triangleCount = 0;
+		for (int m = 0; m < meshes.length; m++) {
+			firstTriangles[m] = (int) triangleCount;
+			triangleCount += meshes[m].getTriangleCount();
+			if (6*triangleCount > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("There are too many "
+						+ "triangles for a hierarchy: " + triangleCount);
+			}
+		}
+		int n = (int) triangleCount;
+		firstTriangles[meshes.length] = n;
+		triangles = new int[n];
+		if (n == 0) {
+			bounds = new float[0];
+			nodes = new int[0];
+			return;
+		}
+		boxes = new float[6*n];
+		Build root = new Build(0, n, pool.invoke(new BoxTask(0, n)));
+		pool.invoke(root);
+		boxes = null;
+		nodeCount = root.nodeCount;
+		depth = root.depth;
+		bounds = new float[6*nodeCount];
+		nodes = new int[2*nodeCount];
+		place(root, 0, 1);
+	}
+
+	/**
+	 * Copies a part of the tree into {@link #bounds} and {@link #nodes}.
+	 * @param build	The task which built it
+	 * @param slot	Where its root goes
+	 * @param next	Where its other nodes go
+	 * @return the end of its other nodes
+	 */
+	private int place(Build build, int slot, int next) {
+		if (build.nodes != null) {
+			Nodes part = build.nodes;
+			for (int i = 0; i < part.size; i++) {
+				int node = i == 0 ? slot : next + i - 1;
+				System.arraycopy(part.bounds, 6*i, bounds, 6*node, 6);
+				int count = part.data[2*i+1];
+				nodes[2*node] = count > 0 ? part.data[2*i]
+						: next + part.data[2*i] - 1;
+				nodes[2*node+1] = count;
+			}
+			return next + part.size - 1;
+		}
+		System.arraycopy(build.box, 0, bounds, 6*slot, 6);
+		nodes[2*slot] = next;
+		nodes[2*slot+1] = 0;
+		int child = next;
+		next = place(build.left, child, next + 2);
+		return place(build.right, child + 1, next);
+	}
+
+	/**
+	 * Splits a range of {@link #triangles} in two, or finds that it should
+	 * be a leaf.
+	 * @param first		The first of the range
+	 * @param end		The end of the range, exclusive
+	 * @param box		Holds the bounds of the range
+	 * @param b			Where they are in <code>box</code>
+	 * @param centers	Holds the bounds of the centers of the range
+	 * @param c			Where they are in <code>centers</code>
+	 * @param binning	The bins to use, or <code>null</code> to bin the
+	 * 					range with tasks of the pool
+	 * @param split		Set to the bounds of the first side, the bounds of
+	 * 					its centers, and the same for the second side
+	 * @return	where the second side starts, the range being reordered,
+	 * 			or -1 if it should be a leaf
+	 */
+	private int split(int first, int end, float[] box, int b,
+			float[] centers, int c, Binning binning, float[] split) {
+		int count = end - first;
+		if (count == 1) {
+			return -1;
+		}
+		if (binning == null) {
+			binning = new BinTask(first, end, centers, c).invoke();
+		} else {
+			//Small nodes have fewer bins, which cost less to look through
+			binning.clear(Math.min(BINS, count));
+			binning.add(first, end, centers, c);
+		}
+		int binCount = binning.binCount;
+
+		//The cost of each split is the area of each side times its count
+		int bestAxis = -1;
+		int bestBin = 0;
+		float bestCost = Float.POSITIVE_INFINITY;
+		float[] side = new float[6];
+		float[] rightCosts = new float[BINS];
+		for (int k = 0; k < 3; k++) {
+			if (scale(centers, c, k, binCount) == 0) {
+				continue;
+			}
+			int bins = k*BINS;
+			empty(side, 0);
+			int rightCount = 0;
+			for (int i = binCount - 1; i > 0; i--) {
+				union(side, 0, binning.boxes, 6*(bins + i));
+				rightCount += binning.counts[bins + i];
+				rightCosts[i] = rightCount == 0 ? 0 : area(side)*rightCount;
+			}
+			empty(side, 0);
+			int leftCount = 0;
+			for (int i = 1; i < binCount; i++) {
+				union(side, 0, binning.boxes, 6*(bins + i - 1));
+				leftCount += binning.counts[bins + i - 1];
+				if (leftCount == 0 || leftCount == count) {
+					continue;
+				}
+				float cost = area(side)*leftCount + rightCosts[i];
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = k;
+					bestBin = i;
+				}
+			}
+		}
+
+		if (bestAxis < 0) {
+			//All of the centers are the same
+			if (count <= MAX_LEAF_TRIANGLES) {
+				return -1;
+			}
+			int middle = (first + end) >>> 1;
+			bounds(first, middle, split, 0);
+			bounds(middle, end, split, 12);
+			return middle;
+		}
+		float area = area(box, b);
+		if (count <= MAX_LEAF_TRIANGLES
+				&& (area <= 0 || count <= TRAVERSAL_COST + bestCost/area)) {
+			return -1;
+		}
+
+		empty(split, 0);
+		empty(split, 12);
+		int bins = bestAxis*BINS;
+		for (int i = 0; i < binCount; i++) {
+			union(split, i < bestBin ? 0 : 12, binning.boxes, 6*(bins + i));
+		}
+		empty(split, 6);
+		empty(split, 18);
+		float min = centers[c + bestAxis];
+		float scale = scale(centers, c, bestAxis, binCount);
+		int i = first;
+		int j = end - 1;
+		while (i <= j) {
+			if (bin(boxes, 6*i, bestAxis, min, scale, binCount) < bestBin) {
+				include(split, 6, boxes, 6*i);
+				i++;
+			} else {
+				include(split, 18, boxes, 6*i);
+				swap(i, j);
+				j--;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Swaps two of {@link #triangles}, with their bounds.
+	 * @param i	The first one
+	 * @param j	The second one
+	 */
+	private void swap(int i, int j) {
+		int t = triangles[i];
+		triangles[i] = triangles[j];
+		triangles[j] = t;
+		for (int k = 0; k < 6; k++) {
+			float f = boxes[6*i + k];
+			boxes[6*i + k] = boxes[6*j + k];
+			boxes[6*j + k] = f;
+		}
+	}
+
+	/**
+	 * Finds the bounds of a range of {@link #triangles}, and of their
+	 * centers.
+	 * @param first	The first of the range
+	 * @param end	The end of the range, exclusive
+	 * @param box	Set to the bounds, then the bounds of the centers
+	 * @param b		Where they are set in <code>box</code>
+	 */
+	private void bounds(int first, int end, float[] box, int b) {
+		empty(box, b);
+		empty(box, b + 6);
+		for (int i = first; i < end; i++) {
+			union(box, b, boxes, 6*i);
+			include(box, b + 6, boxes, 6*i);
+		}
+	}
+
+	/**
+	 * Returns the factor which takes the distance of a center from the
+	 * smallest one to its bin.
+	 * @param centers	Holds the bounds of the centers
+	 * @param c			Where they are in <code>centers</code>
+	 * @param k			The axis
+	 * @param binCount	The number of bins along the axis
+	 * @return the factor, or 0 if all of the centers are the same
+	 */
+	private static float scale(float[] centers, int c, int k,
+			int binCount) {
+		float extent = centers[c+k+3] - centers[c+k];
+		return extent > 0 ? binCount/extent : 0;
+	}
+
+	/**
+	 * Returns the bin of the center of a box along an axis.
+	 * @param boxes		Holds the box
+	 * @param b			Where it is in <code>boxes</code>
+	 * @param k			The axis
+	 * @param min		The smallest center along the axis
+	 * @param scale		The factor from
+	 * 					{@link #scale(float[], int, int, int)}
+	 * @param binCount	The number of bins along the axis
+	 * @return the bin
+	 */
+	private static int bin(float[] boxes, int b, int k, float min,
+			float scale, int binCount) {
+		float center = (boxes[b+k] + boxes[b+k+3])*0.5f;
+		int bin = (int) ((center - min)*scale);
+		return bin < binCount ? bin : binCount - 1;
+	}
+
+	private static void empty(float[] box, int b) {
+		for (int k = 0; k < 3; k++) {
+			box[b+k] = Float.POSITIVE_INFINITY;
+			box[b+k+3] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Grows a box to hold another one.
+	 * @param box	Holds the box which grows
+	 * @param b		Where it is in <code>box</code>
+	 * @param other	Holds the other box
+	 * @param o		Where it is in <code>other</code>
+	 */
+	private static void union(float[] box, int b, float[] other, int o) {
+		for (int k = 0; k < 3; k++) {
+			//Faster than Math.min and Math.max, with no NaN to care for
+			if (other[o+k] < box[b+k]) {
+				box[b+k] = other[o+k];
+			}
+			if (other[o+k+3] > box[b+k+3]) {
+				box[b+k+3] = other[o+k+3];
+			}
+		}
+	}
+
+	/**
+	 * Grows a box to hold the center of another one.
+	 * @param box	Holds the box which grows
+	 * @param b		Where it is in <code>box</code>
+	 * @param other	Holds the other box
+	 * @param o		Where it is in <code>other</code>
+	 */
+	private static void include(float[] box, int b, float[] other, int o) {
+		for (int k = 0; k < 3; k++) {
+			float center = (other[o+k] + other[o+k+3])*0.5f;
+			if (center < box[b+k]) {
+				box[b+k] = center;
+			}
+			if (center > box[b+k+3]) {
+				box[b+k+3] = center;
+			}
+		}
+	}
+
+	private static float area(float[] box) {
+		return area(box, 0);
+	}
+
+	/**
+	 * Returns half of the area of the surface of a box.
+	 * @param box	Holds the box, which isn't empty
+	 * @param b		Where it is in <code>box</code>
+	 * @return the half of the area
+	 */
+	private static float area(float[] box, int b) {
+		float x = box[b+3] - box[b];
+		float y = box[b+4] - box[b+1];
+		float z = box[b+5] - box[b+2];
+		return x*y + y*z + z*x;
+	}
+
+	/**
+	 * Returns the largest <code>float</code> not above a value.
+	 * @param value The value
+	 * @return the <code>float</code>
+	 */
+	private static float down(double value) {
+		float f = (float) value;
+		return f > value ? Math.nextAfter(f, Double.NEGATIVE_INFINITY) : f;
+	}
+
+	/**
+	 * Returns the smallest <code>float</code> not below a value.
+	 * @param value The value
+	 * @return the <code>float</code>
+	 */
+	private static float up(double value) {
+		float f = (float) value;
+		return f < value ? Math.nextUp(f) : f;
+	}
+
+	/**
+	 * Returns the mesh a triangle belongs to.
+	 * @param triangle The triangle, numbered across the scene
+	 * @return the index of the mesh
+	 */
+	private int meshOf(int triangle) {
+		int low = 0;
+		int high = meshes.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (firstTriangles[middle] <= triangle) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the <code>Mesh</code> of a triangle.
+	 * @param triangle The triangle, numbered across the scene
+	 * @return the <code>Mesh</code>
+	 */
+	public Mesh getMesh(int triangle) {
+		return meshes[meshOf(triangle)];
+	}
+
+	/**
+	 * Returns the index of a triangle in its <code>Mesh</code>.
+	 * @param triangle The triangle, numbered across the scene
+	 * @return the 0-based index of the triangle in its <code>Mesh</code>
+	 */
+	public int getMeshTriangle(int triangle) {
+		return triangle - firstTriangles[meshOf(triangle)];
+	}
+
+	/**
+	 * Returns the number of triangles of the hierarchy.
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return triangles.length;
+	}
+
+	/**
+	 * Returns the number of nodes of the tree.
+	 * @return the number of nodes
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of levels of the tree.
+	 * @return the number of levels
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the cost of the tree by the surface area heuristic: the
+	 * expected number of nodes opened and triangles tested for a ray
+	 * which crosses the bounds of the root, counting a node as
+	 * {@link #TRAVERSAL_COST} triangles.
+	 * @return the cost
+	 */
+	public double getCost() {
+		if (nodeCount == 0) {
+			return 0;
+		}
+		double root = area(bounds, 0);
+		double cost = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			double p = root > 0 ? area(bounds, 6*node)/root : 1;
+			int count = nodes[2*node+1];
+			cost += p*(count == 0 ? TRAVERSAL_COST : count);
+		}
+		return cost;
+	}
+
+	/**
+	 * Walks the tree for a query. A node outside of the query is skipped
+	 * with all of its triangles, and the visitor is told of every
+	 * triangle of a node inside of it, or of a leaf which crosses it.
+	 * @param visitor The query
+	 */
+	public void traverse(Visitor visitor) {
+		if (nodeCount == 0) {
+			return;
+		}
+		int[] stack = new int[depth + 1];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int b = 6*node;
+			int result = visitor.classify(bounds[b], bounds[b+1], bounds[b+2],
+					bounds[b+3], bounds[b+4], bounds[b+5]);
+			if (result == Frustum.OUTSIDE) {
+				continue;
+			}
+			boolean inside = result == Frustum.INSIDE;
+			if (inside || nodes[2*node+1] > 0) {
+				int end = end(node);
+				for (int i = first(node); i < end; i++) {
+					if (!visitor.visit(triangles[i], inside)) {
+						return;
+					}
+				}
+			} else {
+				stack[top++] = nodes[2*node] + 1;
+				stack[top++] = nodes[2*node];
+			}
+		}
+	}
+
+	/**
+	 * Returns the first of the range of {@link #triangles} under a node.
+	 * @param node The node
+	 * @return the first of the range
+	 */
+	private int first(int node) {
+		while (nodes[2*node+1] == 0) {
+			node = nodes[2*node];
+		}
+		return nodes[2*node];
+	}
+
+	/**
+	 * Returns the end of the range of {@link #triangles} under a node.
+	 * @param node The node
+	 * @return the end of the range, exclusive
+	 */
+	private int end(int node) {
+		while (nodes[2*node+1] == 0) {
+			node = nodes[2*node] + 1;
+		}
+		return nodes[2*node] + nodes[2*node+1];
+	}
+
+	/**
+	 * Finds the bounds of a triangle.
+	 * @param triangle	The triangle, numbered across the scene
+	 * @param box		Set to its smallest then largest coordinates
+	 */
+	public void getBounds(int triangle, double[] box) {
+		int m = meshOf(triangle);
+		Mesh mesh = meshes[m];
+		triangle -= firstTriangles[m];
+		for (int k = 0; k < 3; k++) {
+			box[k] = Double.POSITIVE_INFINITY;
+			box[k+3] = Double.NEGATIVE_INFINITY;
+			for (int corner = 0; corner < 3; corner++) {
+				double coord = mesh.getCoord(mesh.getIndex(triangle, corner), k);
+				box[k] = Math.min(box[k], coord);
+				box[k+3] = Math.max(box[k+3], coord);
+			}
+		}
+	}
+
+	/**
+	 * Finds the triangles whose bounds overlap an axis-aligned box.
+	 * @param minX	The smallest x coordinate of the box
+	 * @param minY	The smallest y coordinate of the box
+	 * @param minZ	The smallest z coordinate of the box
+	 * @param maxX	The largest x coordinate of the box
+	 * @param maxY	The largest y coordinate of the box
+	 * @param maxZ	The largest z coordinate of the box
+	 * @return the triangles, numbered across the scene, in no given order
+	 */
+	public int[] findInBox(final double minX, final double minY,
+			final double minZ, final double maxX, final double maxY,
+			final double maxZ) {
+		Query query = new Query() {
+
+			private double[] box = new double[6];
+
+			@Override
+			public int classify(float x0, float y0, float z0,
+					float x1, float y1, float z1) {
+				if (x0 > maxX || y0 > maxY || z0 > maxZ
+						|| x1 < minX || y1 < minY || z1 < minZ) {
+					return Frustum.OUTSIDE;
+				}
+				if (x0 >= minX && y0 >= minY && z0 >= minZ
+						&& x1 <= maxX && y1 <= maxY && z1 <= maxZ) {
+					return Frustum.INSIDE;
+				}
+				return Frustum.INTERSECTS;
+			}
+
+			@Override
+			public boolean visit(int triangle, boolean inside) {
+				if (!inside) {
+					getBounds(triangle, box);
+					if (box[0] > maxX || box[1] > maxY || box[2] > maxZ
+							|| box[3] < minX || box[4] < minY || box[5] < minZ) {
+						return true;
+					}
+				}
+				add(triangle);
+				return true;
+			}
+
+		};
+		traverse(query);
+		return query.toArray();
+	}
+
+	/**
+	 * Finds the triangles whose bounds may be seen in a frustum.
+	 * @param frustum The frustum
+	 * @return the triangles, numbered across the scene, in no given order
+	 * @see Frustum#classify(double, double, double, double, double, double)
+	 */
+	public int[] findInFrustum(final Frustum frustum) {
+		Query query = new Query() {
+
+			private double[] box = new double[6];
+
+			@Override
+			public int classify(float minX, float minY, float minZ,
+					float maxX, float maxY, float maxZ) {
+				return frustum.classify(minX, minY, minZ, maxX, maxY, maxZ);
+			}
+
+			@Override
+			public boolean visit(int triangle, boolean inside) {
+				if (!inside) {
+					getBounds(triangle, box);
+					if (frustum.classify(box[0], box[1], box[2],
+							box[3], box[4], box[5]) == Frustum.OUTSIDE) {
+						return true;
+					}
+				}
+				add(triangle);
+				return true;
+			}
+
+		};
+		traverse(query);
+		return query.toArray();
+	}
+
+	/**
+	 * Finds the first triangle hit by a ray. Triangles are hit from either
+	 * side. The nodes are opened nearest first, and the ones further than
+	 * the nearest hit found so far are skipped.
+	 * @param originX		The x coordinate of the origin of the ray
+	 * @param originY		The y coordinate of the origin of the ray
+	 * @param originZ		The z coordinate of the origin of the ray
+	 * @param directionX	The x coordinate of the direction of the ray
+	 * @param directionY	The y coordinate of the direction of the ray
+	 * @param directionZ	The z coordinate of the direction of the ray
+	 * @param distance		Holds the largest distance looked at, in
+	 * 						lengths of the direction, and is set to the
+	 * 						distance of the hit, if any
+	 * @return	the triangle, numbered across the scene, or -1 if none is
+	 * 			hit
+	 */
+	public int intersectRay(double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double[] distance) {
+		if (nodeCount == 0) {
+			return -1;
+		}
+		double[] ray = {originX, originY, originZ,
+				1/directionX, 1/directionY, 1/directionZ};
+		int hit = -1;
+		double nearest = distance[0];
+		int[] stack = new int[depth + 1];
+		double[] entries = new double[depth + 1];
+		int top = 0;
+		stack[top] = 0;
+		entries[top++] = entry(0, ray, nearest);
+		while (top > 0) {
+			top--;
+			int node = stack[top];
+			if (entries[top] >= nearest) {
+				continue;
+			}
+			int count = nodes[2*node+1];
+			if (count > 0) {
+				int first = nodes[2*node];
+				for (int i = first; i < first + count; i++) {
+					double t = intersect(triangles[i], originX, originY, originZ,
+							directionX, directionY, directionZ);
+					if (t < nearest) {
+						nearest = t;
+						hit = triangles[i];
+					}
+				}
+				continue;
+			}
+			int near = nodes[2*node];
+			int far = near + 1;
+			double nearEntry = entry(near, ray, nearest);
+			double farEntry = entry(far, ray, nearest);
+			//The nearest child is opened first
+			if (nearEntry > farEntry) {
+				near++;
+				far--;
+				double t = nearEntry;
+				nearEntry = farEntry;
+				farEntry = t;
+			}
+			if (farEntry < nearest) {
+				stack[top] = far;
+				entries[top++] = farEntry;
+			}
+			if (nearEntry < nearest) {
+				stack[top] = near;
+				entries[top++] = nearEntry;
+			}
+		}
+		if (hit >= 0) {
+			distance[0] = nearest;
+		}
+		return hit;
+	}
+
+	/**
+	 * Returns the distance at which a ray enters the bounds of a node.
+	 * @param node		The node
+	 * @param ray		The origin of the ray, and the inverse of each
+	 * 					coordinate of its direction
+	 * @param furthest	The largest distance looked at
+	 * @return	the distance, or positive infinity if the ray misses the
+	 * 			bounds
+	 */
+	private double entry(int node, double[] ray, double furthest) {
+		int b = 6*node;
+		double near = 0;
+		double far = furthest;
+		for (int k = 0; k < 3; k++) {
+			double t0 = (bounds[b+k] - ray[k])*ray[k+3];
+			double t1 = (bounds[b+k+3] - ray[k])*ray[k+3];
+			if (t0 > t1) {
+				double t = t0;
+				t0 = t1;
+				t1 = t;
+			}
+			//A ray along a side of the bounds gives NaN, and isn't stopped
+			if (t0 > near) {
+				near = t0;
+			}
+			if (t1 < far) {
+				far = t1;
+			}
+		}
+		return near <= far ? near : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the distance at which a ray hits a triangle, by the test of
+	 * M&ouml;ller and Trumbore.
+	 * @param triangle		The triangle, numbered across the scene
+	 * @param originX		The x coordinate of the origin of the ray
+	 * @param originY		The y coordinate of the origin of the ray
+	 * @param originZ		The z coordinate of the origin of the ray
+	 * @param directionX	The x coordinate of the direction of the ray
+	 * @param directionY	The y coordinate of the direction of the ray
+	 * @param directionZ	The z coordinate of the direction of the ray
+	 * @return	the distance, in lengths of the direction, or positive
+	 * 			infinity if the ray misses the triangle
+	 */
+	public double intersect(int triangle, double originX, double originY,
+			double originZ, double directionX, double directionY,
+			double directionZ) {
+		int m = meshOf(triangle);
+		Mesh mesh = meshes[m];
+		triangle -= firstTriangles[m];
+		int a = mesh.getIndex(triangle, 0);
+		int b = mesh.getIndex(triangle, 1);
+		int c = mesh.getIndex(triangle, 2);
+		double ax = mesh.getCoord(a, 0);
+		double ay = mesh.getCoord(a, 1);
+		double az = mesh.getCoord(a, 2);
+		double e1x = mesh.getCoord(b, 0) - ax;
+		double e1y = mesh.getCoord(b, 1) - ay;
+		double e1z = mesh.getCoord(b, 2) - az;
+		double e2x = mesh.getCoord(c, 0) - ax;
+		double e2y = mesh.getCoord(c, 1) - ay;
+		double e2z = mesh.getCoord(c, 2) - az;
+		double px = directionY*e2z - directionZ*e2y;
+		double py = directionZ*e2x - directionX*e2z;
+		double pz = directionX*e2y - directionY*e2x;
+		double det = e1x*px + e1y*py + e1z*pz;
+		if (det == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double inverse = 1/det;
+		double sx = originX - ax;
+		double sy = originY - ay;
+		double sz = originZ - az;
+		double u = (sx*px + sy*py + sz*pz)*inverse;
+		if (u < 0 || u > 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double qx = sy*e1z - sz*e1y;
+		double qy = sz*e1x - sx*e1z;
+		double qz = sx*e1y - sy*e1x;
+		double v = (directionX*qx + directionY*qy + directionZ*qz)*inverse;
+		if (v < 0 || u + v > 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double t = (e2x*qx + e2y*qy + e2z*qz)*inverse;
+		return t >= 0 ? t : Double.POSITIVE_INFINITY;
+	}
+
+}
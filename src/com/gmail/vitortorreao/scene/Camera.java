@@ -1,6 +1,8 @@
 package com.gmail.vitortorreao.scene;
 
 import com.gmail.vitortorreao.math.Matrix;
+import com.gmail.vitortorreao.math.Matrix3;
+import com.gmail.vitortorreao.math.Matrix4;
 import com.gmail.vitortorreao.math.Vector;
 import com.gmail.vitortorreao.math.Vertex;
 
@@ -215,6 +217,19 @@ public class Camera {
 		return toCaninocalBase;
 	}
 
+	/**
+	 * Returns the <code>Matrix4</code> which takes points of the scene to
+	 * the view volume of this <code>Camera</code>, built from its change
+	 * of base, focus, field of view, aspect and near and far planes.
+	 * @return the view-projection <code>Matrix4</code>
+	 * @see Matrix4#viewProjection(Matrix3, Vertex, double, double, double,
+	 * 		double)
+	 */
+	public Matrix4 getViewProjection() {
+		return Matrix4.viewProjection(Matrix3.fromMatrix(toViewBase), focus,
+				fovy, aspect, near, far);
+	}
+
 	public double getFovy() {
 		return fovy;
 	}
@@ -0,0 +1,249 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.Arrays;
+
+import com.gmail.vitortorreao.math.Frustum;
+
+/**
+ * This class implements a bounding volume hierarchy of the triangles of
+ * an object, so that the parts of it out of view aren't drawn. The
+ * triangles are grouped into clusters of {@link #CLUSTER_TRIANGLES}
+ * consecutive ones, which are drawn with a single call each, and the
+ * clusters are the leaves of a binary tree of bounding boxes, split at
+ * the median of the longest axis of their centers.
+ * <p>
+ * Culling walks the tree from its root: a node outside of the frustum is
+ * skipped with all of its clusters, and a node inside is drawn with all
+ * of them, so only the nodes which cross the sides of the frustum are
+ * opened. Their number grows with the depth of the tree, which is
+ * logarithmic in the number of clusters.
+ * <p>
+ * Since {@link IndexOptimizer} keeps the triangles which share vertices
+ * together, consecutive triangles are mostly close to each other, and
+ * so are the ones of a cluster.
+ * <p>
+ * The nodes are kept in flat arrays, in depth-first order: the first
+ * child of a node follows it, and the clusters under a node are a range
+ * of {@link #clusters}.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class ClusterHierarchy {
+
+	/**
+	 * Number of triangles of each cluster, but the last one
+	 */
+	public static final int CLUSTER_TRIANGLES = 1 << 12;
+
+	private int triangleCount;
+	private int clusterCount;
+	/**
+	 * The clusters, in the order of the leaves of the tree
+	 */
+	private int[] clusters;
+	/**
+	 * The bounds of each node, as its smallest then largest coordinates
+	 */
+	private float[] bounds;
+	/**
+	 * The range of {@link #clusters} under each node
+	 */
+	private int[] firstClusters;
+	private int[] lastClusters;
+	/**
+	 * The second child of each node, the first being the next node
+	 */
+	private int[] secondChildren;
+	private int nodeCount;
+
+	/**
+	 * Builds the hierarchy of the triangles of a <code>Mesh</code>
+	 * published so far.
+	 * @param mesh The <code>Mesh</code>
+	 */
+	public ClusterHierarchy(Mesh mesh) {
+		triangleCount = mesh.getTriangleCount();
+		clusterCount = (triangleCount + CLUSTER_TRIANGLES - 1)
+				/CLUSTER_TRIANGLES;
+		float[] clusterBounds = new float[6*clusterCount];
+		for (int c = 0; c < clusterCount; c++) {
+			float[] box = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+					Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+					Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+			int last = Math.min(triangleCount, (c + 1)*CLUSTER_TRIANGLES);
+			for (int t = c*CLUSTER_TRIANGLES; t < last; t++) {
+				for (int corner = 0; corner < 3; corner++) {
+					int v = mesh.getIndex(t, corner);
+					for (int k = 0; k < 3; k++) {
+						float coord = (float) mesh.getCoord(v, k);
+						box[k] = Math.min(box[k], coord);
+						box[k+3] = Math.max(box[k+3], coord);
+					}
+				}
+			}
+			System.arraycopy(box, 0, clusterBounds, 6*c, 6);
+		}
+
+		clusters = new int[clusterCount];
+		for (int c = 0; c < clusterCount; c++) {
+			clusters[c] = c;
+		}
+		int maxNodes = Math.max(2*clusterCount - 1, 0);
+		bounds = new float[6*maxNodes];
+		firstClusters = new int[maxNodes];
+		lastClusters = new int[maxNodes];
+		secondChildren = new int[maxNodes];
+		if (clusterCount > 0) {
+			build(clusterBounds, 0, clusterCount);
+		}
+	}
+
+	/**
+	 * Builds the node over a range of {@link #clusters}, and the nodes
+	 * under it.
+	 * @param clusterBounds	The bounds of each cluster
+	 * @param first			The first of the range
+	 * @param last			The end of the range, exclusive
+	 * @return the node
+	 */
+	private int build(float[] clusterBounds, int first, int last) {
+		int node = nodeCount++;
+		firstClusters[node] = first;
+		lastClusters[node] = last;
+		float[] centers = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (int k = 0; k < 3; k++) {
+			bounds[6*node + k] = Float.POSITIVE_INFINITY;
+			bounds[6*node + k + 3] = Float.NEGATIVE_INFINITY;
+		}
+		for (int i = first; i < last; i++) {
+			int c = 6*clusters[i];
+			for (int k = 0; k < 3; k++) {
+				bounds[6*node + k] = Math.min(bounds[6*node + k],
+						clusterBounds[c + k]);
+				bounds[6*node + k + 3] = Math.max(bounds[6*node + k + 3],
+						clusterBounds[c + k + 3]);
+				float center = (clusterBounds[c + k]
+						+ clusterBounds[c + k + 3])/2;
+				centers[k] = Math.min(centers[k], center);
+				centers[k+3] = Math.max(centers[k+3], center);
+			}
+		}
+		if (last - first == 1) {
+			secondChildren[node] = -1;
+			return node;
+		}
+
+		//Split at the median of the longest axis of the centers
+		int axis = 0;
+		for (int k = 1; k < 3; k++) {
+			if (centers[k+3] - centers[k] > centers[axis+3] - centers[axis]) {
+				axis = k;
+			}
+		}
+		long[] keys = new long[last - first];
+		for (int i = first; i < last; i++) {
+			int c = clusters[i];
+			float center = (clusterBounds[6*c + axis]
+					+ clusterBounds[6*c + axis + 3])/2;
+			//Bits of the center that sort like it as an int
+			int bits = Float.floatToIntBits(center);
+			bits ^= (bits >> 31) & Integer.MAX_VALUE;
+			keys[i - first] = (long) bits << 32 | c;
+		}
+		Arrays.sort(keys);
+		for (int i = first; i < last; i++) {
+			clusters[i] = (int) keys[i - first];
+		}
+		int middle = (first + last) >>> 1;
+		build(clusterBounds, first, middle);
+		secondChildren[node] = build(clusterBounds, middle, last);
+		return node;
+	}
+
+	/**
+	 * Returns the number of triangles of the hierarchy.
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Returns the number of clusters of the hierarchy.
+	 * @return the number of clusters
+	 */
+	public int getClusterCount() {
+		return clusterCount;
+	}
+
+	/**
+	 * Finds the triangles which may be seen in a frustum. They are
+	 * returned as ranges of consecutive triangles, in their order, each
+	 * one made of whole clusters.
+	 * @param frustum	The frustum
+	 * @param ranges	Filled with the first triangle and the number of
+	 * 					triangles of each range. It must hold at least
+	 * 					twice as many <code>int</code>s as there are
+	 * 					clusters, all of which may be overwritten.
+	 * @return the number of ranges
+	 */
+	public int cull(Frustum frustum, int[] ranges) {
+		if (clusterCount == 0) {
+			return 0;
+		}
+		//The visible clusters are gathered in the second half of the
+		//ranges, so nothing is allocated for each frame
+		int visible = clusterCount;
+		int visibleCount = 0;
+		//In depth-first order, the nodes under a node follow it, so the
+		//tree is walked without a stack
+		int node = 0;
+		while (node < nodeCount) {
+			int b = 6*node;
+			int result = frustum.classify(bounds[b], bounds[b+1], bounds[b+2],
+					bounds[b+3], bounds[b+4], bounds[b+5]);
+			int first = firstClusters[node];
+			int last = lastClusters[node];
+			if (result != Frustum.OUTSIDE &&
+					(result == Frustum.INSIDE || secondChildren[node] < 0)) {
+				for (int i = first; i < last; i++) {
+					ranges[visible + visibleCount++] = clusters[i];
+				}
+			}
+			if (result == Frustum.INTERSECTS && secondChildren[node] >= 0) {
+				node++;
+			} else {
+				//Skip the node and the ones under it, 2*n - 1 for n clusters
+				node += 2*(last - first) - 1;
+			}
+		}
+
+		//Consecutive clusters are drawn together. The ranges written
+		//for the first i + 1 clusters end before the next one to read.
+		Arrays.sort(ranges, visible, visible + visibleCount);
+		int count = 0;
+		for (int i = 0; i < visibleCount; i++) {
+			int first = ranges[visible + i]*CLUSTER_TRIANGLES;
+			int triangles = Math.min(CLUSTER_TRIANGLES, triangleCount - first);
+			if (count > 0 && ranges[2*count-2] + ranges[2*count-1] == first) {
+				ranges[2*count-1] += triangles;
+			} else {
+				ranges[2*count] = first;
+				ranges[2*count+1] = triangles;
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,493 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * This class implements a <code>Mesh</code> stored outside of the Java
+ * heap, in direct buffers, so that the heap doesn't grow with the size
+ * of the scene. The buffers can also be mapped from files, so that a
+ * mesh can even be larger than the memory, and is paged in and out by
+ * the operating system.
+ * <p>
+ * Coordinates and normals are stored as <code>float</code>s, in the
+ * native byte order, so they can be handed to OpenGL as they are.
+ * Since a buffer can't hold more than 2GB, an object can have at most
+ * {@link #MAX_VERTICES} vertices, and its indices are split into chunks
+ * of at most {@link #CHUNK_TRIANGLES} triangles.
+ * <p>
+ * The vertices are written first, then the triangles are appended in
+ * batches, which are published as they are appended.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class DirectMesh extends Mesh {
+
+	/**
+	 * Largest number of vertices of a mesh, whose coordinates must fit
+	 * in a single buffer
+	 */
+	public static final int MAX_VERTICES = Integer.MAX_VALUE / 12;
+
+	/**
+	 * Base 2 logarithm of the number of triangles of a chunk of indices
+	 */
+	private static final int CHUNK_SHIFT = 22;
+
+	/**
+	 * Largest number of triangles in a chunk of indices
+	 */
+	public static final int CHUNK_TRIANGLES = 1 << CHUNK_SHIFT;
+
+	private File directory;
+	private int numVertices;
+	private FloatBuffer positions;
+	private volatile FloatBuffer normals;
+	private volatile IntBuffer[] chunks;
+	private volatile int triangleCount;
+
+	/**
+	 * Instantiates a <code>DirectMesh</code> with room for its vertices,
+	 * whose coordinates are all 0 until they are written.
+	 * @param numVertices		The number of vertices
+	 * @param expectedTriangles	How many triangles the mesh will probably
+	 * 							have, which is only a hint
+	 * @param directory			The directory of the files to map the
+	 * 							buffers from, or <code>null</code> to
+	 * 							allocate them in memory
+	 * @throws IOException If a file can't be created or mapped
+	 */
+	public DirectMesh(int numVertices, int expectedTriangles, File directory)
+			throws IOException {
+		if (numVertices < 0 || numVertices > MAX_VERTICES) {
+			throw new IllegalArgumentException("A mesh stored off-heap "
+					+ "can have from 0 to "+MAX_VERTICES+" vertices, but "
+					+ "not "+numVertices);
+		}
+		this.directory = directory;
+		this.numVertices = numVertices;
+		this.positions = allocate(12L*numVertices).asFloatBuffer();
+		this.chunks = new IntBuffer[] {
+				allocateChunk(Math.max(1, Math.min(expectedTriangles,
+						CHUNK_TRIANGLES)))
+		};
+	}
+
+	/**
+	 * Instantiates a <code>DirectMesh</code> with the geometry of some
+	 * arrays.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param indices	The 0-based vertex indices, three per triangle
+	 * @param directory	The directory of the files to map the buffers
+	 * 					from, or <code>null</code> to allocate them in
+	 * 					memory
+	 * @return the mesh
+	 * @throws IOException If a file can't be created or mapped
+	 */
+	public static DirectMesh fromArrays(double[] positions, int[] indices,
+			File directory) throws IOException {
+		DirectMesh mesh = new DirectMesh(positions.length/3,
+				indices.length/3, directory);
+		for (int v = 0; v < mesh.numVertices; v++) {
+			mesh.setPosition(v, positions[3*v], positions[3*v+1],
+					positions[3*v+2]);
+		}
+		mesh.updateBounds();
+		mesh.appendTriangles(indices, indices.length/3);
+		return mesh;
+	}
+
+	/**
+	 * Allocates a buffer, mapped from a new file of the directory if
+	 * there is one. The file is deleted right away, or when the program
+	 * ends where files in use can't be deleted, and its space is freed
+	 * once the buffer is no longer used.
+	 * @param bytes The size of the buffer
+	 * @return the buffer, in the native byte order
+	 * @throws IOException If the file can't be created or mapped
+	 */
+	private ByteBuffer allocate(long bytes) throws IOException {
+		if (directory == null) {
+			return ByteBuffer.allocateDirect((int) bytes)
+					.order(ByteOrder.nativeOrder());
+		}
+		File file = File.createTempFile("mesh", ".bin", directory);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			//The mapping stays valid once the file is closed
+			return raf.getChannel().map(MapMode.READ_WRITE, 0, bytes)
+					.order(ByteOrder.nativeOrder());
+		} finally {
+			raf.close();
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Allocates a chunk of indices.
+	 * @param triangles The number of triangles the chunk can hold
+	 * @return the chunk
+	 * @throws IOException If a file can't be created or mapped
+	 */
+	private IntBuffer allocateChunk(int triangles) throws IOException {
+		return allocate(12L*triangles).asIntBuffer();
+	}
+
+	@Override
+	public boolean isOffHeap() {
+		return true;
+	}
+
+	/**
+	 * Writes the coordinates of one of the vertices. Once all of them
+	 * are written, the bounds are set with {@link #updateBounds()}.
+	 * @param vertex	The 0-based index of the vertex
+	 * @param x			The first coordinate
+	 * @param y			The second coordinate
+	 * @param z			The third coordinate
+	 */
+	public void setPosition(int vertex, double x, double y, double z) {
+		positions.put(3*vertex, (float) x);
+		positions.put(3*vertex+1, (float) y);
+		positions.put(3*vertex+2, (float) z);
+	}
+
+	/**
+	 * Appends triangles to the mesh and publishes them. The triangles
+	 * are copied, so the array can be reused afterwards.
+	 * @param indices	The 0-based vertex indices of the triangles,
+	 * 					three per triangle
+	 * @param count		The number of triangles to append, from the
+	 * 					start of the array
+	 * @throws IOException If a chunk can't be created or mapped
+	 */
+	public void appendTriangles(int[] indices, int count)
+			throws IOException {
+		int first = triangleCount;
+		if ((long) first + count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A mesh can't have more "
+					+ "than "+Integer.MAX_VALUE+" triangles");
+		}
+		IntBuffer[] chunks = this.chunks;
+		int copied = 0;
+		while (copied < count) {
+			int t = first + copied;
+			int c = t >>> CHUNK_SHIFT;
+			int offset = t & (CHUNK_TRIANGLES - 1);
+			if (c == chunks.length) {
+				chunks = Arrays.copyOf(chunks, c + 1);
+				chunks[c] = allocateChunk(Math.min(CHUNK_TRIANGLES,
+						count - copied));
+			} else if (offset == chunks[c].capacity()/3) {
+				//The last chunk is full, but smaller than the others
+				chunks[c] = grow(chunks[c], offset, count - copied);
+			}
+			int n = Math.min(count - copied, chunks[c].capacity()/3 - offset);
+			IntBuffer chunk = chunks[c].duplicate();
+			chunk.position(3*offset);
+			chunk.put(indices, 3*copied, 3*n);
+			copied += n;
+		}
+		//The indices are written before the count which makes them visible
+		this.chunks = chunks;
+		this.triangleCount = first + count;
+		trianglesChanged();
+	}
+
+	/**
+	 * Replaces the last chunk of indices by a larger one.
+	 * @param chunk		The chunk, which is full
+	 * @param triangles	The number of triangles in the chunk
+	 * @param needed	The number of triangles still to be appended
+	 * @return the new chunk, with the triangles of the old one
+	 * @throws IOException If the chunk can't be created or mapped
+	 */
+	private IntBuffer grow(IntBuffer chunk, int triangles, int needed)
+			throws IOException {
+		long capacity = Math.max((long) triangles + needed, 2L*triangles);
+		IntBuffer grown = allocateChunk(
+				(int) Math.min(CHUNK_TRIANGLES, capacity));
+		IntBuffer source = chunk.duplicate();
+		source.position(0).limit(3*triangles);
+		grown.duplicate().put(source);
+		return grown;
+	}
+
+	/**
+	 * Replaces the triangles of this mesh. They are written into new
+	 * chunks, which replace the old ones only once they are complete, so
+	 * that the mesh can be drawn meanwhile. The new chunks have room for
+	 * the old count too, for readers which still have it; the triangles
+	 * past the new count are degenerate.
+	 * @param indices The indices, three per triangle
+	 */
+	@Override
+	public void setIndices(int[] indices) {
+		int count = indices.length/3;
+		int capacity = Math.max(count, triangleCount);
+		IntBuffer[] chunks = new IntBuffer[Math.max(1,
+				(int) (((long) capacity + CHUNK_TRIANGLES - 1) >> CHUNK_SHIFT))];
+		try {
+			for (int c = 0; c < chunks.length; c++) {
+				int first = c << CHUNK_SHIFT;
+				chunks[c] = allocateChunk(Math.max(1,
+						Math.min(CHUNK_TRIANGLES, capacity - first)));
+				int n = Math.min(CHUNK_TRIANGLES, count - first);
+				if (n > 0) {
+					chunks[c].duplicate().put(indices, 3*first, 3*n);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not store the triangles: "
+					+ e.getMessage(), e);
+		}
+		//The indices are written before the count which makes them visible
+		this.chunks = chunks;
+		this.triangleCount = count;
+		trianglesChanged();
+	}
+
+	/**
+	 * Not supported, triangles are appended with
+	 * {@link #appendTriangles(int[], int)}.
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void publishTriangles(int[] indices, int count) {
+		throw new UnsupportedOperationException("The triangles of a mesh "
+				+ "stored off-heap are appended");
+	}
+
+	/**
+	 * Returns a copy of the coordinates of the vertices, which always
+	 * fit in an array since there are at most {@link #MAX_VERTICES}.
+	 * @return the coordinates, three per vertex
+	 */
+	@Override
+	public double[] getPositions() {
+		return toDoubles(positions);
+	}
+
+	/**
+	 * Returns a copy of the normals of the vertices.
+	 * @return	the normals, three coordinates per vertex, or
+	 * 			<code>null</code> if they aren't known yet
+	 */
+	@Override
+	public double[] getNormals() {
+		FloatBuffer normals = this.normals;
+		return normals == null ? null : toDoubles(normals);
+	}
+
+	/**
+	 * Copies the coordinates of the vertices from a buffer.
+	 * @param buffer The buffer, three <code>float</code>s per vertex
+	 * @return the coordinates
+	 */
+	private double[] toDoubles(FloatBuffer buffer) {
+		double[] array = new double[3*numVertices];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = buffer.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Returns a copy of the indices of the triangles published so far.
+	 * @return the indices, three per triangle
+	 * @throws UnsupportedOperationException If there are too many of
+	 * 			them for an array
+	 */
+	@Override
+	public int[] getIndices() {
+		//The count is read before the chunks which it makes visible
+		int count = triangleCount;
+		IntBuffer[] chunks = this.chunks;
+		if (3L*count > Integer.MAX_VALUE - 8) {
+			throw new UnsupportedOperationException("The "+count
+					+ " triangles of the mesh don't fit in an array");
+		}
+		int[] indices = new int[3*count];
+		for (int c = 0; c << CHUNK_SHIFT < count; c++) {
+			int first = c << CHUNK_SHIFT;
+			IntBuffer chunk = chunks[c].duplicate();
+			chunk.position(0);
+			chunk.get(indices, 3*first,
+					3*Math.min(CHUNK_TRIANGLES, count - first));
+		}
+		return indices;
+	}
+
+	/**
+	 * Returns the buffer of the coordinates of the vertices, three
+	 * <code>float</code>s per vertex. The buffer must not be changed.
+	 * @return the buffer
+	 */
+	public FloatBuffer getPositionBuffer() {
+		return positions;
+	}
+
+	/**
+	 * Returns the buffer of the normals of the vertices, three
+	 * <code>float</code>s per vertex. The buffer must not be changed.
+	 * @return	the buffer, or <code>null</code> if the normals aren't
+	 * 			known yet
+	 */
+	public FloatBuffer getNormalBuffer() {
+		return normals;
+	}
+
+	/**
+	 * Returns one of the chunks of indices. Chunk <code>c</code> holds
+	 * the triangles from <code>c*CHUNK_TRIANGLES</code> on, three indices
+	 * per triangle. It may be longer than the triangles published so far.
+	 * The buffer must not be changed.
+	 * @param chunk The 0-based index of the chunk
+	 * @return the chunk
+	 */
+	public IntBuffer getIndexChunk(int chunk) {
+		return chunks[chunk];
+	}
+
+	@Override
+	public int getVertexCount() {
+		return numVertices;
+	}
+
+	@Override
+	public double getCoord(int vertex, int k) {
+		return positions.get(3*vertex+k);
+	}
+
+	@Override
+	public boolean hasNormals() {
+		return normals != null;
+	}
+
+	@Override
+	public double getNormal(int vertex, int k) {
+		return normals.get(3*vertex+k);
+	}
+
+	@Override
+	public void setNormals(double[] normals) {
+		try {
+			FloatBuffer buffer = allocate(12L*numVertices).asFloatBuffer();
+			for (int i = 0; i < 3*numVertices; i++) {
+				buffer.put(i, (float) normals[i]);
+			}
+			this.normals = buffer;
+			normalsChanged();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not store the normals: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public int getIndex(int triangle, int corner) {
+		return chunks[triangle >>> CHUNK_SHIFT].get(
+				3*(triangle & (CHUNK_TRIANGLES - 1)) + corner);
+	}
+
+	@Override
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	@Override
+	public void faceNormal(int triangle, double[] normal) {
+		int v0 = getIndex(triangle, 0);
+		int v1 = getIndex(triangle, 1);
+		int v2 = getIndex(triangle, 2);
+		double ax = getCoord(v1, 0) - getCoord(v0, 0);
+		double ay = getCoord(v1, 1) - getCoord(v0, 1);
+		double az = getCoord(v1, 2) - getCoord(v0, 2);
+		double bx = getCoord(v2, 0) - getCoord(v0, 0);
+		double by = getCoord(v2, 1) - getCoord(v0, 1);
+		double bz = getCoord(v2, 2) - getCoord(v0, 2);
+		normal[0] = (ay*bz) - (az*by);
+		normal[1] = (az*bx) - (ax*bz);
+		normal[2] = (ax*by) - (ay*bx);
+		normalize(normal, 0);
+	}
+
+	/**
+	 * Calculates the normals of the vertices, the same way as
+	 * <code>Mesh</code> does, accumulating them into a new buffer.
+	 * @throws IllegalStateException If the buffer can't be created
+	 */
+	@Override
+	public void calculateNormals() {
+		FloatBuffer normals;
+		try {
+			normals = allocate(12L*numVertices).asFloatBuffer();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not store the normals: "
+					+ e.getMessage(), e);
+		}
+		int count = triangleCount;
+		double[] face = new double[3];
+		//Accumulate the face normals on each of their vertices
+		for (int t = 0; t < count; t++) {
+			faceNormal(t, face);
+			int i0 = getIndex(t, 0);
+			int i1 = getIndex(t, 1);
+			int i2 = getIndex(t, 2);
+			accumulate(normals, i0, face);
+			//A vertex repeated in the same triangle only counts once
+			if (i1 != i0) {
+				accumulate(normals, i1, face);
+			}
+			if (i2 != i0 && i2 != i1) {
+				accumulate(normals, i2, face);
+			}
+		}
+
+		//Each vertex normal is the normalized sum of its faces' normals
+		double[] sum = new double[3];
+		for (int v = 0; v < numVertices; v++) {
+			for (int k = 0; k < 3; k++) {
+				sum[k] = normals.get(3*v+k);
+			}
+			normalize(sum, 0);
+			for (int k = 0; k < 3; k++) {
+				normals.put(3*v+k, (float) sum[k]);
+			}
+		}
+		this.normals = normals;
+		normalsChanged();
+	}
+
+	/**
+	 * Adds the normal of a face to the normal of one of its vertices.
+	 * @param normals	The buffer of the normals
+	 * @param vertex	The 0-based index of the vertex
+	 * @param face		The normal of the face
+	 */
+	private static void accumulate(FloatBuffer normals, int vertex,
+			double[] face) {
+		for (int k = 0; k < 3; k++) {
+			normals.put(3*vertex+k,
+					(float) (normals.get(3*vertex+k) + face[k]));
+		}
+	}
+
+}
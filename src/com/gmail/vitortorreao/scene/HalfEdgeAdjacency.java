@@ -0,0 +1,446 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements the adjacency of the triangles of a
+ * <code>Mesh</code>, as half-edges kept in arrays of <code>int</code>s.
+ * <p>
+ * Each triangle has three half-edges, one per corner, going from the
+ * vertex of that corner to the vertex of the next one. The half-edge of
+ * corner <i>c</i> of triangle <i>t</i> is <code>3*t + c</code>, so the
+ * triangle, the next half-edge and the previous one are computed, not
+ * stored. What is stored is the twin of each half-edge, the half-edge of
+ * the neighbouring triangle which goes the opposite way along the same
+ * edge, and one of the half-edges which leave each vertex.
+ * <p>
+ * A half-edge with no twin is on the boundary of the mesh. Instead of a
+ * twin, it holds the next half-edge along its boundary loop, so that
+ * loops are walked in constant time per step. Edges shared by more than
+ * two triangles, or by two triangles which don't agree on their
+ * orientation, are treated as boundaries too.
+ * <p>
+ * The twins are paired by sorting the half-edges by the vertices of
+ * their edges with counting sorts, so the adjacency is built in linear
+ * time in the number of triangles and vertices. It reflects the triangles of the mesh when it was built;
+ * see {@link Mesh#getHalfEdges()}.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class HalfEdgeAdjacency {
+
+	/**
+	 * Marks a half-edge whose twin isn't known yet, and the lack of a
+	 * half-edge in the results
+	 */
+	private static final int NONE = -1;
+
+	private int triangleCount;
+	private int vertexCount;
+	private int[] origins;
+	private int[] twins;
+	private int[] outgoing;
+
+	/**
+	 * Builds the adjacency of the triangles published so far by a
+	 * <code>Mesh</code>. The indices of a <code>Mesh</code> on the heap
+	 * are shared, and the ones of a <code>Mesh</code> off the heap are
+	 * copied.
+	 * @param mesh The <code>Mesh</code>
+	 */
+	public HalfEdgeAdjacency(Mesh mesh) {
+		//The count is read before the indices which it makes visible
+		this.triangleCount = mesh.getTriangleCount();
+		this.vertexCount = mesh.getVertexCount();
+		int n = 3*triangleCount;
+		if (n == 0) {
+			this.origins = new int[0];
+		} else if (mesh.isOffHeap()) {
+			this.origins = new int[n];
+			for (int h = 0; h < n; h++) {
+				origins[h] = mesh.getIndex(h/3, h%3);
+			}
+		} else {
+			this.origins = mesh.getIndices();
+		}
+		this.twins = new int[n];
+		Arrays.fill(twins, NONE);
+		pairTwins();
+		findOutgoing();
+		linkBoundaries();
+	}
+
+	/**
+	 * Pairs each half-edge with the one going the opposite way along the
+	 * same edge, if there is exactly one. The half-edges are sorted by
+	 * the larger vertex of their edge, then by the smaller one, with two
+	 * counting sorts, so the half-edges of each edge end up next to each
+	 * other.
+	 */
+	private void pairTwins() {
+		int n = 3*triangleCount;
+		int[] halfEdges = new int[n];
+		int size = 0;
+		for (int h = 0; h < n; h++) {
+			//A degenerate edge has no twin
+			if (origins[h] != origins[getNext(h)]) {
+				halfEdges[size++] = h;
+			}
+		}
+		int[] sorted = new int[size];
+		sortByVertex(halfEdges, sorted, size, false);
+		sortByVertex(sorted, halfEdges, size, true);
+		for (int i = 0; i < size; ) {
+			int h = halfEdges[i];
+			int min = Math.min(origins[h], origins[getNext(h)]);
+			int max = Math.max(origins[h], origins[getNext(h)]);
+			int end = i + 1;
+			while (end < size && hasEdge(halfEdges[end], min, max)) {
+				end++;
+			}
+			//An edge shared by more triangles is left as a boundary
+			if (end == i + 2) {
+				int g = halfEdges[i + 1];
+				if (origins[g] != origins[h]) {
+					twins[g] = h;
+					twins[h] = g;
+				}
+			}
+			i = end;
+		}
+	}
+
+	/**
+	 * Sorts half-edges by one of the vertices of their edge, keeping the
+	 * order of the ones with the same vertex.
+	 * @param from		The half-edges
+	 * @param to		The array to store the sorted half-edges into
+	 * @param size		The number of half-edges
+	 * @param bySmaller	Whether to sort by the smaller vertex of each edge
+	 * 					rather than the larger one
+	 */
+	private void sortByVertex(int[] from, int[] to, int size,
+			boolean bySmaller) {
+		int[] starts = new int[vertexCount + 1];
+		for (int i = 0; i < size; i++) {
+			starts[vertex(from[i], bySmaller) + 1]++;
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			starts[v + 1] += starts[v];
+		}
+		for (int i = 0; i < size; i++) {
+			to[starts[vertex(from[i], bySmaller)]++] = from[i];
+		}
+	}
+
+	/**
+	 * Returns one of the vertices of the edge of a half-edge.
+	 * @param h			The half-edge
+	 * @param smaller	Whether to return the smaller vertex rather than the
+	 * 					larger one
+	 * @return the 0-based index of the vertex
+	 */
+	private int vertex(int h, boolean smaller) {
+		int a = origins[h];
+		int b = origins[getNext(h)];
+		return smaller == (a < b) ? a : b;
+	}
+
+	/**
+	 * Tells whether a half-edge lies along an edge.
+	 * @param h		The half-edge
+	 * @param min	The smaller vertex of the edge
+	 * @param max	The larger vertex of the edge
+	 * @return <code>true</code> if the half-edge joins the two vertices
+	 */
+	private boolean hasEdge(int h, int min, int max) {
+		int a = origins[h];
+		int b = origins[getNext(h)];
+		return (a == min && b == max) || (a == max && b == min);
+	}
+
+	/**
+	 * Chooses a half-edge leaving each vertex. On the boundary, the one
+	 * chosen has no twin, so that turning around the vertex from it
+	 * visits all of its triangles.
+	 */
+	private void findOutgoing() {
+		outgoing = new int[vertexCount];
+		Arrays.fill(outgoing, NONE);
+		for (int h = 0; h < twins.length; h++) {
+			int v = origins[h];
+			if (outgoing[v] == NONE || twins[h] == NONE) {
+				outgoing[v] = h;
+			}
+		}
+	}
+
+	/**
+	 * Stores into each half-edge with no twin the next half-edge along
+	 * its boundary loop, encoded as a negative number. The next one leaves
+	 * the vertex this one ends at, and is found by turning around that
+	 * vertex until a half-edge with no twin is reached.
+	 */
+	private void linkBoundaries() {
+		for (int h = 0; h < twins.length; h++) {
+			if (twins[h] != NONE) {
+				continue;
+			}
+			int g = getNext(h);
+			while (twins[g] >= 0) {
+				g = getNext(twins[g]);
+			}
+			twins[h] = encodeBoundary(g);
+		}
+	}
+
+	/**
+	 * Encodes the next half-edge along a boundary loop, so that it can be
+	 * told apart from a twin.
+	 * @param h The next half-edge
+	 * @return the code, which is negative and never <code>NONE</code>
+	 */
+	private static int encodeBoundary(int h) {
+		return -2 - h;
+	}
+
+	/**
+	 * Returns the number of triangles whose adjacency is known.
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Returns the number of half-edges, three per triangle.
+	 * @return the number of half-edges
+	 */
+	public int getHalfEdgeCount() {
+		return twins.length;
+	}
+
+	/**
+	 * Returns the half-edge of a corner of a triangle.
+	 * @param triangle	The 0-based index of the triangle
+	 * @param corner	The corner of the triangle, from 0 to 2
+	 * @return the half-edge which leaves that corner
+	 */
+	public static int getHalfEdge(int triangle, int corner) {
+		return 3*triangle + corner;
+	}
+
+	/**
+	 * Returns the triangle a half-edge belongs to.
+	 * @param halfEdge The half-edge
+	 * @return the 0-based index of the triangle
+	 */
+	public static int getTriangle(int halfEdge) {
+		return halfEdge/3;
+	}
+
+	/**
+	 * Returns the next half-edge of the same triangle, which leaves the
+	 * vertex this one ends at.
+	 * @param halfEdge The half-edge
+	 * @return the next half-edge
+	 */
+	public static int getNext(int halfEdge) {
+		return halfEdge%3 == 2 ? halfEdge - 2 : halfEdge + 1;
+	}
+
+	/**
+	 * Returns the previous half-edge of the same triangle, which ends at
+	 * the vertex this one leaves.
+	 * @param halfEdge The half-edge
+	 * @return the previous half-edge
+	 */
+	public static int getPrevious(int halfEdge) {
+		return halfEdge%3 == 0 ? halfEdge + 2 : halfEdge - 1;
+	}
+
+	/**
+	 * Returns the vertex a half-edge leaves.
+	 * @param halfEdge The half-edge
+	 * @return the 0-based index of the vertex
+	 */
+	public int getOrigin(int halfEdge) {
+		return origins[halfEdge];
+	}
+
+	/**
+	 * Returns the vertex a half-edge ends at.
+	 * @param halfEdge The half-edge
+	 * @return the 0-based index of the vertex
+	 */
+	public int getDestination(int halfEdge) {
+		return origins[getNext(halfEdge)];
+	}
+
+	/**
+	 * Returns the half-edge of the neighbouring triangle which goes the
+	 * opposite way along the same edge.
+	 * @param halfEdge The half-edge
+	 * @return the twin, or -1 if the half-edge is on a boundary
+	 */
+	public int getTwin(int halfEdge) {
+		int twin = twins[halfEdge];
+		return twin >= 0 ? twin : NONE;
+	}
+
+	/**
+	 * Tells whether a half-edge is on a boundary of the mesh.
+	 * @param halfEdge The half-edge
+	 * @return <code>true</code> if the half-edge has no twin
+	 */
+	public boolean isBoundary(int halfEdge) {
+		return twins[halfEdge] < 0;
+	}
+
+	/**
+	 * Returns the triangle across one of the edges of a triangle.
+	 * @param triangle	The 0-based index of the triangle
+	 * @param corner	The corner the edge leaves, from 0 to 2
+	 * @return	the 0-based index of the other triangle, or -1 if the edge
+	 * 			is on a boundary
+	 */
+	public int getOppositeTriangle(int triangle, int corner) {
+		int twin = twins[getHalfEdge(triangle, corner)];
+		return twin >= 0 ? getTriangle(twin) : NONE;
+	}
+
+	/**
+	 * Returns the next half-edge along the boundary loop of a half-edge
+	 * on a boundary.
+	 * @param halfEdge The half-edge, which has no twin
+	 * @return	the next half-edge, which leaves the vertex this one ends
+	 * 			at, or -1 if the half-edge isn't on a boundary
+	 */
+	public int getNextBoundary(int halfEdge) {
+		int twin = twins[halfEdge];
+		return twin < 0 ? -2 - twin : NONE;
+	}
+
+	/**
+	 * Returns a half-edge which leaves a vertex. For a vertex on a
+	 * boundary, it is on the boundary too, so that the whole one-ring of
+	 * the vertex is visited by turning from it with
+	 * {@link #getNextOutgoing(int)}:
+	 * <pre>
+	 * int start = adjacency.getOutgoing(v);
+	 * for (int h = start; h != -1; h = adjacency.getNextOutgoing(h)) {
+	 * 	//Visit adjacency.getDestination(h)
+	 * 	if (adjacency.getNextOutgoing(h) == start) break;
+	 * }
+	 * </pre>
+	 * @param vertex The 0-based index of the vertex
+	 * @return the half-edge, or -1 if no triangle uses the vertex
+	 */
+	public int getOutgoing(int vertex) {
+		return outgoing[vertex];
+	}
+
+	/**
+	 * Turns around the vertex a half-edge leaves, to the half-edge which
+	 * leaves it in the next triangle.
+	 * @param halfEdge The half-edge
+	 * @return	the next half-edge which leaves the same vertex, or -1 if
+	 * 			the previous half-edge of the triangle is on a boundary
+	 */
+	public int getNextOutgoing(int halfEdge) {
+		int twin = twins[getPrevious(halfEdge)];
+		return twin >= 0 ? twin : NONE;
+	}
+
+	/**
+	 * Returns the number of vertices which share an edge with a vertex.
+	 * @param vertex The 0-based index of the vertex
+	 * @return the valence of the vertex
+	 */
+	public int getValence(int vertex) {
+		return getOneRing(vertex, null);
+	}
+
+	/**
+	 * Finds the vertices which share an edge with a vertex, in order
+	 * around it. Where two or more fans of triangles only meet at the
+	 * vertex, only the fan of {@link #getOutgoing(int)} is visited.
+	 * @param vertex The 0-based index of the vertex
+	 * @return the 0-based indices of the vertices
+	 */
+	public int[] getOneRing(int vertex) {
+		int[] ring = new int[getValence(vertex)];
+		getOneRing(vertex, ring);
+		return ring;
+	}
+
+	/**
+	 * Finds the vertices which share an edge with a vertex, in order
+	 * around it, or only counts them.
+	 * @param vertex	The 0-based index of the vertex
+	 * @param ring		The array to store the vertices into, or
+	 * 					<code>null</code> to only count them
+	 * @return the number of vertices
+	 */
+	private int getOneRing(int vertex, int[] ring) {
+		int start = outgoing[vertex];
+		int count = 0;
+		int h = start;
+		while (h != NONE) {
+			if (ring != null) {
+				ring[count] = getDestination(h);
+			}
+			count++;
+			int next = getNextOutgoing(h);
+			if (next == NONE) {
+				//The last triangle before the boundary has one more
+				if (ring != null) {
+					ring[count] = getOrigin(getPrevious(h));
+				}
+				count++;
+			}
+			if (next == start) {
+				break;
+			}
+			h = next;
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the boundary loops of the mesh. A closed mesh has none.
+	 * @return	the loops, each as the 0-based indices of its vertices, in
+	 * 			order along the loop
+	 */
+	public List<int[]> getBoundaryLoops() {
+		List<int[]> loops = new ArrayList<int[]>();
+		boolean[] visited = new boolean[twins.length];
+		int[] loop = new int[16];
+		for (int h = 0; h < twins.length; h++) {
+			if (visited[h] || !isBoundary(h)) {
+				continue;
+			}
+			int size = 0;
+			for (int g = h; !visited[g]; g = getNextBoundary(g)) {
+				visited[g] = true;
+				if (size == loop.length) {
+					loop = Arrays.copyOf(loop, 2*size);
+				}
+				loop[size++] = origins[g];
+			}
+			loops.add(Arrays.copyOf(loop, size));
+		}
+		return loops;
+	}
+
+}
@@ -0,0 +1,559 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.Arrays;
+
+/**
+ * This class reorders the triangles of an object so that the graphics
+ * card draws them faster. The vertices the card transforms are kept in
+ * a small cache, and a triangle whose vertices are still in it costs
+ * less to draw, but the order of a .byu file usually has little to do
+ * with it. The triangles are reordered in two steps:
+ * <ol>
+ * <li>Tom Forsyth's linear-speed vertex cache optimisation. Each vertex
+ * is scored by its position in a simulated LRU cache and by how many of
+ * its triangles are left, and the next triangle is the one of the
+ * cached vertices whose vertices score the most. When none of them has
+ * triangles left, the cache is restarted from the triangle left whose
+ * first vertex comes first.</li>
+ * <li>The triangles are then split into clusters, at the restarts of the
+ * cache and wherever a cluster has reached the miss ratio of the rest of
+ * its restart, and the clusters are sorted so that the ones which face
+ * out of the object are drawn first. They hide the ones behind them,
+ * which are then discarded by the depth test instead of being shaded,
+ * while the vertex cache is barely affected, since clusters start where
+ * it is cold anyway.</li>
+ * </ol>
+ * Both steps take linear time. How well the cache is used is measured
+ * by the average cache miss ratio, or ACMR, the number of vertices
+ * transformed per triangle, in a FIFO cache of {@link #FIFO_SIZE}
+ * vertices. It lies between about 0.5 and 3.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class IndexOptimizer {
+
+	/**
+	 * Number of vertices of the FIFO cache the ACMR is measured with
+	 */
+	public static final int FIFO_SIZE = 16;
+
+	/**
+	 * Number of vertices of the LRU cache simulated while reordering
+	 */
+	private static final int CACHE_SIZE = 32;
+
+	/**
+	 * Largest number of triangles left of a vertex which scores more
+	 * than the others
+	 */
+	private static final int MAX_VALENCE = 64;
+
+	/**
+	 * How much a cluster's miss ratio may exceed the one of the rest of
+	 * its restart when it is split off
+	 */
+	private static final double CLUSTER_THRESHOLD = 1.05;
+
+	/**
+	 * Score of a vertex by its position in the cache. The vertices of
+	 * the last triangle score a fixed amount, so that the next triangle
+	 * doesn't just reuse its edge, and the others less the older they are.
+	 */
+	private static final float[] CACHE_SCORES = new float[CACHE_SIZE];
+
+	/**
+	 * Score of a vertex by how many of its triangles are left, which
+	 * favours the vertices that would otherwise be left alone
+	 */
+	private static final float[] VALENCE_SCORES = new float[MAX_VALENCE + 1];
+
+	static {
+		for (int i = 0; i < CACHE_SIZE; i++) {
+			CACHE_SCORES[i] = i < 3 ? 0.75f : (float) Math.pow(
+					1.0 - (i - 3)/(double) (CACHE_SIZE - 3), 1.5);
+		}
+		for (int i = 1; i <= MAX_VALENCE; i++) {
+			VALENCE_SCORES[i] = (float) (2.0*Math.pow(i, -0.5));
+		}
+	}
+
+	private double acmrBefore;
+	private double acmrAfter;
+	private int clusterCount;
+	private int[] live;
+	private int[] offsets;
+	private int[] adjacency;
+	private float[] vertexScores;
+	private float[] triangleScores;
+	private int[] cache;
+	private int[] newCache;
+	private int cacheSize;
+
+	/**
+	 * Reorders the triangles of an object. Neither array is modified.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param indices	The 0-based vertex indices, three per triangle
+	 * @return the same triangles, with the same winding, reordered
+	 */
+	public int[] optimize(double[] positions, int[] indices) {
+		int vertexCount = positions.length/3;
+		acmrBefore = acmr(indices, vertexCount);
+		int[] reordered = optimizeVertexCache(
+				sortByVertex(indices, vertexCount), vertexCount);
+		reordered = optimizeOverdraw(positions, reordered);
+		acmrAfter = acmr(reordered, vertexCount);
+		return reordered;
+	}
+
+	/**
+	 * Returns the ACMR of the triangles given to the last
+	 * {@link #optimize(double[], int[])}.
+	 * @return the ACMR before reordering
+	 */
+	public double getAcmrBefore() {
+		return acmrBefore;
+	}
+
+	/**
+	 * Returns the ACMR of the triangles returned by the last
+	 * {@link #optimize(double[], int[])}.
+	 * @return the ACMR after reordering
+	 */
+	public double getAcmrAfter() {
+		return acmrAfter;
+	}
+
+	/**
+	 * Returns the number of clusters the triangles were sorted in by
+	 * the last {@link #optimize(double[], int[])}.
+	 * @return the number of clusters
+	 */
+	public int getClusterCount() {
+		return clusterCount;
+	}
+
+	/**
+	 * Measures how well triangles use a FIFO cache of
+	 * {@link #FIFO_SIZE} vertices.
+	 * @param indices		The 0-based vertex indices, three per triangle
+	 * @param vertexCount	The number of vertices
+	 * @return	the average number of vertices missing from the cache
+	 * 			per triangle, or 0 if there are no triangles
+	 */
+	public static double acmr(int[] indices, int vertexCount) {
+		int triangles = indices.length/3;
+		if (triangles == 0) {
+			return 0;
+		}
+		int[] stamps = new int[vertexCount];
+		int time = FIFO_SIZE;
+		long misses = 0;
+		for (int i = 0; i < 3*triangles; i++) {
+			int v = indices[i];
+			if (time - stamps[v] >= FIFO_SIZE) {
+				stamps[v] = ++time;
+				misses++;
+			}
+		}
+		return misses/(double) triangles;
+	}
+
+	/**
+	 * Sorts triangles by their first vertex, so that the triangles around
+	 * a vertex are stored close to each other, which the vertices of most
+	 * objects are too. Reordering then reads memory in a far less random
+	 * order when the triangles of a file are shuffled.
+	 * @param indices		The 0-based vertex indices, three per triangle
+	 * @param vertexCount	The number of vertices
+	 * @return the sorted indices
+	 */
+	private static int[] sortByVertex(int[] indices, int vertexCount) {
+		int triangles = indices.length/3;
+		int[] starts = new int[vertexCount + 1];
+		for (int t = 0; t < triangles; t++) {
+			starts[indices[3*t] + 1]++;
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			starts[v + 1] += starts[v];
+		}
+		int[] sorted = new int[3*triangles];
+		for (int t = 0; t < triangles; t++) {
+			int i = 3*starts[indices[3*t]]++;
+			sorted[i] = indices[3*t];
+			sorted[i+1] = indices[3*t+1];
+			sorted[i+2] = indices[3*t+2];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Reorders triangles with Forsyth's algorithm.
+	 * @param indices		The 0-based vertex indices, three per triangle
+	 * @param vertexCount	The number of vertices
+	 * @return the reordered indices
+	 */
+	private int[] optimizeVertexCache(int[] indices, int vertexCount) {
+		int triangles = indices.length/3;
+		//The triangles left of each vertex, grouped by vertex
+		live = new int[vertexCount];
+		for (int i = 0; i < 3*triangles; i++) {
+			live[indices[i]]++;
+		}
+		offsets = new int[vertexCount + 1];
+		for (int v = 0; v < vertexCount; v++) {
+			offsets[v + 1] = offsets[v] + live[v];
+		}
+		adjacency = new int[3*triangles];
+		int[] fill = Arrays.copyOf(offsets, vertexCount);
+		for (int i = 0; i < 3*triangles; i++) {
+			adjacency[fill[indices[i]]++] = i/3;
+		}
+
+		vertexScores = new float[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			vertexScores[v] = score(-1, live[v]);
+		}
+		triangleScores = new float[triangles];
+		for (int t = 0; t < triangles; t++) {
+			triangleScores[t] = vertexScores[indices[3*t]]
+					+ vertexScores[indices[3*t+1]]
+					+ vertexScores[indices[3*t+2]];
+		}
+		boolean[] emitted = new boolean[triangles];
+		cache = new int[CACHE_SIZE + 3];
+		newCache = new int[CACHE_SIZE + 3];
+		cacheSize = 0;
+
+		int[] reordered = new int[3*triangles];
+		int cursor = 0;
+		int best = -1;
+		for (int out = 0; out < triangles; out++) {
+			if (best < 0) {
+				//Restarts from the first triangle left
+				while (emitted[cursor]) {
+					cursor++;
+				}
+				best = cursor;
+			}
+			System.arraycopy(indices, 3*best, reordered, 3*out, 3);
+			emitted[best] = true;
+			best = emit(indices, best);
+		}
+		live = offsets = adjacency = cache = newCache = null;
+		vertexScores = triangleScores = null;
+		return reordered;
+	}
+
+	/**
+	 * Takes a triangle out of the ones left, and puts its vertices into
+	 * the cache.
+	 * @param indices	The 0-based vertex indices, three per triangle
+	 * @param triangle	The triangle
+	 * @return	the triangle left which scores the most, or -1 if no
+	 * 			vertex of the cache has triangles left
+	 */
+	private int emit(int[] indices, int triangle) {
+		int a = indices[3*triangle];
+		int b = indices[3*triangle+1];
+		int c = indices[3*triangle+2];
+		remove(a, triangle);
+		remove(b, triangle);
+		remove(c, triangle);
+
+		//The vertices of the triangle move to the front of the cache
+		int n = 0;
+		newCache[n++] = a;
+		if (b != a) {
+			newCache[n++] = b;
+		}
+		if (c != a && c != b) {
+			newCache[n++] = c;
+		}
+		for (int i = 0; i < cacheSize; i++) {
+			int v = cache[i];
+			if (v != a && v != b && v != c) {
+				newCache[n++] = v;
+			}
+		}
+		int[] swap = cache;
+		cache = newCache;
+		newCache = swap;
+		cacheSize = Math.min(n, CACHE_SIZE);
+
+		//Rescores the vertices which moved, and their triangles
+		for (int i = 0; i < n; i++) {
+			int v = cache[i];
+			if (live[v] == 0) {
+				continue;
+			}
+			float score = score(i < CACHE_SIZE ? i : -1, live[v]);
+			float delta = score - vertexScores[v];
+			vertexScores[v] = score;
+			int end = offsets[v] + live[v];
+			for (int j = offsets[v]; j < end; j++) {
+				triangleScores[adjacency[j]] += delta;
+			}
+		}
+		int best = -1;
+		float bestScore = 0;
+		for (int i = 0; i < cacheSize; i++) {
+			int v = cache[i];
+			int end = offsets[v] + live[v];
+			for (int j = offsets[v]; j < end; j++) {
+				int t = adjacency[j];
+				if (triangleScores[t] > bestScore) {
+					best = t;
+					bestScore = triangleScores[t];
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Takes a triangle out of the ones left of a vertex, by moving it
+	 * past them.
+	 * @param vertex	The vertex
+	 * @param triangle	The triangle, which is left of the vertex
+	 */
+	private void remove(int vertex, int triangle) {
+		int first = offsets[vertex];
+		int last = first + --live[vertex];
+		for (int i = first; i < last; i++) {
+			if (adjacency[i] == triangle) {
+				adjacency[i] = adjacency[last];
+				adjacency[last] = triangle;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Scores a vertex for Forsyth's algorithm.
+	 * @param cachePosition	The position of the vertex in the cache, or
+	 * 						-1 if it isn't in it
+	 * @param live			The number of triangles of the vertex left
+	 * @return the score
+	 */
+	private static float score(int cachePosition, int live) {
+		if (live == 0) {
+			return 0;
+		}
+		float score = cachePosition < 0 ? 0 : CACHE_SCORES[cachePosition];
+		return score + VALENCE_SCORES[Math.min(live, MAX_VALENCE)];
+	}
+
+	/**
+	 * Splits triangles into clusters which start with a cold cache, and
+	 * sorts them so that the ones facing out of the object come first.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param indices	The 0-based vertex indices, three per triangle,
+	 * 					ordered for the vertex cache
+	 * @return the reordered indices
+	 */
+	private int[] optimizeOverdraw(double[] positions, int[] indices) {
+		int triangles = indices.length/3;
+		int[] starts = findClusters(indices, positions.length/3);
+		clusterCount = starts.length - 1;
+		if (clusterCount < 2) {
+			return indices;
+		}
+
+		//The centroid and the normal of each cluster, weighted by area
+		double[] centroids = new double[3*clusterCount];
+		double[] normals = new double[3*clusterCount];
+		double[] areas = new double[clusterCount];
+		double[] center = new double[3];
+		double totalArea = 0;
+		for (int cl = 0; cl < clusterCount; cl++) {
+			for (int t = starts[cl]; t < starts[cl + 1]; t++) {
+				int a = 3*indices[3*t];
+				int b = 3*indices[3*t+1];
+				int c = 3*indices[3*t+2];
+				double ux = positions[b] - positions[a];
+				double uy = positions[b+1] - positions[a+1];
+				double uz = positions[b+2] - positions[a+2];
+				double vx = positions[c] - positions[a];
+				double vy = positions[c+1] - positions[a+1];
+				double vz = positions[c+2] - positions[a+2];
+				double nx = uy*vz - uz*vy;
+				double ny = uz*vx - ux*vz;
+				double nz = ux*vy - uy*vx;
+				double area = Math.sqrt(nx*nx + ny*ny + nz*nz);
+				normals[3*cl] += nx;
+				normals[3*cl+1] += ny;
+				normals[3*cl+2] += nz;
+				for (int k = 0; k < 3; k++) {
+					centroids[3*cl+k] += area*(positions[a+k]
+							+ positions[b+k] + positions[c+k])/3;
+				}
+				areas[cl] += area;
+			}
+			for (int k = 0; k < 3; k++) {
+				center[k] += centroids[3*cl+k];
+			}
+			totalArea += areas[cl];
+		}
+		if (!(totalArea > 0)) {
+			return indices;
+		}
+		for (int k = 0; k < 3; k++) {
+			center[k] /= totalArea;
+		}
+
+		//Sorted by how far out of the object each cluster faces
+		long[] keys = new long[clusterCount];
+		for (int cl = 0; cl < clusterCount; cl++) {
+			double facing = 0;
+			double length = Math.sqrt(normals[3*cl]*normals[3*cl]
+					+ normals[3*cl+1]*normals[3*cl+1]
+					+ normals[3*cl+2]*normals[3*cl+2]);
+			if (areas[cl] > 0 && length > 0) {
+				for (int k = 0; k < 3; k++) {
+					facing += (centroids[3*cl+k]/areas[cl] - center[k])
+							*normals[3*cl+k]/length;
+				}
+			}
+			//Bits of the descending facing that sort like it as an int
+			int bits = Float.floatToIntBits((float) -facing);
+			bits ^= (bits >> 31) & Integer.MAX_VALUE;
+			keys[cl] = (long) bits << 32 | cl;
+		}
+		Arrays.sort(keys);
+
+		int[] reordered = new int[3*triangles];
+		int out = 0;
+		for (int i = 0; i < clusterCount; i++) {
+			int cl = (int) keys[i];
+			int length = 3*(starts[cl + 1] - starts[cl]);
+			System.arraycopy(indices, 3*starts[cl], reordered, out, length);
+			out += length;
+		}
+		return reordered;
+	}
+
+	/**
+	 * Finds where the clusters of triangles start. The cache restarts
+	 * where a triangle misses all of its vertices. Each stretch between
+	 * restarts is split further where the miss ratio of a cluster, whose
+	 * cache is taken as cold at its start, has come down to about the
+	 * one of the whole stretch.
+	 * @param indices		The 0-based vertex indices, three per triangle
+	 * @param vertexCount	The number of vertices
+	 * @return	the first triangle of each cluster, followed by the
+	 * 			number of triangles
+	 */
+	private static int[] findClusters(int[] indices, int vertexCount) {
+		int triangles = indices.length/3;
+		int[] stamps = new int[vertexCount];
+		int time = FIFO_SIZE;
+		int[] misses = new int[triangles];
+		int[] restarts = new int[triangles + 1];
+		int restartCount = 0;
+		for (int t = 0; t < triangles; t++) {
+			for (int k = 0; k < 3; k++) {
+				int v = indices[3*t+k];
+				if (time - stamps[v] >= FIFO_SIZE) {
+					stamps[v] = ++time;
+					misses[t]++;
+				}
+			}
+			if (misses[t] == 3 || t == 0) {
+				restarts[restartCount++] = t;
+			}
+		}
+		restarts[restartCount] = triangles;
+
+		int[] starts = new int[triangles + 1];
+		int count = 0;
+		for (int r = 0; r < restartCount; r++) {
+			int first = restarts[r];
+			int last = restarts[r + 1];
+			long stretchMisses = 0;
+			for (int t = first; t < last; t++) {
+				stretchMisses += misses[t];
+			}
+			double limit = CLUSTER_THRESHOLD*stretchMisses/(last - first);
+			//A cold cache, for each cluster
+			time += FIFO_SIZE;
+			starts[count++] = first;
+			int start = first;
+			long clusterMisses = 0;
+			for (int t = first; t < last; t++) {
+				for (int k = 0; k < 3; k++) {
+					int v = indices[3*t+k];
+					if (time - stamps[v] >= FIFO_SIZE) {
+						stamps[v] = ++time;
+						clusterMisses++;
+					}
+				}
+				if (t + 1 < last && clusterMisses <= limit*(t + 1 - start)) {
+					time += FIFO_SIZE;
+					starts[count++] = t + 1;
+					start = t + 1;
+					clusterMisses = 0;
+				}
+			}
+		}
+		starts[count] = triangles;
+		return Arrays.copyOf(starts, count + 1);
+	}
+
+	public static void main(String[] args) {
+		//A grid of about a million triangles, in the order of its rows
+		int side = 708;
+		double[] positions = new double[3*side*side];
+		for (int y = 0; y < side; y++) {
+			for (int x = 0; x < side; x++) {
+				positions[3*(y*side + x)] = x;
+				positions[3*(y*side + x)+1] = y;
+				positions[3*(y*side + x)+2] = Math.sin(x/50.0)*Math.cos(y/50.0)*20;
+			}
+		}
+		int[] rows = new int[6*(side - 1)*(side - 1)];
+		int i = 0;
+		for (int y = 0; y < side - 1; y++) {
+			for (int x = 0; x < side - 1; x++) {
+				int v = y*side + x;
+				rows[i++] = v;
+				rows[i++] = v + 1;
+				rows[i++] = v + side;
+				rows[i++] = v + 1;
+				rows[i++] = v + side + 1;
+				rows[i++] = v + side;
+			}
+		}
+		//The same triangles, shuffled
+		int[] shuffled = rows.clone();
+		java.util.Random random = new java.util.Random(42);
+		for (int t = shuffled.length/3 - 1; t > 0; t--) {
+			int u = random.nextInt(t + 1);
+			for (int k = 0; k < 3; k++) {
+				int swap = shuffled[3*t+k];
+				shuffled[3*t+k] = shuffled[3*u+k];
+				shuffled[3*u+k] = swap;
+			}
+		}
+		IndexOptimizer optimizer = new IndexOptimizer();
+		for (int run = 0; run < 5; run++) {
+			for (int[] indices : new int[][] {rows, shuffled}) {
+				long start = System.nanoTime();
+				optimizer.optimize(positions, indices);
+				long end = System.nanoTime();
+				System.out.printf("%d triangles: ACMR %.3f -> %.3f, "
+						+ "%d clusters, %.1f ms%n", indices.length/3,
+						optimizer.getAcmrBefore(), optimizer.getAcmrAfter(),
+						optimizer.getClusterCount(), (end - start)/1e6);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,555 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import com.gmail.vitortorreao.math.Vector;
+import com.gmail.vitortorreao.math.Vertex;
+import com.gmail.vitortorreao.utils.QuickSortTriangles;
+
+/**
+ * This class implements a Mesh, one of the objects of a Scene.
+ * A Mesh keeps its geometry in flat arrays: the coordinates of its
+ * vertices, three per vertex, the normals of its vertices, laid out the
+ * same way, and the 0-based indices of the vertices of each triangle,
+ * three per triangle. It also keeps the axis-aligned box which bounds
+ * it, so it can be drawn or culled as a unit.
+ * <p>
+ * The geometry is read through the index-based accessors.
+ * <code>Vertex</code> and <code>Triangle</code> objects are only created
+ * when asked for, by {@link #getVertices()} and {@link #getTriangles()},
+ * and are copies: changing them doesn't change the mesh.
+ * <p>
+ * Like the ones of a <code>Scene</code>, the triangles of a Mesh can be
+ * published while they are loaded, and be drawn in the meantime.
+ * <p>
+ * Subclasses may store the geometry elsewhere, like {@link DirectMesh}
+ * does outside of the Java heap. They override the accessors, and
+ * the methods which return the arrays return full copies on the heap,
+ * which callers like {@link HalfEdgeAdjacency} and
+ * <code>SceneCache</code> pay for; {@link #isOffHeap()} tells them
+ * apart. <code>DirectMesh</code> only throws an
+ * <code>UnsupportedOperationException</code> when its indices don't fit
+ * in an array.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class Mesh {
+
+	private double[] positions;
+	private volatile double[] normals;
+	private volatile int[] indices;
+	private volatile int triangleCount;
+	private Vertex min;
+	private Vertex max;
+	private volatile int version;
+	private volatile HalfEdgeAdjacency halfEdges;
+	private volatile ClusterHierarchy clusters;
+
+	/**
+	 * Instantiates a <code>Mesh</code>. Its vertices have no normals
+	 * until they are calculated or set.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param indices	The 0-based indices of the vertices of each
+	 * 					triangle, three per triangle, or <code>null</code>
+	 * 					if the triangles are published later, with
+	 * 					{@link #publishTriangles(int[], int)}
+	 */
+	public Mesh(double[] positions, int[] indices) {
+		this.positions = positions;
+		if (indices != null) {
+			setIndices(indices);
+		}
+		updateBounds();
+	}
+
+	/**
+	 * Instantiates a <code>Mesh</code> whose geometry is stored by a
+	 * subclass. Its bounds are set once its vertices are known.
+	 */
+	protected Mesh() {
+	}
+
+	/**
+	 * Sets the bounds of this <code>Mesh</code> to the box which
+	 * bounds its vertices.
+	 */
+	protected void updateBounds() {
+		double[] min = {
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY
+		};
+		double[] max = {
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY
+		};
+		for (int v = 0; v < getVertexCount(); v++) {
+			for (int k = 0; k < 3; k++) {
+				min[k] = Math.min(min[k], getCoord(v, k));
+				max[k] = Math.max(max[k], getCoord(v, k));
+			}
+		}
+		this.min = new Vertex(min);
+		this.max = new Vertex(max);
+	}
+
+	/**
+	 * Instantiates a <code>Mesh</code> out of some <code>Triangle</code>s.
+	 * Vertices shared by the triangles are stored once. The normals of
+	 * the vertices are kept if all of them have one.
+	 * @param triangles The <code>Triangle</code>s
+	 * @return the mesh of the triangles
+	 */
+	public static Mesh fromTriangles(Triangle[] triangles) {
+		IdentityHashMap<Vertex, Integer> vertexIndices =
+				new IdentityHashMap<Vertex, Integer>();
+		int[] indices = new int[3*triangles.length];
+		Vertex[] vertices = new Vertex[indices.length];
+		int i = 0;
+		for (Triangle t : triangles) {
+			for (Vertex v : t.getVertices()) {
+				Integer index = vertexIndices.get(v);
+				if (index == null) {
+					index = vertexIndices.size();
+					vertexIndices.put(v, index);
+					vertices[index] = v;
+				}
+				indices[i++] = index;
+			}
+		}
+		int count = vertexIndices.size();
+		double[] positions = new double[3*count];
+		double[] normals = new double[3*count];
+		for (int v = 0; v < count; v++) {
+			Vector normal = vertices[v].getNormal();
+			for (int k = 0; k < 3; k++) {
+				positions[3*v+k] = vertices[v].getCoord(k);
+				if (normals != null && normal != null) {
+					normals[3*v+k] = normal.get(k);
+				}
+			}
+			if (normal == null) {
+				normals = null;
+			}
+		}
+		Mesh mesh = new Mesh(positions, indices);
+		mesh.normals = normals;
+		return mesh;
+	}
+
+	/**
+	 * Publishes the triangles read so far, while the mesh is loaded.
+	 * The first <code>3*count</code> indices must not be changed
+	 * afterwards, but the ones after them may still be written.
+	 * @param indices	The indices of the triangles read so far, or a
+	 * 					larger array which starts with them
+	 * @param count		The number of triangles read so far
+	 */
+	public void publishTriangles(int[] indices, int count) {
+		//The indices are written before the count which makes them visible
+		this.indices = indices;
+		this.triangleCount = count;
+		trianglesChanged();
+	}
+
+	/**
+	 * Discards what was derived from the triangles of this
+	 * <code>Mesh</code>, so it is derived again when asked for.
+	 * Subclasses which store the triangles call it whenever they publish
+	 * or replace some.
+	 */
+	protected void trianglesChanged() {
+		version++;
+		halfEdges = null;
+		clusters = null;
+	}
+
+	/**
+	 * Tells the <code>Mesh</code> the normals of its vertices changed.
+	 * Subclasses which store the normals call it whenever they set them.
+	 */
+	protected void normalsChanged() {
+		version++;
+	}
+
+	/**
+	 * Returns a number which changes whenever triangles or normals are
+	 * published or replaced, so that what was derived from them, such as
+	 * copies uploaded to the graphics card, can be told apart from the
+	 * current geometry.
+	 * @return the version of the geometry
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the adjacency of the triangles published so far, as
+	 * half-edges. It is built the first time it is asked for, and kept
+	 * until the triangles change.
+	 * @return the adjacency
+	 */
+	public HalfEdgeAdjacency getHalfEdges() {
+		HalfEdgeAdjacency halfEdges = this.halfEdges;
+		if (halfEdges == null) {
+			int version = this.version;
+			halfEdges = new HalfEdgeAdjacency(this);
+			//Triangles published meanwhile make it stale at once
+			if (version == this.version) {
+				this.halfEdges = halfEdges;
+			}
+		}
+		return halfEdges;
+	}
+
+	/**
+	 * Returns the bounding volume hierarchy of the clusters of the
+	 * triangles published so far. It is built the first time it is asked
+	 * for, and kept until the triangles change.
+	 * @return the hierarchy
+	 */
+	public ClusterHierarchy getClusters() {
+		ClusterHierarchy clusters = this.clusters;
+		if (clusters == null) {
+			int version = this.version;
+			clusters = new ClusterHierarchy(this);
+			//Triangles published meanwhile make it stale at once
+			if (version == this.version) {
+				this.clusters = clusters;
+			}
+		}
+		return clusters;
+	}
+
+	/**
+	 * Sets the indices of the vertices of each triangle, once all of
+	 * them are known.
+	 * @param indices The indices, three per triangle
+	 */
+	public void setIndices(int[] indices) {
+		publishTriangles(indices, indices.length/3);
+	}
+
+	/**
+	 * Tells whether the geometry of this <code>Mesh</code> is stored
+	 * outside of the Java heap, in which case it is best read through
+	 * the accessors.
+	 * @return <code>true</code> if the arrays returned are copies
+	 */
+	public boolean isOffHeap() {
+		return false;
+	}
+
+	/**
+	 * Returns the coordinates of the vertices of this <code>Mesh</code>.
+	 * The array must not be changed.
+	 * @return the coordinates, three per vertex
+	 */
+	public double[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Returns the number of vertices of this <code>Mesh</code>.
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return positions.length/3;
+	}
+
+	/**
+	 * Returns a coordinate of one of the vertices.
+	 * @param vertex	The 0-based index of the vertex
+	 * @param k			The coordinate, from 0 to 2
+	 * @return the coordinate
+	 */
+	public double getCoord(int vertex, int k) {
+		return positions[3*vertex+k];
+	}
+
+	/**
+	 * Returns the normals of the vertices of this <code>Mesh</code>.
+	 * The array must not be changed.
+	 * @return	the normals, three coordinates per vertex, or
+	 * 			<code>null</code> if they aren't known yet
+	 */
+	public double[] getNormals() {
+		return normals;
+	}
+
+	/**
+	 * Tells whether the normals of the vertices are known yet.
+	 * @return <code>true</code> if the normals are known
+	 */
+	public boolean hasNormals() {
+		return normals != null;
+	}
+
+	/**
+	 * Returns a coordinate of the normal of one of the vertices.
+	 * @param vertex	The 0-based index of the vertex
+	 * @param k			The coordinate, from 0 to 2
+	 * @return the coordinate
+	 * @throws NullPointerException If the normals aren't known yet
+	 */
+	public double getNormal(int vertex, int k) {
+		return normals[3*vertex+k];
+	}
+
+	/**
+	 * Sets the normals of the vertices, when they are already known.
+	 * @param normals The normals, three coordinates per vertex
+	 */
+	public void setNormals(double[] normals) {
+		this.normals = normals;
+		normalsChanged();
+	}
+
+	/**
+	 * Calculates the normals of the vertices of this <code>Mesh</code>.
+	 * The normal of a vertex is the normalized sum of the normals of
+	 * its triangles.
+	 */
+	public void calculateNormals() {
+		int count = this.triangleCount;
+		int[] indices = this.indices;
+		double[] face = new double[3];
+		//Accumulate the face normals on each of their vertices
+		double[] normals = new double[positions.length];
+		for (int t = 0; t < count; t++) {
+			int i = 3*t;
+			faceNormal(t, face);
+			for (int k = 0; k < 3; k++) {
+				//A vertex repeated in the same triangle only counts once
+				if ( (k > 0 && indices[i+k] == indices[i]) ||
+						(k > 1 && indices[i+k] == indices[i+1]) ) {
+					continue;
+				}
+				int n = 3*indices[i+k];
+				normals[n]		+= face[0];
+				normals[n+1]	+= face[1];
+				normals[n+2]	+= face[2];
+			}
+		}
+
+		//Each vertex normal is the normalized sum of its faces' normals
+		for (int n = 0; n < normals.length; n += 3) {
+			normalize(normals, n);
+		}
+		this.normals = normals;
+		normalsChanged();
+	}
+
+	/**
+	 * Calculates the normal of one of the triangles, the same way
+	 * <code>Triangle</code> does.
+	 * @param triangle	The 0-based index of the triangle
+	 * @param normal	The array to store the normal into
+	 */
+	public void faceNormal(int triangle, double[] normal) {
+		int[] indices = this.indices;
+		int v0 = 3*indices[3*triangle];
+		int v1 = 3*indices[3*triangle+1];
+		int v2 = 3*indices[3*triangle+2];
+		double ax = positions[v1] - positions[v0];
+		double ay = positions[v1+1] - positions[v0+1];
+		double az = positions[v1+2] - positions[v0+2];
+		double bx = positions[v2] - positions[v0];
+		double by = positions[v2+1] - positions[v0+1];
+		double bz = positions[v2+2] - positions[v0+2];
+		normal[0] = (ay*bz) - (az*by);
+		normal[1] = (az*bx) - (ax*bz);
+		normal[2] = (ax*by) - (ay*bx);
+		normalize(normal, 0);
+	}
+
+	/**
+	 * Normalizes three coordinates of an array in place, the same way
+	 * <code>Vector</code> does.
+	 * @param v		The array
+	 * @param start	The index of the first coordinate
+	 */
+	protected static void normalize(double[] v, int start) {
+		double d = 0.0;
+		for (int k = 0; k < 3; k++) {
+			d += v[start+k]*v[start+k];
+		}
+		double norm = Math.sqrt(d);
+		for (int k = 0; k < 3; k++) {
+			v[start+k] = v[start+k] / norm;
+		}
+	}
+
+	/**
+	 * Returns the 0-based indices of the vertices of each triangle.
+	 * While the mesh is loaded, the array may be longer than
+	 * <code>3*getTriangleCount()</code>, and only that many indices
+	 * are valid. Read the count first, then the indices.
+	 * The array must not be changed.
+	 * @return the indices, three per triangle
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Returns the index of one of the vertices of a triangle.
+	 * @param triangle	The 0-based index of the triangle
+	 * @param corner	The corner of the triangle, from 0 to 2
+	 * @return the 0-based index of the vertex
+	 */
+	public int getIndex(int triangle, int corner) {
+		return indices[3*triangle+corner];
+	}
+
+	/**
+	 * Returns the number of <code>Triangle</code>s published so far.
+	 * @return the number of <code>Triangle</code>s
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Tells whether another <code>Mesh</code> has the same vertices,
+	 * in the same order, and the same triangles.
+	 * @param other The other <code>Mesh</code>
+	 * @return <code>true</code> if both meshes have the same geometry
+	 */
+	public boolean hasSameGeometry(Mesh other) {
+		if (isOffHeap() || other.isOffHeap()) {
+			return hasSameAccessedGeometry(other);
+		}
+		int count = triangleCount;
+		if (count != other.triangleCount ||
+				!Arrays.equals(positions, other.positions)) {
+			return false;
+		}
+		int[] indices = this.indices;
+		int[] otherIndices = other.indices;
+		for (int i = 0; i < 3*count; i++) {
+			if (indices[i] != otherIndices[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tells whether another <code>Mesh</code> has the same geometry,
+	 * reading both through their accessors.
+	 * @param other The other <code>Mesh</code>
+	 * @return <code>true</code> if both meshes have the same geometry
+	 */
+	private boolean hasSameAccessedGeometry(Mesh other) {
+		int count = getTriangleCount();
+		if (count != other.getTriangleCount() ||
+				getVertexCount() != other.getVertexCount()) {
+			return false;
+		}
+		for (int v = 0; v < getVertexCount(); v++) {
+			for (int k = 0; k < 3; k++) {
+				if (getCoord(v, k) != other.getCoord(v, k)) {
+					return false;
+				}
+			}
+		}
+		for (int t = 0; t < count; t++) {
+			for (int k = 0; k < 3; k++) {
+				if (getIndex(t, k) != other.getIndex(t, k)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the corner of the bounding box with the lowest coordinates.
+	 * @return the minimum corner of the bounds
+	 */
+	public Vertex getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the corner of the bounding box with the highest coordinates.
+	 * @return the maximum corner of the bounds
+	 */
+	public Vertex getMax() {
+		return max;
+	}
+
+	/**
+	 * Creates the vertices of this <code>Mesh</code>, with their
+	 * normals if they are known.
+	 * @return the vertices
+	 */
+	public Vertex[] getVertices() {
+		boolean withNormals = hasNormals();
+		Vertex[] vertices = new Vertex[getVertexCount()];
+		for (int v = 0; v < vertices.length; v++) {
+			vertices[v] = new Vertex(new double[] {
+					getCoord(v, 0), getCoord(v, 1), getCoord(v, 2)
+			});
+			if (withNormals) {
+				vertices[v].setNormal(new Vector(new double[] {
+						getNormal(v, 0), getNormal(v, 1), getNormal(v, 2)
+				}));
+			}
+		}
+		return vertices;
+	}
+
+	/**
+	 * Creates the <code>Triangle</code>s published so far. Triangles
+	 * which share a vertex share its <code>Vertex</code>.
+	 * @return an <code>ArrayList</code> of <code>Triangle</code>s.
+	 */
+	public ArrayList<Triangle> getTriangles() {
+		int count = getTriangleCount();
+		Vertex[] vs = getVertices();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>(count);
+		for (int t = 0; t < count; t++) {
+			Edge[] es = new Edge[3];
+			for (int k = 0; k < 3; k++) {
+				es[k] = new Edge(vs[getIndex(t, k)],
+						vs[getIndex(t, (k+1)%3)]);
+			}
+			triangles.add(new Triangle(es[0], es[1], es[2]));
+		}
+		return triangles;
+	}
+
+	/**
+	 * Sorts the triangles of this mesh by their centroids.
+	 */
+	public void sortTriangles() {
+		ArrayList<Triangle> triangles = getTriangles();
+		IdentityHashMap<Triangle, Integer> order =
+				new IdentityHashMap<Triangle, Integer>();
+		for (int t = 0; t < triangles.size(); t++) {
+			order.put(triangles.get(t), t);
+		}
+		QuickSortTriangles qst = new QuickSortTriangles();
+		qst.sort(triangles);
+		int[] sorted = new int[3*triangles.size()];
+		for (int t = 0; t < triangles.size(); t++) {
+			int from = order.get(triangles.get(t));
+			for (int k = 0; k < 3; k++) {
+				sorted[3*t+k] = getIndex(from, k);
+			}
+		}
+		setIndices(sorted);
+	}
+
+}
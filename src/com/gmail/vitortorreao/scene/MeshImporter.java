@@ -0,0 +1,56 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * This interface is implemented by the readers of the formats, other 
+ * than .byu, which <code>SceneController</code> can load objects from. 
+ * An importer reads the objects of a file one at a time, straight into 
+ * arrays of coordinates and vertex indices, from which 
+ * <code>SceneController</code> builds the meshes of the scene.
+ * <p>
+ * Importers are meant to run on the loading thread, and stop with an 
+ * <code>InterruptedIOException</code> if it is interrupted.
+ * <p>
+ * This code is available through the 
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at 
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de 
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public interface MeshImporter extends Closeable {
+
+	/**
+	 * Reads the next object of the file.
+	 * @return	<code>true</code> if there was another object, 
+	 * 			<code>false</code> if the file ended
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file is malformed
+	 */
+	boolean nextObject() throws IOException, NonConformantSceneFile;
+
+	/**
+	 * Returns the coordinates of the vertices of the object read last.
+	 * @return the coordinates, three per vertex
+	 */
+	double[] getPositions();
+
+	/**
+	 * Returns the 0-based indices of the vertices of each triangle of the 
+	 * object read last. Polygons are split into fans of triangles.
+	 * @return the indices, three per triangle
+	 */
+	int[] getIndices();
+
+	/**
+	 * Returns how much of the file has been read.
+	 * @return the number of bytes read
+	 */
+	long getBytesRead();
+
+}
@@ -0,0 +1,220 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * This class implements the reading of .obj files. Each <code>o</code>
+ * statement starts a new object. The <code>v</code> statements give the
+ * vertices, and the <code>f</code> statements the polygons, which are
+ * split into fans of triangles. Texture coordinates, normals, materials
+ * and everything else are skipped.
+ * <p>
+ * Faces refer to the vertices of the whole file, by 1-based or negative,
+ * relative, indices. Each object only keeps the vertices its faces use.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class OBJImporter implements MeshImporter {
+
+	/**
+	 * Number of lines read between checks for cancellation
+	 */
+	private static final int CHECK_INTERVAL = 1 << 14;
+
+	private BYUTokenizer tokenizer;
+	private long lines;
+	private boolean ended;
+	private boolean started;
+
+	/** The coordinates of all vertices of the file read so far */
+	private double[] vertices;
+	private int numVertices;
+
+	/** The file's indices of the triangles of the current object */
+	private int[] faces;
+	private int size;
+
+	/** The index of each vertex in the current object, plus one */
+	private int[] local;
+	private double[] positions;
+	private int[] indices;
+
+	/**
+	 * Instantiates an <code>OBJImporter</code> which reads a file.
+	 * @param tokenizer The tokenizer of the .obj file, closed along with
+	 * 					the importer
+	 */
+	public OBJImporter(BYUTokenizer tokenizer) {
+		this.tokenizer = tokenizer;
+		this.vertices = new double[3*1024];
+		this.faces = new int[3*1024];
+	}
+
+	@Override
+	public boolean nextObject() throws IOException, NonConformantSceneFile {
+		size = 0;
+		while (!ended) {
+			if (started) {
+				//The current line is the first one of this object
+				started = false;
+			} else if (!tokenizer.nextLine()) {
+				ended = true;
+				break;
+			}
+			if (++lines % CHECK_INTERVAL == 0 &&
+					Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Loading was cancelled");
+			}
+			if (tokenizer.tokenCount() == 0) {
+				continue;
+			}
+			if (tokenizer.tokenEquals(0, "v")) {
+				readVertex();
+			} else if (tokenizer.tokenEquals(0, "f")) {
+				readFace();
+			} else if (tokenizer.tokenEquals(0, "o") && size > 0) {
+				//The line is read again as the start of the next object
+				started = true;
+				break;
+			}
+		}
+		if (size == 0) {
+			return false;
+		}
+		compact();
+		return true;
+	}
+
+	/**
+	 * Reads the current line as a vertex.
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	private void readVertex() throws NonConformantSceneFile {
+		if (tokenizer.tokenCount() < 4) {
+			throw new NonConformantSceneFile("All vertices must have at "
+					+ "least 3 coordinates, but found \""
+					+tokenizer.getLine()+"\"");
+		}
+		if (3*numVertices + 3 > vertices.length) {
+			vertices = Arrays.copyOf(vertices, 2*vertices.length);
+		}
+		try {
+			for (int k = 0; k < 3; k++) {
+				vertices[3*numVertices + k] = tokenizer.getDouble(k + 1);
+			}
+		} catch (NumberFormatException e) {
+			throw new NonConformantSceneFile("Expected 3 double-point "
+					+ "precision values, but found \""
+					+tokenizer.getLine()+"\"");
+		}
+		numVertices++;
+	}
+
+	/**
+	 * Reads the current line as a polygon, split into a fan of triangles.
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	private void readFace() throws NonConformantSceneFile {
+		int length = tokenizer.tokenCount() - 1;
+		if (length < 3) {
+			throw new NonConformantSceneFile("All polygons must have at "
+					+ "least 3 vertices, but found \""
+					+tokenizer.getLine()+"\"");
+		}
+		int first = vertexIndex(1);
+		int previous = vertexIndex(2);
+		for (int k = 3; k <= length; k++) {
+			int index = vertexIndex(k);
+			if (size + 3 > faces.length) {
+				faces = Arrays.copyOf(faces, 2*faces.length);
+			}
+			faces[size++] = first;
+			faces[size++] = previous;
+			faces[size++] = index;
+			previous = index;
+		}
+	}
+
+	/**
+	 * Parses the vertex index of a token of a face.
+	 * @param token The index of the token
+	 * @return the 0-based index of the vertex in the file
+	 * @throws NonConformantSceneFile If the index is malformed or refers
+	 * 			to a vertex not read yet
+	 */
+	private int vertexIndex(int token) throws NonConformantSceneFile {
+		int index;
+		try {
+			index = tokenizer.getInt(token, '/');
+		} catch (NumberFormatException e) {
+			throw new NonConformantSceneFile("Expected Integer values, "
+					+ "but found \""+tokenizer.getLine()+"\"");
+		}
+		index = index < 0 ? numVertices + index : index - 1;
+		if (index < 0 || index >= numVertices) {
+			throw new NonConformantSceneFile("Vertex index "
+					+tokenizer.getToken(token)+" is out of range in \""
+					+tokenizer.getLine()+"\"");
+		}
+		return index;
+	}
+
+	/**
+	 * Makes the arrays of the current object, out of the vertices its
+	 * triangles use, in the order they are first used.
+	 */
+	private void compact() {
+		if (local == null || local.length < numVertices) {
+			local = new int[Math.max(numVertices, vertices.length/3)];
+		}
+		indices = new int[size];
+		int used = 0;
+		for (int i = 0; i < size; i++) {
+			int v = faces[i];
+			if (local[v] == 0) {
+				local[v] = ++used;
+			}
+			indices[i] = local[v] - 1;
+		}
+		positions = new double[3*used];
+		for (int i = 0; i < size; i++) {
+			int v = faces[i];
+			if (local[v] != 0) {
+				System.arraycopy(vertices, 3*v, positions, 3*(local[v] - 1), 3);
+				//Ready for the next object
+				local[v] = 0;
+			}
+		}
+	}
+
+	@Override
+	public double[] getPositions() {
+		return positions;
+	}
+
+	@Override
+	public int[] getIndices() {
+		return indices;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return tokenizer.getBytesRead();
+	}
+
+	@Override
+	public void close() throws IOException {
+		tokenizer.close();
+	}
+
+}
@@ -0,0 +1,456 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements the reading of binary .ply files, which hold a
+ * single object. Only the text header is parsed as text. The elements
+ * after it are read as numbers straight from a direct buffer, in the
+ * byte order the header declares, which is usually little-endian.
+ * <p>
+ * The x, y and z properties of the <code>vertex</code> elements are the
+ * coordinates of the vertices, and the <code>vertex_indices</code> list of
+ * the <code>face</code> elements holds the polygons, which are split into
+ * fans of triangles. Any other element or property is skipped.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class PLYImporter implements MeshImporter {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Number of elements read between checks for cancellation
+	 */
+	private static final int CHECK_INTERVAL = 1 << 16;
+
+	/**
+	 * Names of the property types, in the order of their codes.
+	 * Each type has an old and a new name.
+	 */
+	private static final String[][] TYPE_NAMES = {
+		{"char", "int8"}, {"uchar", "uint8"}, {"short", "int16"},
+		{"ushort", "uint16"}, {"int", "int32"}, {"uint", "uint32"},
+		{"float", "float32"}, {"double", "float64"}
+	};
+	private static final int INT8 = 0;
+	private static final int UINT8 = 1;
+	private static final int INT16 = 2;
+	private static final int UINT16 = 3;
+	private static final int INT32 = 4;
+	private static final int UINT32 = 5;
+	private static final int FLOAT32 = 6;
+	private static final int FLOAT64 = 7;
+	private static final int[] TYPE_SIZES = {1, 1, 2, 2, 4, 4, 4, 8};
+
+	/**
+	 * A property of an element, either a number or a list of numbers.
+	 */
+	private static class Property {
+		private String name;
+		private int type;
+		/** The type of the length of a list, or -1 for a number */
+		private int lengthType = -1;
+	}
+
+	/**
+	 * An element of the header, with its properties.
+	 */
+	private static class Element {
+		private String name;
+		private int count;
+		private List<Property> properties = new ArrayList<Property>();
+	}
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long bytesFilled;
+	private boolean read;
+	private List<Element> elements;
+	private double[] positions;
+	private int[] indices;
+	private int size;
+
+	/**
+	 * Instantiates a <code>PLYImporter</code> which reads a file.
+	 * @param channel The channel of the .ply file, closed along with
+	 * 					the importer
+	 */
+	public PLYImporter(FileChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer.limit(0);
+	}
+
+	@Override
+	public boolean nextObject() throws IOException, NonConformantSceneFile {
+		if (read) {
+			return false;
+		}
+		read = true;
+		readHeader();
+		positions = new double[0];
+		indices = new int[0];
+		for (Element element : elements) {
+			if (element.name.equals("vertex")) {
+				readVertices(element);
+			} else if (element.name.equals("face")) {
+				readFaces(element);
+			} else {
+				for (int i = 0; i < element.count; i++) {
+					for (Property p : element.properties) {
+						skip(p);
+					}
+				}
+			}
+		}
+		indices = Arrays.copyOf(indices, size);
+		for (int index : indices) {
+			if (index < 0 || index >= positions.length/3) {
+				throw new NonConformantSceneFile("Vertex index "+index
+						+" is out of range, there are only "
+						+positions.length/3+" vertices");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the text header, up to the <code>end_header</code> line,
+	 * and sets the byte order of the buffer to the one of the file.
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the header is malformed
+	 */
+	private void readHeader() throws IOException, NonConformantSceneFile {
+		if (!nextHeaderLine().equals("ply")) {
+			throw new NonConformantSceneFile("Expected a .ply file, "
+					+ "starting with \"ply\"");
+		}
+		elements = new ArrayList<Element>();
+		while (true) {
+			String line = nextHeaderLine();
+			String[] words = line.trim().split("\\s+");
+			if (words[0].equals("end_header")) {
+				break;
+			} else if (words[0].equals("format")) {
+				if (words.length > 1 &&
+						words[1].equals("binary_little_endian")) {
+					buffer.order(ByteOrder.LITTLE_ENDIAN);
+				} else if (words.length > 1 &&
+						words[1].equals("binary_big_endian")) {
+					buffer.order(ByteOrder.BIG_ENDIAN);
+				} else {
+					throw new NonConformantSceneFile("Only binary .ply "
+							+ "files are supported, but found \""+line+"\"");
+				}
+			} else if (words[0].equals("element") && words.length == 3) {
+				Element element = new Element();
+				element.name = words[1];
+				try {
+					element.count = Integer.parseInt(words[2]);
+				} catch (NumberFormatException e) {
+					throw new NonConformantSceneFile("Expected the number "
+							+ "of elements, but found \""+line+"\"");
+				}
+				elements.add(element);
+			} else if (words[0].equals("property") && !elements.isEmpty()) {
+				Property p = new Property();
+				if (words.length == 5 && words[1].equals("list")) {
+					p.lengthType = type(words[2], line);
+					p.type = type(words[3], line);
+					p.name = words[4];
+				} else if (words.length == 3) {
+					p.type = type(words[1], line);
+					p.name = words[2];
+				} else {
+					throw new NonConformantSceneFile("Malformed property "
+							+ "\""+line+"\"");
+				}
+				elements.get(elements.size() - 1).properties.add(p);
+			} else if (!words[0].equals("comment") &&
+					!words[0].equals("obj_info") && !words[0].isEmpty()) {
+				throw new NonConformantSceneFile("Unexpected line in the "
+						+ ".ply header \""+line+"\"");
+			}
+		}
+	}
+
+	/**
+	 * Reads the next line of the header.
+	 * @return the line, without its line terminator
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file ends in the header
+	 */
+	private String nextHeaderLine() throws IOException, NonConformantSceneFile {
+		byte[] line = new byte[80];
+		int length = 0;
+		while (true) {
+			ensure(1);
+			byte b = buffer.get();
+			if (b == '\n') {
+				break;
+			}
+			if (length == line.length) {
+				line = Arrays.copyOf(line, 2*length);
+			}
+			line[length++] = b;
+		}
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		return new String(line, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Finds the code of a property type by its name.
+	 * @param name	The name of the type
+	 * @param line	The line of the header, to report errors
+	 * @return the code of the type
+	 * @throws NonConformantSceneFile If there is no such type
+	 */
+	private static int type(String name, String line)
+			throws NonConformantSceneFile {
+		for (int t = 0; t < TYPE_NAMES.length; t++) {
+			if (TYPE_NAMES[t][0].equals(name) || TYPE_NAMES[t][1].equals(name)) {
+				return t;
+			}
+		}
+		throw new NonConformantSceneFile("Unknown property type \""+name
+				+"\" in \""+line+"\"");
+	}
+
+	/**
+	 * Reads the vertices, keeping their x, y and z properties.
+	 * @param element The vertex element
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file ends too soon
+	 */
+	private void readVertices(Element element)
+			throws IOException, NonConformantSceneFile {
+		int n = element.properties.size();
+		int[] coords = new int[n];
+		int stride = 0;
+		for (int i = 0; i < n; i++) {
+			Property p = element.properties.get(i);
+			String name = p.name;
+			coords[i] = name.equals("x") ? 0 : name.equals("y") ? 1 :
+				name.equals("z") ? 2 : -1;
+			stride = p.lengthType < 0 && stride >= 0 ?
+					stride + TYPE_SIZES[p.type] : -1;
+		}
+		positions = new double[3*element.count];
+		for (int v = 0; v < element.count; v++) {
+			if (v % CHECK_INTERVAL == 0) {
+				checkInterrupted();
+			}
+			if (stride > 0) {
+				//All of the vertex is in the buffer at once
+				ensure(stride);
+			}
+			for (int i = 0; i < n; i++) {
+				Property p = element.properties.get(i);
+				if (coords[i] < 0) {
+					skip(p);
+				} else {
+					positions[3*v + coords[i]] =
+							stride > 0 ? value(p.type) : read(p.type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the faces, splitting the polygons of their vertex index
+	 * lists into fans of triangles.
+	 * @param element The face element
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If a polygon isn't even a triangle,
+	 * 			has more vertices than the file holds, or the file ends
+	 * 			too soon
+	 */
+	private void readFaces(Element element)
+			throws IOException, NonConformantSceneFile {
+		indices = new int[3*Math.max(element.count, 1)];
+		size = 0;
+		for (int f = 0; f < element.count; f++) {
+			if (f % CHECK_INTERVAL == 0) {
+				checkInterrupted();
+			}
+			for (Property p : element.properties) {
+				if (p.lengthType < 0 || (!p.name.equals("vertex_indices") &&
+						!p.name.equals("vertex_index"))) {
+					skip(p);
+					continue;
+				}
+				long length = (long) read(p.lengthType);
+				if (length < 3) {
+					throw new NonConformantSceneFile("All polygons must "
+							+ "have at least 3 vertices, but face "+f
+							+" has "+length);
+				}
+				long bytes = length * TYPE_SIZES[p.type];
+				if (bytes > channel.size() - getBytesRead()) {
+					throw new NonConformantSceneFile("Face "+f+" has "
+							+length+" vertices, more than the rest of the "
+							+ "file holds");
+				}
+				if (bytes > Integer.MAX_VALUE - 8) {
+					throw new NonConformantSceneFile("Face "+f+" has "
+							+length+" vertices, too many to be read");
+				}
+				ensure((int) bytes);
+				int first = (int) value(p.type);
+				int previous = (int) value(p.type);
+				for (long k = 2; k < length; k++) {
+					int index = (int) value(p.type);
+					if (size + 3 > indices.length) {
+						if (size > Integer.MAX_VALUE - 8 - 3) {
+							throw new NonConformantSceneFile("The faces "
+									+ "have too many triangles to be read");
+						}
+						indices = Arrays.copyOf(indices, (int) Math.min(
+								Integer.MAX_VALUE - 8, Math.max(size + 3L,
+								indices.length + indices.length/2L)));
+					}
+					indices[size++] = first;
+					indices[size++] = previous;
+					indices[size++] = index;
+					previous = index;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a number, making sure its bytes are in the buffer.
+	 * @param type The type of the number
+	 * @return the number
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file ends too soon
+	 */
+	private double read(int type) throws IOException, NonConformantSceneFile {
+		ensure(TYPE_SIZES[type]);
+		return value(type);
+	}
+
+	/**
+	 * Reads a number whose bytes are known to be in the buffer.
+	 * @param type The type of the number
+	 * @return the number
+	 */
+	private double value(int type) {
+		switch (type) {
+		case INT8:
+			return buffer.get();
+		case UINT8:
+			return buffer.get() & 0xff;
+		case INT16:
+			return buffer.getShort();
+		case UINT16:
+			return buffer.getShort() & 0xffff;
+		case INT32:
+			return buffer.getInt();
+		case UINT32:
+			return buffer.getInt() & 0xffffffffL;
+		case FLOAT32:
+			return buffer.getFloat();
+		default:
+			return buffer.getDouble();
+		}
+	}
+
+	/**
+	 * Skips a property.
+	 * @param p The property
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file ends too soon
+	 */
+	private void skip(Property p) throws IOException, NonConformantSceneFile {
+		long length = p.lengthType < 0 ? 1 : (long) read(p.lengthType);
+		long bytes = length * TYPE_SIZES[p.type];
+		while (bytes > 0) {
+			ensure(1);
+			int n = (int) Math.min(bytes, buffer.remaining());
+			buffer.position(buffer.position() + n);
+			bytes -= n;
+		}
+	}
+
+	/**
+	 * Makes sure the buffer holds at least some bytes, reading more of
+	 * the file after the ones left.
+	 * @param bytes The number of bytes
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file ends before
+	 */
+	private void ensure(int bytes) throws IOException, NonConformantSceneFile {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		if (bytes > buffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+			larger.order(buffer.order());
+			larger.put(buffer);
+			larger.flip();
+			buffer = larger;
+		}
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			int read = channel.read(buffer);
+			if (read < 0) {
+				buffer.flip();
+				throw new NonConformantSceneFile("The .ply file ends "
+						+ "before all of its elements were read");
+			}
+			bytesFilled += read;
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Stops reading if the loading thread was interrupted.
+	 * @throws InterruptedIOException If loading was cancelled
+	 */
+	private static void checkInterrupted() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("Loading was cancelled");
+		}
+	}
+
+	@Override
+	public double[] getPositions() {
+		return positions;
+	}
+
+	@Override
+	public int[] getIndices() {
+		return indices;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesFilled - buffer.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
@@ -0,0 +1,246 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class implements a stream of the decompressed contents of a gzip
+ * file. The file is decompressed by a thread of its own into a few
+ * blocks, which are handed to whoever reads the stream and handed back
+ * once read, so decompressing and parsing overlap. When the reader falls
+ * behind, the decompressing thread waits for a block to be handed back.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class PipedGZIPInputStream extends InputStream {
+
+	/**
+	 * The first two bytes of every gzip file
+	 */
+	private static final int GZIP_MAGIC = 0x1f8b;
+
+	/**
+	 * Number of decompressed bytes in each block
+	 */
+	private static final int BLOCK_SIZE = 1 << 18;
+
+	/**
+	 * Number of blocks, which bounds how far decompression gets ahead
+	 */
+	private static final int BLOCK_COUNT = 4;
+
+	/**
+	 * Handed to the reader after the last block
+	 */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final BlockingQueue<ByteBuffer> full;
+	private final BlockingQueue<ByteBuffer> empty;
+	private final Thread inflater;
+	private volatile IOException failure;
+	private volatile long compressedBytesRead;
+	private ByteBuffer block;
+
+	/**
+	 * Starts decompressing a gzip file.
+	 * @param file The gzip file
+	 * @throws IOException If the file can't be opened or isn't gzip
+	 */
+	public PipedGZIPInputStream(File file) throws IOException {
+		final FileInputStream in = new FileInputStream(file);
+		final GZIPInputStream gzip;
+		try {
+			gzip = new GZIPInputStream(in, BLOCK_SIZE);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		this.full = new ArrayBlockingQueue<ByteBuffer>(BLOCK_COUNT + 1);
+		this.empty = new ArrayBlockingQueue<ByteBuffer>(BLOCK_COUNT);
+		for (int i = 0; i < BLOCK_COUNT; i++) {
+			this.empty.add(ByteBuffer.allocate(BLOCK_SIZE));
+		}
+		this.inflater = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					inflate(gzip, in.getChannel());
+				} catch (IOException e) {
+					failure = e;
+				} catch (InterruptedException e) {
+					//The stream was closed, no one is reading anymore
+					return;
+				} finally {
+					try {
+						gzip.close();
+					} catch (IOException e) {
+						//Nothing was written, there is nothing to lose
+					}
+				}
+				full.add(END);
+			}
+		}, "Gzip inflater " + file.getName());
+		this.inflater.setDaemon(true);
+		this.inflater.start();
+	}
+
+	/**
+	 * Checks whether a file is compressed with gzip, by its first bytes.
+	 * @param file The file
+	 * @return <code>true</code> if the file is a gzip file
+	 * @throws IOException If the file can't be read
+	 */
+	public static boolean isGZIP(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			int b1 = in.read();
+			int b2 = in.read();
+			return b2 >= 0 && ((b1 << 8) | b2) == GZIP_MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Fills blocks with the decompressed file and hands them to the
+	 * reader, until the file ends.
+	 * @param gzip		The decompressing stream
+	 * @param channel	The channel of the compressed file
+	 * @throws IOException If the file can't be read or decompressed
+	 * @throws InterruptedException If the stream was closed
+	 */
+	private void inflate(GZIPInputStream gzip, FileChannel channel)
+			throws IOException, InterruptedException {
+		while (true) {
+			ByteBuffer b = empty.take();
+			b.clear();
+			byte[] bytes = b.array();
+			int read = 0;
+			while (read < bytes.length) {
+				int n = gzip.read(bytes, read, bytes.length - read);
+				if (n < 0) {
+					break;
+				}
+				read += n;
+			}
+			compressedBytesRead = channel.position();
+			if (read == 0) {
+				return;
+			}
+			b.limit(read);
+			full.put(b);
+			if (read < bytes.length) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns how much of the compressed file has been decompressed.
+	 * @return the number of compressed bytes read
+	 */
+	public long getCompressedBytesRead() {
+		return compressedBytesRead;
+	}
+
+	/**
+	 * Makes sure there is a block with bytes left to read, waiting
+	 * for the decompressing thread if needed.
+	 * @return <code>false</code> if the stream ended
+	 * @throws IOException	If the file couldn't be decompressed, or an
+	 * 						<code>InterruptedIOException</code> if the
+	 * 						reading thread was interrupted
+	 */
+	private boolean nextBlock() throws IOException {
+		if (block == END) {
+			//A failure is reported to every read after it, not only once
+			if (failure != null) {
+				throw failure;
+			}
+			return false;
+		}
+		if (block != null && block.hasRemaining()) {
+			return true;
+		}
+		if (block != null) {
+			empty.add(block);
+		}
+		try {
+			block = full.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Reading was interrupted");
+		}
+		if (block == END) {
+			if (failure != null) {
+				throw failure;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		return block.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		int n = Math.min(len, block.remaining());
+		block.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return block != null ? block.remaining() : 0;
+	}
+
+	/**
+	 * Stops decompressing and closes the file.
+	 */
+	@Override
+	public void close() {
+		inflater.interrupt();
+		//Wait until the file is closed, even if this thread is interrupted
+		boolean interrupted = false;
+		while (true) {
+			try {
+				inflater.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,361 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.Arrays;
+
+/**
+ * This class implements the reading of the polygons of a .byu object.
+ * Each polygon is split into a fan of triangles as its vertex indices
+ * are read, straight into an index buffer which grows as needed, so no
+ * polygon is ever stored.
+ * <p>
+ * In a .byu file, the last index of each polygon is negative, and a
+ * polygon may span several lines. Older files have no negative indices
+ * and hold one polygon per line instead. The lines of an object are kept
+ * until a negative index is found, which makes them the start of its
+ * first polygon, or until there are as many lines as polygons without
+ * one, in which case the object is read the old way.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class PolygonTriangulator {
+
+	private int numVertices;
+	private int[] remap;
+	private int[] indices;
+	private int size;
+	private int polygons;
+	private boolean modeKnown;
+	private boolean linePerPolygon;
+	/**
+	 * The vertices of the lines read before the way of reading the
+	 * object is known, and the end of each of those lines in them
+	 */
+	private int[] pending;
+	private int pendingSize;
+	private int[] pendingLineEnds;
+	private int pendingLines;
+	private int first;
+	private int previous;
+	private int polygonSize;
+
+	/**
+	 * Instantiates a <code>PolygonTriangulator</code> for an object.
+	 * Whether it holds one polygon per line is decided by its lines.
+	 * @param numVertices		The number of vertices of the object
+	 * @param expectedTriangles	The initial capacity of the index buffer,
+	 * 							in triangles
+	 */
+	public PolygonTriangulator(int numVertices, int expectedTriangles) {
+		this.numVertices = numVertices;
+		this.indices = new int[3*Math.max(expectedTriangles, 1)];
+	}
+
+	/**
+	 * Instantiates a <code>PolygonTriangulator</code> for part of the
+	 * lines of an object whose way of reading is already known.
+	 * @param numVertices		The number of vertices of the object
+	 * @param expectedTriangles	The initial capacity of the index buffer,
+	 * 							in triangles
+	 * @param linePerPolygon	Whether each line holds one polygon, in
+	 * 							which case a negative index is an error
+	 */
+	public PolygonTriangulator(int numVertices, int expectedTriangles,
+			boolean linePerPolygon) {
+		this(numVertices, expectedTriangles);
+		this.modeKnown = true;
+		this.linePerPolygon = linePerPolygon;
+	}
+
+	/**
+	 * Makes the indices read refer to welded vertices. Triangles which 
+	 * collapse because two of their vertices were welded are dropped.
+	 * @param remap	The new index of each vertex of the object, or 
+	 * 				<code>null</code> to keep the indices read
+	 * @see VertexWelder
+	 */
+	public void setRemap(int[] remap) {
+		this.remap = remap;
+	}
+
+	/**
+	 * Reads the vertex indices in the current line of a tokenizer,
+	 * stopping early if the given number of polygons is reached.
+	 * @param t				The tokenizer
+	 * @param maxPolygons	The number of polygons of the object
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	public void readLine(BYUTokenizer t, int maxPolygons)
+			throws NonConformantSceneFile {
+		int from = 0;
+		if (!modeKnown) {
+			from = keepLine(t, maxPolygons);
+			if (from < 0) {
+				return;
+			}
+		}
+		for (int i = from; i < t.tokenCount(); i++) {
+			int index = parseIndex(t, i);
+			boolean last = index < 0;
+			if (last && linePerPolygon) {
+				throw new NonConformantSceneFile("Vertex index "+index
+						+" ends a polygon, but each line of the object "
+						+ "holds one polygon, in \""+t.getLine()+"\"");
+			}
+			addVertex(vertex(t, last ? -index : index));
+			if (last) {
+				endPolygon(t);
+				if (polygons == maxPolygons) {
+					return;
+				}
+			}
+		}
+		if (linePerPolygon) {
+			endPolygon(t);
+		}
+	}
+
+	/**
+	 * Keeps the vertices of a line while it isn't known whether the
+	 * object holds one polygon per line. Once there are as many lines as
+	 * polygons without a negative index, they are read as one polygon
+	 * each. At the first negative index, the vertices kept are added to
+	 * the first polygon instead.
+	 * @param t				The tokenizer
+	 * @param maxPolygons	The number of polygons of the object
+	 * @return	the position in the line of the first negative index, from
+	 * 			which the line is still to be read, or -1 if it was kept
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	private int keepLine(BYUTokenizer t, int maxPolygons)
+			throws NonConformantSceneFile {
+		if (pending == null) {
+			pending = new int[16];
+			pendingLineEnds = new int[16];
+		}
+		for (int i = 0; i < t.tokenCount(); i++) {
+			int index = parseIndex(t, i);
+			if (index < 0) {
+				//The lines kept, and this one up to here, start a polygon
+				modeKnown = true;
+				for (int k = 0; k < pendingSize; k++) {
+					addVertex(pending[k]);
+				}
+				pending = null;
+				pendingLineEnds = null;
+				return i;
+			}
+			if (pendingSize == pending.length) {
+				pending = Arrays.copyOf(pending, grow(pending.length));
+			}
+			pending[pendingSize++] = vertex(t, index);
+		}
+		if (pendingLines == pendingLineEnds.length) {
+			pendingLineEnds = Arrays.copyOf(pendingLineEnds,
+					grow(pendingLineEnds.length));
+		}
+		pendingLineEnds[pendingLines++] = pendingSize;
+		if (pendingLines == maxPolygons) {
+			readAsLinePerPolygon();
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the length to grow a full array of kept lines to.
+	 * @param length The length of the array
+	 * @return the new length
+	 */
+	private static int grow(int length) {
+		return (int) Math.min(Integer.MAX_VALUE - 8, length*3L/2 + 1);
+	}
+
+	/**
+	 * Reads the lines kept so far as one polygon each, since no negative
+	 * index ends any polygon of the object.
+	 * @throws NonConformantSceneFile If a line is too short for a polygon
+	 */
+	public void readAsLinePerPolygon() throws NonConformantSceneFile {
+		if (modeKnown) {
+			return;
+		}
+		modeKnown = true;
+		linePerPolygon = true;
+		int start = 0;
+		for (int l = 0; l < pendingLines; l++) {
+			for (int k = start; k < pendingLineEnds[l]; k++) {
+				addVertex(pending[k]);
+			}
+			if (polygonSize < 3) {
+				throw new NonConformantSceneFile("All polygons must have "
+						+ "at least 3 vertices, but polygon "+(polygons + 1)
+						+" has "+polygonSize);
+			}
+			polygons++;
+			polygonSize = 0;
+			start = pendingLineEnds[l];
+		}
+		pending = null;
+		pendingLineEnds = null;
+	}
+
+	/**
+	 * Checks that a vertex index read from the current line is in range.
+	 * @param t		The tokenizer, to report errors
+	 * @param index	The 1-based vertex index, made positive
+	 * @return the 0-based index of the vertex, after welding
+	 * @throws NonConformantSceneFile If the index is out of range
+	 */
+	private int vertex(BYUTokenizer t, int index)
+			throws NonConformantSceneFile {
+		if (index < 1 || index > numVertices) {
+			throw new NonConformantSceneFile("Vertex index "
+					+index+" is out of range in \""
+					+t.getLine()+"\"");
+		}
+		return remap != null ? remap[index - 1] : index - 1;
+	}
+
+	/**
+	 * Parses one of the vertex indices in the current line.
+	 * @param t	The tokenizer
+	 * @param i	The index of the token
+	 * @return the 1-based vertex index, negative if it ends a polygon
+	 * @throws NonConformantSceneFile If the token isn't an integer
+	 */
+	private static int parseIndex(BYUTokenizer t, int i)
+			throws NonConformantSceneFile {
+		try {
+			return t.getInt(i);
+		} catch (NumberFormatException e) {
+			throw new NonConformantSceneFile("Expected Integer values, "
+					+ "but found \""+t.getLine()+"\"");
+		}
+	}
+
+	/**
+	 * Adds a vertex to the current polygon. From its third vertex on,
+	 * each vertex forms a triangle with the first and the previous ones.
+	 * @param index The 0-based index of the vertex
+	 */
+	private void addVertex(int index) {
+		if (polygonSize == 0) {
+			first = index;
+		} else if (polygonSize >= 2) {
+			if (remap != null && (index == first || index == previous || 
+					previous == first)) {
+				//Collapsed by welding
+				previous = index;
+				polygonSize++;
+				return;
+			}
+			if (size + 3 > indices.length) {
+				indices = Arrays.copyOf(indices,
+						Math.max(size + 3, indices.length + indices.length/2));
+			}
+			indices[size++] = first;
+			indices[size++] = previous;
+			indices[size++] = index;
+		}
+		previous = index;
+		polygonSize++;
+	}
+
+	/**
+	 * Ends the current polygon.
+	 * @param t The tokenizer, to report errors
+	 * @throws NonConformantSceneFile If the polygon is not even a triangle
+	 */
+	private void endPolygon(BYUTokenizer t) throws NonConformantSceneFile {
+		if (polygonSize < 3) {
+			throw new NonConformantSceneFile("All polygons must have "
+					+ "at least 3 vertices, but found \""+t.getLine()+"\"");
+		}
+		polygons++;
+		polygonSize = 0;
+	}
+
+	/**
+	 * Appends the triangles read by another <code>PolygonTriangulator</code>
+	 * for the lines which follow the ones read by this one.
+	 * @param other The other <code>PolygonTriangulator</code>
+	 */
+	public void append(PolygonTriangulator other) {
+		if (size + other.size > indices.length) {
+			indices = Arrays.copyOf(indices, size + other.size);
+		}
+		System.arraycopy(other.indices, 0, indices, size, other.size);
+		size += other.size;
+		polygons += other.polygons;
+	}
+
+	/**
+	 * Returns whether each line holds one polygon.
+	 * @return	<code>true</code> if the object is read one polygon per line,
+	 * 			<code>false</code> if polygons end at negative indices, or
+	 * 			if it isn't known yet
+	 */
+	public boolean isLinePerPolygon() {
+		return linePerPolygon;
+	}
+
+	/**
+	 * Returns whether the way of reading the object is known, which is
+	 * once a negative index or as many lines as polygons are read.
+	 * @return	<code>true</code> if it is known
+	 */
+	public boolean isModeKnown() {
+		return modeKnown;
+	}
+
+	/**
+	 * Returns the number of polygons read so far.
+	 * @return the number of polygons
+	 */
+	public int getPolygonCount() {
+		return polygons;
+	}
+
+	/**
+	 * Returns the number of triangles formed so far.
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return size/3;
+	}
+
+	/**
+	 * Forgets the triangles formed so far, once they are stored
+	 * elsewhere, so that the index buffer doesn't keep growing. The
+	 * polygons read so far are still counted, and a polygon which
+	 * continues on the next line is still completed.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns the index buffer, which may be longer than the triangles
+	 * formed so far and is replaced when it grows.
+	 * @return the 0-based vertex indices, three per triangle
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Returns the vertex indices of the triangles formed.
+	 * @return the 0-based vertex indices, three per triangle
+	 */
+	public int[] toArray() {
+		return size == indices.length ? indices : Arrays.copyOf(indices, size);
+	}
+
+}
@@ -1,13 +1,18 @@
 package com.gmail.vitortorreao.scene;
 
 import java.util.ArrayList;
-
-import com.gmail.vitortorreao.utils.QuickSortTriangles;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class implements a Scene.
  * A Scene contains the triangle faces of visual objects and a camera.
  * <p>
+ * Each object is a {@link Mesh}, with its own vertices, triangles and 
+ * bounds. A loader can add meshes, and batches of triangles to them, 
+ * from its own thread while the scene is drawn, and whoever draws sees 
+ * whatever was published so far.
+ * <p>
  * This code is available through the 
  * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
  * <br>
@@ -20,9 +25,9 @@ import com.gmail.vitortorreao.utils.QuickSortTriangles;
  */
 public class Scene {
 	
-	private Camera camera;
-	private ArrayList<Triangle> triangles;
-	private Light light;
+	private volatile Camera camera;
+	private volatile CopyOnWriteArrayList<Mesh> meshes;
+	private volatile Light light;
 	
 	/**
 	 * Instantiates an empty <code>Scene</code>. 
@@ -31,7 +36,7 @@ public class Scene {
 	 */
 	public Scene() {
 		this.camera = null;
-		this.triangles = new ArrayList<Triangle>();
+		this.meshes = new CopyOnWriteArrayList<Mesh>();
 	}
 	
 	/**
@@ -41,7 +46,7 @@ public class Scene {
 	 */
 	public Scene(Camera c) {
 		this.camera = c;
-		this.triangles = new ArrayList<Triangle>();
+		this.meshes = new CopyOnWriteArrayList<Mesh>();
 	}
 	
 	/**
@@ -53,7 +58,37 @@ public class Scene {
 	 */
 	public Scene(Camera c, ArrayList<Triangle> triangles) {
 		this.camera = c;
-		this.triangles = triangles;
+		this.meshes = new CopyOnWriteArrayList<Mesh>();
+		this.addTriangles(triangles.toArray(new Triangle[triangles.size()]));
+	}
+	
+	/**
+	 * Instantiates a copy of another <code>Scene</code>, with the same 
+	 * <code>Camera</code>, <code>Light</code> and <code>Triangles</code>. 
+	 * Meshes added to either scene afterwards aren't added to the other.
+	 * @param scene The <code>Scene</code> to copy
+	 */
+	public Scene(Scene scene) {
+		this.camera = scene.camera;
+		this.light = scene.light;
+		this.meshes = new CopyOnWriteArrayList<Mesh>(scene.meshes);
+	}
+	
+	/**
+	 * Puts back the objects of another <code>Scene</code> wherever this 
+	 * one has an object with the same geometry at the same position, so 
+	 * that whatever was built for them can still be used.
+	 * @param previous The other <code>Scene</code>, usually the one this 
+	 * 					one is replacing
+	 */
+	public void keepUnchangedMeshes(Scene previous) {
+		List<Mesh> old = previous.meshes;
+		for (int i = 0; i < Math.min(meshes.size(), old.size()); i++) {
+			Mesh mesh = meshes.get(i);
+			if (mesh != old.get(i) && mesh.hasSameGeometry(old.get(i))) {
+				meshes.set(i, old.get(i));
+			}
+		}
 	}
 	
 	/**
@@ -65,11 +100,30 @@ public class Scene {
 	}
 	
 	/**
-	 * Adds a <code>Triangle</code> to the <code>Scene</code>.
+	 * Adds a <code>Triangle</code> to the <code>Scene</code>, 
+	 * as a <code>Mesh</code> of its own.
 	 * @param triangle A <code>Triangle</code> object
 	 */
 	public void addTriangle(Triangle triangle) {
-		this.triangles.add(triangle);
+		this.addTriangles(new Triangle[] {triangle});
+	}
+	
+	/**
+	 * Adds some <code>Triangle</code>s to the <code>Scene</code>, 
+	 * as a new <code>Mesh</code>.
+	 * @param triangles An array of <code>Triangle</code>s
+	 */
+	public void addTriangles(Triangle[] triangles) {
+		this.meshes.add(Mesh.fromTriangles(triangles));
+	}
+	
+	/**
+	 * Adds an object to the <code>Scene</code>. Its triangles may still 
+	 * be added to it afterwards.
+	 * @param mesh A <code>Mesh</code> object
+	 */
+	public void addMesh(Mesh mesh) {
+		this.meshes.add(mesh);
 	}
 
 	/**
@@ -90,25 +144,53 @@ public class Scene {
 
 	/**
 	 * Returns a list of <code>Triangle</code>s that are part of this scene.
+	 * The list is a copy, changing it doesn't change the scene.
 	 * @return an <code>ArrayList</code> of <code>Triangle</code>s.
 	 */
 	public ArrayList<Triangle> getTriangles() {
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		for (Mesh mesh : this.meshes) {
+			triangles.addAll(mesh.getTriangles());
+		}
 		return triangles;
 	}
 	
 	/**
-	 * Erases the list of Triangles.
+	 * Returns the objects of this scene. Iterating over the list is safe 
+	 * while meshes are being added, and sees the meshes which had been 
+	 * added when it started.
+	 * @return the <code>Mesh</code>es of the scene
+	 */
+	public List<Mesh> getMeshes() {
+		return meshes;
+	}
+	
+	/**
+	 * Returns the number of <code>Triangle</code>s published so far.
+	 * @return the number of <code>Triangle</code>s
+	 */
+	public int getTriangleCount() {
+		int count = 0;
+		for (Mesh mesh : this.meshes) {
+			count += mesh.getTriangleCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Erases all the objects, and so all the Triangles.
 	 */
 	public void cleanTriangles() {
-		this.triangles = new ArrayList<Triangle>();
+		this.meshes = new CopyOnWriteArrayList<Mesh>();
 	}
 	
 	/**
-	 * Sorts the list of triangles by their centroids.
+	 * Sorts the triangles of each object by their centroids.
 	 */
 	public void sortTriangles() {
-		QuickSortTriangles qst = new QuickSortTriangles();
-		qst.sort(triangles);
+		for (Mesh mesh : this.meshes) {
+			mesh.sortTriangles();
+		}
 	}
 	
 	@Override
@@ -117,7 +199,7 @@ public class Scene {
 		if (this.camera != null) {
 			s += this.camera.toString() + ",";
 		}
-		for (Triangle t : this.triangles) {
+		for (Triangle t : getTriangles()) {
 			s += "\n\n"+t.toString();
 		}
 		s += "}\n";
@@ -0,0 +1,567 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.gmail.vitortorreao.math.Vector;
+import com.gmail.vitortorreao.math.Vertex;
+
+/**
+ * This class implements a binary cache of a scene loaded from a .byu file.
+ * The cache is written next to the .byu file and holds the camera, the
+ * light and the objects of the scene as float positions, precomputed
+ * float normals and an int index buffer per object, so reading it needs
+ * no parsing.
+ * <p>
+ * The cache records the length, the modification time and a CRC-32 of
+ * the .byu file it was made from, whether and how closely its vertices 
+ * were welded, and whether its triangles were reordered, and is only 
+ * used while they all match.
+ * All values are little-endian. The layout of version 5 is:
+ * <pre>
+ * int magic, int version, long length, long mtime, long crc,
+ * byte welding, double weldingEpsilon, byte optimizing
+ * byte hasCamera [C, N, V as 9 doubles, fovy, aspect, near, far]
+ * byte hasLight [pL as 3 floats, iAmb, iDiffuse, iSpecular, mAmb,
+ *                mDiffuse, mSpecular, mEmissive as 4 floats each, eta]
+ * byte hasObjects [int numObjects, and for each object: int numVertices,
+ *                  float[3*numVertices] positions,
+ *                  float[3*numVertices] normals, int numTriangles,
+ *                  int[3*numTriangles] 0-based indices]
+ * </pre>
+ * It only differs from version 4 in that it records whether the 
+ * triangles were reordered by {@link IndexOptimizer}.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class SceneCache {
+
+	/**
+	 * Version of the cache format written by this class
+	 */
+	public static final int VERSION = 5;
+
+	/**
+	 * Extension appended to the name of the .byu file
+	 */
+	public static final String EXTENSION = ".cache";
+
+	/**
+	 * "BYUC" in ASCII
+	 */
+	private static final int MAGIC = 0x42595543;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 1 + 8 + 1;
+
+	private static final int CAMERA_SIZE = 13*8;
+
+	private static final int LIGHT_SIZE = (3 + 7*4 + 1)*4;
+
+	/**
+	 * Size of the largest cache which can be read, as it is mapped
+	 * into a single buffer
+	 */
+	public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+
+	private Camera camera;
+	private Light light;
+	private float[][] positions;
+	private float[][] normals;
+	private int[][] indices;
+
+	/**
+	 * Creates a cache of the given scene elements.
+	 * @param camera	The camera, or <code>null</code>
+	 * @param light		The light, or <code>null</code>
+	 * @param positions	The coordinates of the vertices of each object,
+	 * 					three per vertex, or <code>null</code> if there
+	 * 					are no objects
+	 * @param normals	The normals of the vertices of each object, three
+	 * 					per vertex
+	 * @param indices	The 0-based vertex indices of each object, three
+	 * 					per triangle
+	 */
+	public SceneCache(Camera camera, Light light, float[][] positions,
+			float[][] normals, int[][] indices) {
+		this.camera = camera;
+		this.light = light;
+		this.positions = positions;
+		this.normals = normals;
+		this.indices = indices;
+	}
+
+	/**
+	 * Creates a cache of some elements of a scene.
+	 * @param scene			The scene
+	 * @param withCamera	Whether to store the scene's camera
+	 * @param withLight		Whether to store the scene's light
+	 * @param withObjects	Whether to store the scene's objects
+	 * @return the cache of the scene
+	 */
+	public static SceneCache fromScene(Scene scene, boolean withCamera,
+			boolean withLight, boolean withObjects) {
+		Camera camera = withCamera ? scene.getCamera() : null;
+		Light light = withLight ? scene.getLight() : null;
+		if (!withObjects) {
+			return new SceneCache(camera, light, null, null, null);
+		}
+		List<Mesh> meshes = scene.getMeshes();
+		float[][] positions = new float[meshes.size()][];
+		float[][] normals = new float[meshes.size()][];
+		int[][] indices = new int[meshes.size()][];
+		for (int m = 0; m < meshes.size(); m++) {
+			Mesh mesh = meshes.get(m);
+			if (!mesh.hasNormals()) {
+				mesh.calculateNormals();
+			}
+			positions[m] = toFloats(mesh.getPositions());
+			normals[m] = toFloats(mesh.getNormals());
+			int count = mesh.getTriangleCount();
+			indices[m] = mesh.getIndices();
+			if (indices[m].length > 3*count) {
+				indices[m] = Arrays.copyOf(indices[m], 3*count);
+			}
+		}
+		return new SceneCache(camera, light, positions, normals, indices);
+	}
+
+	/**
+	 * Calculates the size of the cache of some elements of a scene,
+	 * without making it, so a cache larger than {@link #MAX_SIZE} can
+	 * be skipped.
+	 * @param scene			The scene
+	 * @param withCamera	Whether to store the scene's camera
+	 * @param withLight		Whether to store the scene's light
+	 * @param withObjects	Whether to store the scene's objects
+	 * @return the size of the cache file, in bytes
+	 */
+	public static long size(Scene scene, boolean withCamera,
+			boolean withLight, boolean withObjects) {
+		long size = HEADER_SIZE + 3;
+		if (withCamera && scene.getCamera() != null) {
+			size += CAMERA_SIZE;
+		}
+		if (withLight && scene.getLight() != null) {
+			size += LIGHT_SIZE;
+		}
+		if (withObjects) {
+			size += 4;
+			for (Mesh mesh : scene.getMeshes()) {
+				size += 4 + 24L*mesh.getVertexCount()
+						+ 4 + 12L*mesh.getTriangleCount();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Calculates the size of this cache.
+	 * @return the size of the cache file, in bytes
+	 */
+	public long size() {
+		long size = HEADER_SIZE + 3;
+		if (camera != null) {
+			size += CAMERA_SIZE;
+		}
+		if (light != null) {
+			size += LIGHT_SIZE;
+		}
+		if (positions != null) {
+			size += 4;
+			for (int m = 0; m < positions.length; m++) {
+				size += 4 + 8L*positions[m].length
+						+ 4 + 4L*indices[m].length;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Narrows an array of <code>double</code>s.
+	 * @param ds The <code>double</code>s
+	 * @return the same values, as <code>float</code>s
+	 */
+	private static float[] toFloats(double[] ds) {
+		float[] fs = new float[ds.length];
+		for (int i = 0; i < ds.length; i++) {
+			fs[i] = (float) ds[i];
+		}
+		return fs;
+	}
+
+	/**
+	 * Returns the cache file of a .byu file.
+	 * @param source The .byu file
+	 * @return the cache file, which might not exist
+	 */
+	public static File getCacheFile(File source) {
+		return new File(source.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Calculates the CRC-32 of a file's contents.
+	 * @param file The file
+	 * @return the checksum
+	 * @throws IOException If the file can't be read
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[IO_BUFFER_SIZE];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while ((read = in.read(bytes)) > 0) {
+				crc.update(bytes, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes this cache as the cache of a .byu file. The cache is
+	 * written to a temporary file first, so a cache file is never
+	 * left half written.
+	 * @param source			The .byu file the scene was loaded from
+	 * @param welding			Whether the vertices of the scene were welded
+	 * @param weldingEpsilon	The largest distance between vertices which 
+	 * 							were welded
+	 * @param optimizing		Whether the triangles of the scene were 
+	 * 							reordered
+	 * @throws IOException If the cache can't be written, or is larger 
+	 * 						than {@link #MAX_SIZE} and couldn't be read
+	 */
+	public void write(File source, boolean welding, double weldingEpsilon, 
+			boolean optimizing) throws IOException {
+		if (size() > MAX_SIZE) {
+			throw new IOException("The cache would take " + size() 
+					+ " bytes, more than can be read");
+		}
+		long length = source.length();
+		long mtime = source.lastModified();
+		long crc = checksum(source);
+
+		File cacheFile = getCacheFile(source);
+		File temp = new File(cacheFile.getPath() + ".tmp");
+		boolean moved = false;
+		try {
+			FileChannel channel = FileChannel.open(temp.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(VERSION)
+						.putLong(length).putLong(mtime).putLong(crc)
+						.put((byte) (welding ? 1 : 0)).putDouble(weldingEpsilon)
+						.put((byte) (optimizing ? 1 : 0));
+
+				buffer.put((byte) (camera != null ? 1 : 0));
+				if (camera != null) {
+					for (int k = 0; k < 3; k++) {
+						buffer.putDouble(camera.getFocus().getCoord(k));
+					}
+					for (int k = 0; k < 3; k++) {
+						buffer.putDouble(camera.getN().get(k));
+					}
+					for (int k = 0; k < 3; k++) {
+						buffer.putDouble(camera.getV().get(k));
+					}
+					buffer.putDouble(camera.getFovy())
+							.putDouble(camera.getAspect())
+							.putDouble(camera.getNear())
+							.putDouble(camera.getFar());
+				}
+
+				buffer.put((byte) (light != null ? 1 : 0));
+				if (light != null) {
+					float[][] colors = {
+						light.getpL(), light.getiAmb(), light.getiDiffuse(),
+						light.getiSpecular(), light.getmAmb(),
+						light.getmDiffuse(), light.getmSpecular(),
+						light.getmEmissive()
+					};
+					for (float[] color : colors) {
+						for (float f : color) {
+							buffer.putFloat(f);
+						}
+					}
+					buffer.putFloat(light.getN());
+				}
+
+				buffer.put((byte) (positions != null ? 1 : 0));
+				if (positions != null) {
+					buffer.putInt(positions.length);
+					for (int m = 0; m < positions.length; m++) {
+						flush(channel, buffer, 4);
+						buffer.putInt(positions[m].length/3);
+						writeFloats(channel, buffer, positions[m]);
+						writeFloats(channel, buffer, normals[m]);
+						flush(channel, buffer, 4);
+						buffer.putInt(indices[m].length/3);
+						for (int i = 0; i < indices[m].length; i++) {
+							flush(channel, buffer, 4);
+							buffer.putInt(indices[m][i]);
+						}
+					}
+				}
+				flush(channel, buffer, buffer.capacity());
+			} finally {
+				channel.close();
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			//A cache left half written would only take up space
+			if (!moved) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Puts an array of floats into the buffer, writing the buffer to the
+	 * channel whenever it fills up.
+	 * @param channel	The channel
+	 * @param buffer	The buffer
+	 * @param fs		The floats
+	 * @throws IOException If the channel can't be written
+	 */
+	private static void writeFloats(FileChannel channel, ByteBuffer buffer,
+			float[] fs) throws IOException {
+		for (int i = 0; i < fs.length; i++) {
+			flush(channel, buffer, 4);
+			buffer.putFloat(fs[i]);
+		}
+	}
+
+	/**
+	 * Writes the buffer to the channel if it has less than the given
+	 * number of bytes left.
+	 * @param channel	The channel
+	 * @param buffer	The buffer
+	 * @param needed	The number of bytes about to be put
+	 * @throws IOException If the channel can't be written
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer,
+			int needed) throws IOException {
+		if (buffer.remaining() >= needed) {
+			return;
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Reads the cache of a .byu file.
+	 * @param source			The .byu file
+	 * @param welding			Whether the vertices of the scene are welded
+	 * @param weldingEpsilon	The largest distance between vertices which 
+	 * 							are welded
+	 * @param optimizing		Whether the triangles of the scene are 
+	 * 							reordered
+	 * @return	The cache, or <code>null</code> if there is no cache, it is
+	 * 			in another version of the format, the .byu file changed
+	 * 			since it was written, or it was welded or reordered 
+	 * 			otherwise
+	 * @throws IOException If the cache exists but can't be read
+	 */
+	public static SceneCache read(File source, boolean welding, 
+			double weldingEpsilon, boolean optimizing) throws IOException {
+		File cacheFile = getCacheFile(source);
+		if (!cacheFile.isFile() || cacheFile.length() < HEADER_SIZE ||
+				cacheFile.length() > MAX_SIZE) {
+			return null;
+		}
+		FileChannel channel = FileChannel.open(cacheFile.toPath(),
+				StandardOpenOption.READ);
+		try {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0,
+					channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION ||
+					buffer.getLong() != source.length() ||
+					buffer.getLong() != source.lastModified() ||
+					buffer.getLong() != checksum(source)) {
+				return null;
+			}
+			boolean cachedWelding = buffer.get() != 0;
+			double cachedEpsilon = buffer.getDouble();
+			boolean cachedOptimizing = buffer.get() != 0;
+			if (cachedWelding != welding || 
+					welding && cachedEpsilon != weldingEpsilon || 
+					cachedOptimizing != optimizing) {
+				return null;
+			}
+
+			Camera camera = null;
+			if (buffer.get() != 0) {
+				Vertex C = new Vertex(readDoubles(buffer, 3));
+				Vector N = new Vector(readDoubles(buffer, 3));
+				Vector V = new Vector(readDoubles(buffer, 3));
+				double[] perspective = readDoubles(buffer, 4);
+				camera = new Camera(C, N, V, perspective[0],
+						perspective[1], perspective[2], perspective[3]);
+			}
+
+			Light light = null;
+			if (buffer.get() != 0) {
+				float[] pL = readFloats(buffer, 3);
+				float[][] colors = new float[7][];
+				for (int i = 0; i < colors.length; i++) {
+					colors[i] = readFloats(buffer, 4);
+				}
+				float eta = buffer.getFloat();
+				light = new Light(colors[0], colors[1], colors[2],
+						colors[3], colors[4], colors[5], colors[6],
+						eta, pL);
+			}
+
+			float[][] positions = null;
+			float[][] normals = null;
+			int[][] indices = null;
+			if (buffer.get() != 0) {
+				int numObjects = buffer.getInt();
+				positions = new float[numObjects][];
+				normals = new float[numObjects][];
+				indices = new int[numObjects][];
+				for (int m = 0; m < numObjects; m++) {
+					int numVertices = buffer.getInt();
+					positions[m] = readFloats(buffer, 3*numVertices);
+					normals[m] = readFloats(buffer, 3*numVertices);
+					int numTriangles = buffer.getInt();
+					indices[m] = readInts(buffer, 3*numTriangles);
+				}
+			}
+			return new SceneCache(camera, light, positions, normals,
+					indices);
+		} catch (RuntimeException e) {
+			//A truncated or corrupted cache is just ignored
+			return null;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Gets doubles from the buffer.
+	 * @param buffer	The buffer
+	 * @param count		The number of doubles
+	 * @return the doubles
+	 */
+	private static double[] readDoubles(ByteBuffer buffer, int count) {
+		double[] ds = new double[count];
+		for (int i = 0; i < count; i++) {
+			ds[i] = buffer.getDouble();
+		}
+		return ds;
+	}
+
+	/**
+	 * Gets floats from the buffer.
+	 * @param buffer	The buffer
+	 * @param count		The number of floats
+	 * @return the floats
+	 */
+	private static float[] readFloats(ByteBuffer buffer, int count) {
+		float[] fs = new float[count];
+		buffer.asFloatBuffer().get(fs);
+		buffer.position(buffer.position() + 4*count);
+		return fs;
+	}
+
+	/**
+	 * Gets ints from the buffer.
+	 * @param buffer	The buffer
+	 * @param count		The number of ints
+	 * @return the ints
+	 */
+	private static int[] readInts(ByteBuffer buffer, int count) {
+		int[] is = new int[count];
+		buffer.asIntBuffer().get(is);
+		buffer.position(buffer.position() + 4*count);
+		return is;
+	}
+
+	public Camera getCamera() {
+		return camera;
+	}
+
+	public Light getLight() {
+		return light;
+	}
+
+	/**
+	 * Returns the number of objects in the cache.
+	 * @return the number of objects, or 0 if there are no objects
+	 */
+	public int getObjectCount() {
+		return positions == null ? 0 : positions.length;
+	}
+
+	/**
+	 * Returns whether the cache holds the objects of the scene. A file
+	 * with no objects at all leaves the objects of the scene as they are.
+	 * @return	<code>true</code> if the objects were cached,
+	 * 			<code>false</code> if the scene's objects are not changed
+	 */
+	public boolean hasObjects() {
+		return positions != null;
+	}
+
+	/**
+	 * Returns the coordinates of the vertices of an object.
+	 * @param object The index of the object
+	 * @return the coordinates, three per vertex
+	 */
+	public float[] getPositions(int object) {
+		return positions[object];
+	}
+
+	/**
+	 * Returns the normals of the vertices of an object.
+	 * @param object The index of the object
+	 * @return the normals, three per vertex
+	 */
+	public float[] getNormals(int object) {
+		return normals[object];
+	}
+
+	/**
+	 * Returns the 0-based vertex indices of an object.
+	 * @param object The index of the object
+	 * @return the indices, three per triangle
+	 */
+	public int[] getIndices(int object) {
+		return indices[object];
+	}
+
+}
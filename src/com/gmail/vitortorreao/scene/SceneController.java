@@ -1,10 +1,24 @@
 package com.gmail.vitortorreao.scene;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
+import com.gmail.vitortorreao.math.Vec3;
 import com.gmail.vitortorreao.math.Vector;
 import com.gmail.vitortorreao.math.Vertex;
 
@@ -42,14 +56,76 @@ public class SceneController {
 		return instance;
 	}
 	
-	private Scene scene;
-	private BufferedReader bfr;
+	/**
+	 * Minimum number of bytes of the file parsed by each parallel task
+	 */
+	private static final int CHUNK_SIZE = 1 << 20;
+	
+	/**
+	 * Number of triangles published at a time when loading progressively
+	 */
+	private static final int BATCH_SIZE = 1 << 14;
+	
+	private volatile Scene scene;
+	private volatile Scene loading;
+	private Thread loader;
+	private BYUTokenizer tokenizer;
+	private PipedGZIPInputStream compressed;
+	private MeshImporter importer;
+	private boolean memoryMapped;
+	private boolean parallel;
+	private boolean cacheEnabled;
+	private volatile boolean progressive;
+	/**
+	 * Whether the current load publishes triangles in batches, taken from 
+	 * {@link #progressive} when it starts, so that changing the setting 
+	 * meanwhile doesn't change the load half way
+	 */
+	private volatile boolean loadingProgressively;
+	private boolean welding;
+	private double weldingEpsilon;
+	private boolean optimizing;
+	/**
+	 * The vertex cache miss ratios of the objects reordered by the last 
+	 * load, before and after, each times the object's number of 
+	 * triangles, and the number of those triangles. Objects are 
+	 * reordered on the pool while the loading thread holds this object's 
+	 * lock, so these have a lock of their own.
+	 */
+	private final Object acmrLock = new Object();
+	private double acmrBefore;
+	private double acmrAfter;
+	private long acmrTriangles;
+	private boolean offHeap;
+	private File offHeapDirectory;
+	private ForkJoinPool pool;
+	/**
+	 * The thread which runs the asynchronous loads. It is only started 
+	 * with the first load, and isn't guarded by this object's lock, which 
+	 * a running load holds.
+	 */
+	private final ExecutorService executor = 
+			Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Scene loader");
+					//A pending load doesn't keep the application running
+					t.setDaemon(true);
+					return t;
+				}
+			});
+	private SceneLoadListener listener;
+	private long fileLength;
+	private List<Future<Mesh>> pendingMeshes;
+	private boolean firstObject;
 	
 	/**
 	 * This private constructor is part of the Singleton Pattern.
 	 */
 	private SceneController() {
 		this.scene = new Scene();
+		this.cacheEnabled = true;
+		this.optimizing = true;
 	}
 	
 	public Scene getScene() {
@@ -57,7 +133,248 @@ public class SceneController {
 	}
 	
 	/**
-	 * Loads scene elements from .byu files.
+	 * Returns the scene which is being loaded progressively, so that it 
+	 * can be drawn before it is complete. It replaces the one returned by 
+	 * {@link #getScene()} once loading finishes.
+	 * @return	the scene being loaded, or <code>null</code> if no scene is 
+	 * 			being loaded progressively
+	 */
+	public Scene getLoadingScene() {
+		return loadingProgressively ? this.loading : null;
+	}
+	
+	/**
+	 * Returns whether files are memory-mapped while loaded.
+	 * @return	<code>true</code> if files are memory-mapped, 
+	 * 			<code>false</code> if they are read through a stream
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+	
+	/**
+	 * Chooses how files are read by {@link #loadScene(File)}. 
+	 * Memory-mapping avoids copying the file through a stream, which 
+	 * pays off for very large files. Files compressed with gzip are 
+	 * always read as a stream.
+	 * @param memoryMapped	<code>true</code> to memory-map files, 
+	 * 						<code>false</code> to read them as a stream
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+	
+	/**
+	 * Returns whether objects are parsed using all cores.
+	 * @return <code>true</code> if objects are parsed in parallel
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+	
+	/**
+	 * Chooses whether {@link #loadScene(File)} parses the vertices and 
+	 * triangles of each object in parallel. The vertex and triangle blocks 
+	 * are split into chunks of lines which are parsed on a 
+	 * <code>ForkJoinPool</code>. The resulting scene is exactly the same 
+	 * as the one loaded sequentially.
+	 * @param parallel <code>true</code> to parse objects in parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	/**
+	 * Returns whether triangles are published while they are loaded.
+	 * @return <code>true</code> if scenes are loaded progressively
+	 */
+	public boolean isProgressive() {
+		return progressive;
+	}
+	
+	/**
+	 * Chooses whether {@link #loadScene(File)} publishes the triangles of 
+	 * an object to the scene in batches as they are read, instead of all 
+	 * at once at the end of the object. This lets the scene be drawn while 
+	 * it is loaded from another thread. Until the whole object is read, 
+	 * its vertices have no normals. Objects parsed in parallel are always 
+	 * published at once. A load already running isn't affected.
+	 * @param progressive <code>true</code> to load scenes progressively
+	 */
+	public void setProgressive(boolean progressive) {
+		this.progressive = progressive;
+	}
+	
+	/**
+	 * Returns whether the vertices of objects are welded while loaded.
+	 * @return <code>true</code> if vertices are welded
+	 * @see VertexWelder
+	 */
+	public boolean isWelding() {
+		return welding;
+	}
+	
+	/**
+	 * Chooses whether {@link #loadScene(File)} merges the vertices of an 
+	 * object which are within {@link #getWeldingEpsilon()} of each other, 
+	 * so that the faces around them share their normals. Triangles which 
+	 * collapse when their vertices are merged are dropped.
+	 * @param welding <code>true</code> to weld vertices
+	 * @see VertexWelder
+	 */
+	public void setWelding(boolean welding) {
+		this.welding = welding;
+	}
+	
+	/**
+	 * Returns the largest distance between vertices which are welded.
+	 * @return the welding epsilon
+	 */
+	public double getWeldingEpsilon() {
+		return weldingEpsilon;
+	}
+	
+	/**
+	 * Sets the largest distance between vertices which are welded. 
+	 * The default, 0, only welds vertices with the very same coordinates.
+	 * @param weldingEpsilon The welding epsilon, which must not be negative
+	 */
+	public void setWeldingEpsilon(double weldingEpsilon) {
+		if (!(weldingEpsilon >= 0)) {
+			throw new IllegalArgumentException("The welding epsilon must "
+					+ "not be negative, but is "+weldingEpsilon);
+		}
+		this.weldingEpsilon = weldingEpsilon;
+	}
+	
+	/**
+	 * Returns whether the triangles of objects are reordered while loaded.
+	 * @return <code>true</code> if triangles are reordered
+	 * @see IndexOptimizer
+	 */
+	public boolean isOptimizing() {
+		return optimizing;
+	}
+	
+	/**
+	 * Chooses whether {@link #loadScene(File)} reorders the triangles of 
+	 * each object for the vertex cache of the graphics card, and so that 
+	 * the faces drawn first hide the ones behind them. When enabled, 
+	 * which is the default, the reordered triangles are cached, and how 
+	 * much better they use the vertex cache is told by 
+	 * {@link #getAcmrBefore()} and {@link #getAcmrAfter()}. 
+	 * Objects stored off-heap as they are read aren't reordered.
+	 * @param optimizing <code>true</code> to reorder triangles
+	 * @see IndexOptimizer
+	 */
+	public void setOptimizing(boolean optimizing) {
+		this.optimizing = optimizing;
+	}
+	
+	/**
+	 * Returns the average number of vertices missing from the vertex 
+	 * cache per triangle of the objects reordered by the last load, 
+	 * before they were reordered.
+	 * @return	the ratio, weighted by the number of triangles of each 
+	 * 			object, or <code>NaN</code> if no object was reordered, 
+	 * 			such as when the scene was read from its cache
+	 * @see IndexOptimizer#getAcmrBefore()
+	 */
+	public double getAcmrBefore() {
+		synchronized (acmrLock) {
+			return acmrBefore/acmrTriangles;
+		}
+	}
+	
+	/**
+	 * Returns the average number of vertices missing from the vertex 
+	 * cache per triangle of the objects reordered by the last load, 
+	 * after they were reordered.
+	 * @return	the ratio, weighted by the number of triangles of each 
+	 * 			object, or <code>NaN</code> if no object was reordered, 
+	 * 			such as when the scene was read from its cache
+	 * @see IndexOptimizer#getAcmrAfter()
+	 */
+	public double getAcmrAfter() {
+		synchronized (acmrLock) {
+			return acmrAfter/acmrTriangles;
+		}
+	}
+	
+	/**
+	 * Returns whether objects are stored outside of the Java heap.
+	 * @return <code>true</code> if objects are stored off-heap
+	 * @see DirectMesh
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+	
+	/**
+	 * Chooses whether {@link #loadScene(File)} stores objects outside of 
+	 * the Java heap, as {@link DirectMesh}es, for scenes too large for 
+	 * the heap. The vertices and triangles of a .byu file are then 
+	 * stored as they are read, and the heap used doesn't grow with the 
+	 * size of the scene. Objects stored off-heap are loaded sequentially, 
+	 * their vertices aren't welded, and they aren't cached.
+	 * @param offHeap <code>true</code> to store objects off-heap
+	 * @see #setOffHeapDirectory(File)
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+	
+	/**
+	 * Returns the directory of the files objects stored off-heap are 
+	 * mapped from.
+	 * @return	the directory, or <code>null</code> if they are kept 
+	 * 			in memory
+	 */
+	public File getOffHeapDirectory() {
+		return offHeapDirectory;
+	}
+	
+	/**
+	 * Chooses where objects stored off-heap are kept. By default they are 
+	 * kept in direct memory, which the JVM limits with 
+	 * <code>-XX:MaxDirectMemorySize</code>. When they are mapped from 
+	 * files, they are only limited by the space of the directory, and 
+	 * the operating system pages them in as they are drawn.
+	 * @param offHeapDirectory	The directory of the files to map objects 
+	 * 							from, or <code>null</code> to keep them 
+	 * 							in memory
+	 */
+	public void setOffHeapDirectory(File offHeapDirectory) {
+		this.offHeapDirectory = offHeapDirectory;
+	}
+	
+	/**
+	 * Returns whether loaded scenes are cached.
+	 * @return <code>true</code> if scenes are cached
+	 * @see SceneCache
+	 */
+	public boolean isCacheEnabled() {
+		return cacheEnabled;
+	}
+	
+	/**
+	 * Chooses whether {@link #loadScene(File)} uses a binary cache 
+	 * next to the .byu file. When enabled, which is the default, a cache 
+	 * is written after a file is parsed and is read instead of the file 
+	 * for as long as the file doesn't change and its vertices are welded 
+	 * and its triangles reordered the same way.
+	 * @param cacheEnabled <code>true</code> to cache scenes
+	 * @see SceneCache
+	 */
+	public void setCacheEnabled(boolean cacheEnabled) {
+		this.cacheEnabled = cacheEnabled;
+	}
+	
+	/**
+	 * Loads scene elements from .byu files, which may be compressed 
+	 * with gzip. Objects can also be imported from binary .ply and from 
+	 * .obj files, whose camera and light are read from a .byu file next 
+	 * to them, as told by {@link #getSidecar(File)}.
 	 * @param	file The file to read the scene elements from
 	 * @throws	IOException In case there is a problem reading the file
 	 * @throws	NonConformantSceneFile In case the file doesn't respect 
@@ -65,23 +382,157 @@ public class SceneController {
 	 */
 	public void loadScene(File file) throws IOException, 
 										NonConformantSceneFile {
-		bfr = new BufferedReader(new FileReader(file));
-		
-		
-		
-		String line = null;
-		while ( (line = bfr.readLine()) != null ) {
-			if (line.equals("\n")) {
-				continue;
+		loadScene(file, null);
+	}
+	
+	/**
+	 * Loads scene elements from .byu files, reporting the progress.
+	 * The elements are loaded into a copy of the current scene, which 
+	 * replaces it only if the whole file is loaded. If the loading thread 
+	 * is interrupted, loading stops and the current scene is kept. 
+	 * Objects whose geometry didn't change since the current scene was 
+	 * loaded are kept as they were, which makes reloading a file that 
+	 * changed in only some of its objects cheaper to draw.
+	 * @param	file		The file to read the scene elements from
+	 * @param	listener	Told how much of the file has been loaded, 
+	 * 						from the loading thread. May be 
+	 * 						<code>null</code>.
+	 * @throws	IOException In case there is a problem reading the file, 
+	 * 			or an <code>InterruptedIOException</code> if loading was 
+	 * 			cancelled
+	 * @throws	NonConformantSceneFile In case the file doesn't respect 
+	 * 			the .byu standard
+	 */
+	public synchronized void loadScene(File file, SceneLoadListener listener) 
+			throws IOException, NonConformantSceneFile {
+		this.listener = listener;
+		this.fileLength = file.length();
+		this.loader = Thread.currentThread();
+		this.loadingProgressively = progressive;
+		this.loading = new Scene(this.scene);
+		synchronized (acmrLock) {
+			acmrBefore = 0;
+			acmrAfter = 0;
+			acmrTriangles = 0;
+		}
+		try {
+			loadFile(file);
+			checkCancelled();
+			this.loading.keepUnchangedMeshes(this.scene);
+			this.scene = this.loading;
+		} finally {
+			this.loading = null;
+			this.loader = null;
+			this.listener = null;
+		}
+		if (listener != null) {
+			listener.progressed(1.0);
+		}
+	}
+	
+	/**
+	 * Loads scene elements from .byu files on a background thread. 
+	 * Loads run one at a time, in the order they were requested. 
+	 * Cancelling the returned <code>Future</code> with 
+	 * <code>cancel(true)</code> stops the load and keeps the current 
+	 * scene.
+	 * @param	file		The file to read the scene elements from
+	 * @param	listener	Told about the progress of the load and when it 
+	 * 						is finished, from the loading thread. May be 
+	 * 						<code>null</code>.
+	 * @return	the pending load, whose result is the loaded scene
+	 * @see #loadScene(File, SceneLoadListener)
+	 */
+	public Future<Scene> loadSceneAsync(final File file, 
+			final SceneLoadListener listener) {
+		FutureTask<Scene> load = new FutureTask<Scene>(new Callable<Scene>() {
+			@Override
+			public Scene call() throws IOException, NonConformantSceneFile {
+				synchronized (SceneController.this) {
+					loadScene(file, listener);
+					return getScene();
+				}
 			}
-			String[] args = line.split(" ");
-			if (args.length == 2) {
-				loadObjects(line);
-			} else if (args.length == 3){
-				loadCamera(line);
+		}) {
+			@Override
+			protected void done() {
+				if (listener != null) {
+					listener.finished(this);
+				}
+			}
+		};
+		executor.execute(load);
+		return load;
+	}
+	
+	/**
+	 * Stops the current load if its thread was interrupted.
+	 * @throws InterruptedIOException If loading was cancelled
+	 */
+	private void checkCancelled() throws InterruptedIOException {
+		if (loader.isInterrupted()) {
+			throw new InterruptedIOException("Loading was cancelled");
+		}
+	}
+	
+	/**
+	 * Loads scene elements from a .byu, .ply or .obj file or its cache.
+	 * @param	file The file to read the scene elements from
+	 * @throws	IOException In case there is a problem reading the file
+	 * @throws	NonConformantSceneFile In case the file doesn't respect 
+	 * 			the .byu standard
+	 */
+	private void loadFile(File file) throws IOException, 
+										NonConformantSceneFile {
+		boolean imported = isImported(file);
+		if (imported) {
+			//Camera and light come from a .byu file next to the objects
+			File sidecar = getSidecar(file);
+			if (sidecar.isFile()) {
+				readBYU(sidecar, true);
+			}
+		}
+		//The cache would bring the objects back into the heap
+		boolean caching = cacheEnabled && !offHeap;
+		if (caching && loadCache(file)) {
+			return;
+		}
+		Camera oldCamera = this.loading.getCamera();
+		Light oldLight = this.loading.getLight();
+		List<Mesh> oldMeshes = this.loading.getMeshes();
+		this.pendingMeshes = new ArrayList<Future<Mesh>>();
+		this.firstObject = true;
+		try {
+			if (imported) {
+				importObjects(file);
+			} else {
+				readBYU(file, false);
+			}
+			//Objects loaded in parallel are added in the file's order
+			for (Future<Mesh> mesh : pendingMeshes) {
+				this.loading.addMesh(getResult(mesh));
+			}
+		} finally {
+			pendingMeshes = null;
+		}
+		
+		boolean withCamera = this.loading.getCamera() != oldCamera;
+		boolean withLight = this.loading.getLight() != oldLight;
+		boolean withObjects = this.loading.getMeshes() != oldMeshes;
+		//A cache too large to be read back isn't worth writing
+		if (caching && SceneCache.size(this.loading, withCamera, withLight,
+				withObjects) <= SceneCache.MAX_SIZE) {
+			//Only what was in this file goes into its cache
+			SceneCache cache = SceneCache.fromScene(this.loading, 
+					withCamera, withLight, withObjects);
+			try {
+				cache.write(file, welding, weldingEpsilon, optimizing);
+			} catch (IOException e) {
+				//The scene is loaded anyway, it will be parsed next time
+				System.err.println("Could not write the cache of "
+						+file+": "+e.getMessage());
 			}
 		}
-		bfr.close();
 //		
 //		/* Sort the triangles only if there are triangles AND
 //		 * a camera has been instantiated 
@@ -93,380 +544,856 @@ public class SceneController {
 	}
 	
 	/**
-	 * From a Line string starts to load objects into memory
-	 * @param line A line from a BYU file
-	 * @throws IOException If <code>BufferedReader</code> stops working
+	 * Reads the scene elements of a .byu file.
+	 * @param file			The .byu file
+	 * @param cameraOnly	Whether to stop at the first object, reading 
+	 * 						only the camera and light before it
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If there is a syntax error with the file
+	 */
+	private void readBYU(File file, boolean cameraOnly) 
+			throws IOException, NonConformantSceneFile {
+		tokenizer = openTokenizer(file);
+		try {
+			while (tokenizer.nextLine()) {
+				if (tokenizer.tokenCount() == 2) {
+					if (cameraOnly) {
+						break;
+					}
+					loadObjects();
+				} else if (tokenizer.tokenCount() == 3) {
+					loadCamera(cameraOnly);
+					if (cameraOnly) {
+						//The light was read along with the camera
+						break;
+					}
+				}
+			}
+		} finally {
+			tokenizer.close();
+			compressed = null;
+		}
+	}
+	
+	/**
+	 * Opens a tokenizer over a file, decompressing it if it is compressed 
+	 * with gzip, or mapping it into memory if enabled.
+	 * @param file The file
+	 * @return the tokenizer
+	 * @throws IOException If the file can't be opened
+	 */
+	private BYUTokenizer openTokenizer(File file) throws IOException {
+		if (PipedGZIPInputStream.isGZIP(file)) {
+			//Decompressed on another thread while it is parsed
+			compressed = new PipedGZIPInputStream(file);
+			return new BYUTokenizer(compressed);
+		} else if (memoryMapped) {
+			return new BYUTokenizer(
+					FileChannel.open(file.toPath(), StandardOpenOption.READ));
+		} else {
+			return new BYUTokenizer(new FileInputStream(file));
+		}
+	}
+	
+	/**
+	 * Tells whether a file is in one of the formats read by a 
+	 * {@link MeshImporter}, by its extension.
+	 * @param file The file
+	 * @return <code>true</code> for .ply and .obj files, which may be 
+	 * 			compressed with gzip if they are .obj files
+	 */
+	private static boolean isImported(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".ply") || name.endsWith(".obj") || 
+				name.endsWith(".obj.gz");
+	}
+	
+	/**
+	 * Returns the .byu file which holds the camera and light of an 
+	 * imported file: the file with the same name, up to its extension, 
+	 * and the .byu extension. 
+	 * Only the camera and light before the first object in it are read.
+	 * @param file The imported file
+	 * @return the .byu file, which may not exist
+	 */
+	public static File getSidecar(File file) {
+		String name = file.getName();
+		if (name.toLowerCase().endsWith(".gz")) {
+			name = name.substring(0, name.length() - 3);
+		}
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			name = name.substring(0, dot);
+		}
+		return new File(file.getAbsoluteFile().getParentFile(), 
+				name + ".byu");
+	}
+	
+	/**
+	 * Loads the objects of a .ply or .obj file. The objects of a file 
+	 * replace the previously loaded ones. In parallel mode, each object 
+	 * is built on the pool while the next one is read.
+	 * @param file The file
+	 * @throws IOException If the file can't be read
 	 * @throws NonConformantSceneFile If there is a syntax error with the file
 	 */
-	private void loadObjects(String line) throws IOException, NonConformantSceneFile {
-		String[] args = line.split(" ");
+	private void importObjects(File file) 
+			throws IOException, NonConformantSceneFile {
+		if (file.getName().toLowerCase().endsWith(".ply")) {
+			importer = new PLYImporter(
+					FileChannel.open(file.toPath(), StandardOpenOption.READ));
+		} else {
+			tokenizer = openTokenizer(file);
+			importer = new OBJImporter(tokenizer);
+		}
+		try {
+			while (importer.nextObject()) {
+				checkCancelled();
+				if (firstObject) {
+					this.loading.cleanTriangles();
+					firstObject = false;
+				}
+				double[] positions = importer.getPositions();
+				int[] indices = importer.getIndices();
+				if (welding) {
+					int[] remap = new int[positions.length/3];
+					int welded = new VertexWelder(weldingEpsilon).weld(
+							positions, remap);
+					positions = Arrays.copyOf(positions, 3*welded);
+					indices = VertexWelder.remap(indices, remap);
+				}
+				if (parallel) {
+					final double[] objectPositions = positions;
+					final int[] objectIndices = indices;
+					pendingMeshes.add(getPool().submit(new Callable<Mesh>() {
+						@Override
+						public Mesh call() throws IOException {
+							return buildMesh(objectPositions, objectIndices);
+						}
+					}));
+				} else {
+					this.loading.addMesh(buildMesh(positions, indices));
+				}
+				notifyProgress();
+			}
+		} finally {
+			importer.close();
+			importer = null;
+			compressed = null;
+		}
+	}
+	
+	/**
+	 * Builds the mesh of an object, with the normals of its vertices. 
+	 * Its triangles are reordered and it is stored off-heap if enabled.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param indices	The 0-based vertex indices, three per triangle
+	 * @return the mesh
+	 * @throws IOException If the mesh can't be stored off-heap
+	 */
+	private Mesh buildMesh(double[] positions, int[] indices) 
+			throws IOException {
+		indices = optimize(positions, indices);
+		Mesh mesh = offHeap ? 
+				DirectMesh.fromArrays(positions, indices, offHeapDirectory) :
+				new Mesh(positions, indices);
+		finishMesh(mesh);
+		return mesh;
+	}
+	
+	/**
+	 * Finishes the mesh of an object once all of its triangles are 
+	 * known. The hierarchy of its clusters is built before the normals 
+	 * of its vertices are calculated, since the screen only culls the 
+	 * clusters of objects with normals, so that it is built here on the 
+	 * loading thread rather than when the object is drawn.
+	 * @param mesh The mesh
+	 */
+	private static void finishMesh(Mesh mesh) {
+		mesh.getClusters();
+		mesh.calculateNormals();
+	}
+	
+	/**
+	 * Reorders the triangles of an object if enabled, adding how much 
+	 * better they use the vertex cache to the ratios of the load.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param indices	The 0-based vertex indices, three per triangle
+	 * @return the reordered indices, or the same ones if not enabled
+	 */
+	private int[] optimize(double[] positions, int[] indices) {
+		if (!optimizing) {
+			return indices;
+		}
+		IndexOptimizer optimizer = new IndexOptimizer();
+		int[] optimized = optimizer.optimize(positions, indices);
+		int triangles = indices.length/3;
+		if (triangles == 0) {
+			return optimized;
+		}
+		synchronized (acmrLock) {
+			acmrBefore += optimizer.getAcmrBefore()*triangles;
+			acmrAfter += optimizer.getAcmrAfter()*triangles;
+			acmrTriangles += triangles;
+		}
+		return optimized;
+	}
+	
+	/**
+	 * Loads the scene elements from the cache of a .byu file.
+	 * @param file The .byu file
+	 * @return	<code>true</code> if the cache was loaded, 
+	 * 			<code>false</code> if there is no valid cache
+	 */
+	private boolean loadCache(File file) {
+		SceneCache cache;
+		try {
+			cache = SceneCache.read(file, welding, weldingEpsilon, 
+					optimizing);
+		} catch (IOException e) {
+			cache = null;
+		}
+		if (cache == null) {
+			return false;
+		}
+		if (cache.getCamera() != null) {
+			this.loading.setCamera(cache.getCamera());
+		}
+		if (cache.getLight() != null) {
+			this.loading.setLight(cache.getLight());
+		}
+		if (cache.hasObjects()) {
+			this.loading.cleanTriangles();
+		}
+		for (int m = 0; m < cache.getObjectCount(); m++) {
+			Mesh mesh = new Mesh(toDoubles(cache.getPositions(m)), 
+					cache.getIndices(m));
+			//The clusters come first, as in finishMesh
+			mesh.getClusters();
+			mesh.setNormals(toDoubles(cache.getNormals(m)));
+			this.loading.addMesh(mesh);
+		}
+		return true;
+	}
+	
+	/**
+	 * Widens an array of <code>float</code>s.
+	 * @param fs The <code>float</code>s
+	 * @return the same values, as <code>double</code>s
+	 */
+	private static double[] toDoubles(float[] fs) {
+		double[] ds = new double[fs.length];
+		for (int i = 0; i < fs.length; i++) {
+			ds[i] = fs[i];
+		}
+		return ds;
+	}
+	
+	/**
+	 * Starting at the tokenizer's current line, which must be an object 
+	 * header, loads an object into memory. The objects of a file replace 
+	 * the previously loaded ones. In parallel mode, the object is built 
+	 * on the pool while the next one is read.
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If there is a syntax error with the file
+	 */
+	private void loadObjects() throws IOException, NonConformantSceneFile {
 		//Reading an object
-		//Clean the previously loaded object
-		this.scene.cleanTriangles();
+		//Clean the objects of the previous file
+		if (firstObject) {
+			this.loading.cleanTriangles();
+			firstObject = false;
+		}
 		//Load the new
 		int numVertices;
-		int numTriangles;
+		int numPolygons;
 		try {
-			numVertices = Integer.valueOf(args[0]);
-			numTriangles = Integer.valueOf(args[1]);				
+			numVertices = tokenizer.getInt(0);
+			numPolygons = tokenizer.getInt(1);
 		} catch (NumberFormatException nfe) {
-			bfr.close();
 			throw new NonConformantSceneFile("Expected two "
-					+ "Integer values, "+"but found \""+args[0]+" "
-					+args[1]+"\"");
+					+ "Integer values, "+"but found \""
+					+tokenizer.getLine()+"\"");
+		}
+		
+		if (offHeap) {
+			loadDirectObject(numVertices, numPolygons);
+			return;
 		}
 		
 		//Read all vertices
-		Vertex[] vs = new Vertex[numVertices];
-		for (int i = 0; i < vs.length; i++) {
-			line = bfr.readLine();
-			if (line == null) {
-				bfr.close();
+		double[] positions = new double[3*numVertices];
+		if (parallel) {
+			readVerticesInParallel(positions);
+		} else {
+			for (int i = 0; i < numVertices; i++) {
+				if (!tokenizer.nextLine()) {
+					throw new NonConformantSceneFile("Expected "
+							+numVertices+" vertices, but found only "+i);
+				}
+				parseVertex(tokenizer, positions, i);
+				if (i % BATCH_SIZE == 0) {
+					checkCancelled();
+				}
+			}
+		}
+		
+		//Merge the vertices which share their position
+		int[] remap = null;
+		if (welding) {
+			remap = new int[numVertices];
+			int welded = new VertexWelder(weldingEpsilon).weld(positions, 
+					remap);
+			positions = Arrays.copyOf(positions, 3*welded);
+		}
+		
+		if (parallel) {
+			final double[] weldedPositions = positions;
+			final int[] indices = readPolygonsInParallel(numVertices, 
+					numPolygons, remap);
+			pendingMeshes.add(getPool().submit(new Callable<Mesh>() {
+				@Override
+				public Mesh call() throws IOException {
+					return buildMesh(weldedPositions, indices);
+				}
+			}));
+			notifyProgress();
+			return;
+		}
+		
+		//Read all polygons, split into triangles
+		PolygonTriangulator polygons = 
+				new PolygonTriangulator(numVertices, numPolygons);
+		polygons.setRemap(remap);
+		Mesh mesh;
+		if (loadingProgressively) {
+			//Triangles are published as soon as a batch of them is read
+			mesh = new Mesh(positions, null);
+			this.loading.addMesh(mesh);
+			readPolygons(polygons, numPolygons, mesh);
+			mesh.setIndices(optimize(positions, polygons.toArray()));
+		} else {
+			readPolygons(polygons, numPolygons, null);
+			mesh = new Mesh(positions, 
+					optimize(positions, polygons.toArray()));
+			this.loading.addMesh(mesh);
+		}
+		
+		finishMesh(mesh);
+		notifyProgress();
+	}
+	
+	/**
+	 * Starting at the tokenizer's current line, which must be an object 
+	 * header, loads an object into a {@link DirectMesh}. Only one batch 
+	 * of triangles is kept on the heap at a time.
+	 * @param numVertices The number of vertices of the object
+	 * @param numPolygons The number of polygons of the object
+	 * @throws IOException If the file can't be read or the object can't 
+	 * 			be stored
+	 * @throws NonConformantSceneFile If there is a syntax error with the file
+	 */
+	private void loadDirectObject(int numVertices, int numPolygons) 
+			throws IOException, NonConformantSceneFile {
+		if (numVertices > DirectMesh.MAX_VERTICES) {
+			throw new NonConformantSceneFile("Objects stored off-heap can "
+					+ "have at most "+DirectMesh.MAX_VERTICES
+					+" vertices, but found "+numVertices);
+		}
+		DirectMesh mesh = new DirectMesh(numVertices, numPolygons, 
+				offHeapDirectory);
+		double[] position = new double[3];
+		for (int i = 0; i < numVertices; i++) {
+			if (!tokenizer.nextLine()) {
 				throw new NonConformantSceneFile("Expected "
 						+numVertices+" vertices, but found only "+i);
 			}
-			String[] values = line.split(" ");
-			if (values.length < 3) {
-				bfr.close();
-				throw new NonConformantSceneFile("All vertices must "
-						+ "have at least 3 coordinates");
-			}
-			double[] coords = new double[3];
-			try {
-				coords[0] = Double.valueOf(values[0]);
-				coords[1] = Double.valueOf(values[1]);
-				coords[2] = Double.valueOf(values[2]);
-			} catch (Exception e) {
-				bfr.close();
-				throw new NonConformantSceneFile("Expected 3 "
-						+ "double-point precision values, but "
-						+ "found \""+line+"\"");
+			parseVertex(tokenizer, position, 0);
+			mesh.setPosition(i, position[0], position[1], position[2]);
+			if (i % BATCH_SIZE == 0) {
+				checkCancelled();
 			}
-			vs[i] = new Vertex(coords);
+		}
+		mesh.updateBounds();
+		
+		PolygonTriangulator polygons = 
+				new PolygonTriangulator(numVertices, BATCH_SIZE);
+		if (loadingProgressively) {
+			this.loading.addMesh(mesh);
+		}
+		readPolygons(polygons, numPolygons, mesh);
+		publishTriangles(mesh, polygons);
+		if (!loadingProgressively) {
+			this.loading.addMesh(mesh);
 		}
 		
-		//Form all triangles
-		for (int i = 0; i < numTriangles; i++) {
-			line = bfr.readLine();
-			if (line == null) {
-				bfr.close();
-				throw new NonConformantSceneFile("Expected "+
-						numTriangles+" triangles, but found only "+i);
+		finishMesh(mesh);
+		notifyProgress();
+	}
+	
+	/**
+	 * Reads the lines of polygons of an object until all of its polygons 
+	 * are read.
+	 * @param polygons		The triangulator of the object's polygons
+	 * @param numPolygons	The number of polygons of the object
+	 * @param mesh			The mesh to publish the triangles to as they 
+	 * 						are read, or <code>null</code>
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If there is a syntax error with the file
+	 */
+	private void readPolygons(PolygonTriangulator polygons, 
+			int numPolygons, Mesh mesh) 
+			throws IOException, NonConformantSceneFile {
+		int published = 0;
+		for (int line = 0; polygons.getPolygonCount() < numPolygons; line++) {
+			if (!tokenizer.nextLine()) {
+				throw new NonConformantSceneFile("Expected "+numPolygons
+						+" polygons, but found only "
+						+polygons.getPolygonCount());
 			}
-			String[] values = line.split(" ");
-			if (values.length < 3) {
-				bfr.close();
-				throw new NonConformantSceneFile("All triangles must "+
-						"have at least 3 vertices");
+			polygons.readLine(tokenizer, numPolygons);
+			if (line % BATCH_SIZE == 0) {
+				checkCancelled();
 			}
-			Vertex[] triVertices = new Vertex[3];
-			int index = Integer.valueOf(values[0]) - 1;
-			triVertices[0] = vs[index]; 
-			index = Integer.valueOf(values[1]) - 1;
-			triVertices[1] = vs[index];
-			index = Integer.valueOf(values[2]) - 1;
-			triVertices[2] = vs[index];
-			Edge[] es = new Edge[3];
-			for (int k = 0; k < 3; k++) {
-				es[k] = new Edge(triVertices[k], triVertices[(k+1)%3]);
+			if (mesh != null && 
+					polygons.getTriangleCount() - published >= BATCH_SIZE) {
+				published = publishTriangles(mesh, polygons);
 			}
-			this.scene.addTriangle(new Triangle(es[0], es[1], es[2]));
 		}
-		
-		//Operate over all triangles
-		
-		for (Vertex v : vs) {
-			Vector norm = new Vector(new double[] {0.0, 0.0, 0.0});
-			for (Triangle t : this.scene.getTriangles()) {
-				if (v.in(t)) {
-					norm = norm.add(t.getNormal());
+	}
+	
+	/**
+	 * Publishes the triangles read so far to the mesh of an object. 
+	 * Triangles stored off-heap are appended to the mesh, and forgotten 
+	 * by the triangulator.
+	 * @param mesh		The mesh of the object
+	 * @param polygons	The triangulator of the object's polygons
+	 * @return the number of triangles left in the triangulator
+	 * @throws IOException If the triangles can't be stored off-heap
+	 */
+	private int publishTriangles(Mesh mesh, PolygonTriangulator polygons) 
+			throws IOException {
+		if (mesh.isOffHeap()) {
+			((DirectMesh) mesh).appendTriangles(polygons.getIndices(), 
+					polygons.getTriangleCount());
+			polygons.clear();
+		} else {
+			mesh.publishTriangles(polygons.getIndices(), 
+					polygons.getTriangleCount());
+		}
+		notifyProgress();
+		return polygons.getTriangleCount();
+	}
+	
+	/**
+	 * Tells the listener of the current load how much of the file 
+	 * has been read.
+	 */
+	private void notifyProgress() {
+		if (listener != null) {
+			long bytesRead = compressed != null ? 
+					compressed.getCompressedBytesRead() : 
+					importer != null ? importer.getBytesRead() : 
+					tokenizer.getBytesRead();
+			listener.progressed(fileLength == 0 ? 1.0 : 
+				(double) bytesRead / fileLength);
+		}
+	}
+	
+	/**
+	 * Parses the current line of a tokenizer as a vertex.
+	 * @param t			The tokenizer
+	 * @param positions	The array to store the coordinates into
+	 * @param i			The index of the vertex
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	public static void parseVertex(BYUTokenizer t, double[] positions, 
+			int i) throws NonConformantSceneFile {
+		if (t.tokenCount() < 3) {
+			throw new NonConformantSceneFile("All vertices must "
+					+ "have at least 3 coordinates");
+		}
+		try {
+			positions[3*i]		= t.getDouble(0);
+			positions[3*i+1]	= t.getDouble(1);
+			positions[3*i+2]	= t.getDouble(2);
+		} catch (NumberFormatException e) {
+			throw new NonConformantSceneFile("Expected 3 "
+					+ "double-point precision values, but "
+					+ "found \""+t.getLine()+"\"");
+		}
+	}
+	
+	/**
+	 * Reads the vertex block of an object, parsing its chunks in parallel.
+	 * @param positions The array to store the coordinates into
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If there is a syntax error with the file
+	 */
+	private void readVerticesInParallel(final double[] positions) 
+			throws IOException, NonConformantSceneFile {
+		int numVertices = positions.length/3;
+		int found = tokenizer.nextBlock(numVertices, CHUNK_SIZE);
+		if (found < 0) {
+			//The block is too large for a buffer, read it line by line
+			for (int i = 0; i < numVertices; i++) {
+				if (!tokenizer.nextLine()) {
+					throw new NonConformantSceneFile("Expected "
+							+numVertices+" vertices, but found only "+i);
+				}
+				parseVertex(tokenizer, positions, i);
+				if (i % BATCH_SIZE == 0) {
+					checkCancelled();
 				}
 			}
-			norm = norm.normalize();
-			v.setNormal(norm);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int c = 0; c < tokenizer.getChunkCount(); c++) {
+			final BYUTokenizer chunk = tokenizer.getChunk(c);
+			final int first = tokenizer.getChunkFirstLine(c);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws NonConformantSceneFile, 
+						IOException {
+					checkCancelled();
+					for (int i = first; chunk.nextLine(); i++) {
+						parseVertex(chunk, positions, i);
+					}
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+		//Errors in the lines found come before the missing lines
+		if (found < numVertices) {
+			throw new NonConformantSceneFile("Expected "
+					+numVertices+" vertices, but found only "+found);
 		}
 	}
 	
 	/**
-	 * From a Line string starts to load the Camera and Light into memory
-	 * depending on what is in the file. The program can't read light and
-	 * camera separately. They need to be one after the other.
-	 * @param line A line from a BYU file
-	 * @throws IOException If <code>BufferedReader</code> stops working
+	 * Reads the polygons of an object, parsing chunks of their lines in 
+	 * parallel. That is only possible when each line holds one polygon, 
+	 * otherwise the polygons are read line by line. Since that is only 
+	 * known once no line has a negative index, the lines are read again 
+	 * one by one if a chunk finds one.
+	 * @param numVertices	The number of vertices of the object
+	 * @param numPolygons	The number of polygons of the object
+	 * @param remap			The new index of each welded vertex, or 
+	 * 						<code>null</code> if vertices weren't welded
+	 * @return the 0-based vertex indices, three per triangle
+	 * @throws IOException If the file can't be read
 	 * @throws NonConformantSceneFile If there is a syntax error with the file
 	 */
-	private void loadCamera(String line) throws IOException, NonConformantSceneFile {
-		String[] args = line.split(" ");
-		//Reading camera
-		double[] ds = new double[3];
+	private int[] readPolygonsInParallel(final int numVertices, 
+			int numPolygons, final int[] remap) 
+			throws IOException, NonConformantSceneFile {
+		PolygonTriangulator polygons = 
+				new PolygonTriangulator(numVertices, numPolygons);
+		polygons.setRemap(remap);
+		if (numPolygons == 0) {
+			return polygons.toArray();
+		}
+		//A negative index in the first line shows that polygons span lines
+		if (!tokenizer.nextLine()) {
+			throw new NonConformantSceneFile("Expected "+numPolygons
+					+" polygons, but found only 0");
+		}
+		polygons.readLine(tokenizer, numPolygons);
+		int lines = numPolygons - 1;
+		int found = !polygons.isModeKnown() || polygons.isLinePerPolygon() ? 
+				tokenizer.nextBlock(lines, CHUNK_SIZE) : -1;
+		if (found < 0) {
+			//Polygons span lines, or the block is too large for a buffer
+			readPolygons(polygons, numPolygons, null);
+			return polygons.toArray();
+		}
+		final int chunkCount = tokenizer.getChunkCount();
+		final PolygonTriangulator[] parts = 
+				new PolygonTriangulator[chunkCount];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int c = 0; c < chunkCount; c++) {
+			final BYUTokenizer chunk = tokenizer.getChunk(c);
+			final int part = c;
+			final int chunkLines = (c + 1 < chunkCount ? 
+					tokenizer.getChunkFirstLine(c + 1) : found) 
+					- tokenizer.getChunkFirstLine(c);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws NonConformantSceneFile, 
+						IOException {
+					checkCancelled();
+					parts[part] = new PolygonTriangulator(numVertices, 
+							chunkLines, true);
+					parts[part].setRemap(remap);
+					while (chunk.nextLine()) {
+						parts[part].readLine(chunk, Integer.MAX_VALUE);
+					}
+					return null;
+				}
+			});
+		}
 		try {
-			ds[0] = Double.valueOf(args[0]);
-			ds[1] = Double.valueOf(args[1]);
-			ds[2] = Double.valueOf(args[2]);
-		} catch (Exception e) {
-			bfr.close();
-			throw new NonConformantSceneFile("Expected 3 double-point "
-					+ "precision values, but found \""+line+"\"");
-		}
-		Vertex C = new Vertex(ds);
-		
-		line = bfr.readLine();
-		if (line == null) {
-			bfr.close();
-			throw new NonConformantSceneFile("Expected to find more "
-					+ "camera parameters, but found only 1");
+			invokeAll(tasks);
+		} catch (NonConformantSceneFile e) {
+			//A negative index in a later line shows that the first 
+			//polygon spans lines, and is read again along with the rest
+			tokenizer.rewindBlock();
+			readPolygons(polygons, numPolygons, null);
+			return polygons.toArray();
+		}
+		polygons.readAsLinePerPolygon();
+		for (PolygonTriangulator part : parts) {
+			polygons.append(part);
 		}
-		args = line.split(" ");
-		double[] ds2 = new double[3];
+		//Errors in the lines found come before the missing lines
+		if (found < lines) {
+			throw new NonConformantSceneFile("Expected "+numPolygons
+					+" polygons, but found only "+(found + 1));
+		}
+		return polygons.toArray();
+	}
+	
+	/**
+	 * Runs tasks on the loading pool and waits for all of them. 
+	 * If any failed, the failure of the first one is rethrown, so errors 
+	 * are reported as if the tasks had run one after the other.
+	 * @param tasks The tasks to run
+	 * @throws IOException If a task failed reading or was interrupted
+	 * @throws NonConformantSceneFile If a task found a syntax error
+	 */
+	private void invokeAll(List<Callable<Void>> tasks) 
+			throws IOException, NonConformantSceneFile {
+		for (Future<Void> future : getPool().invokeAll(tasks)) {
+			getResult(future);
+		}
+	}
+	
+	/**
+	 * Waits for a task of the loading pool and returns its result. 
+	 * If it failed, its failure is rethrown.
+	 * @param future The task
+	 * @return the result of the task
+	 * @throws IOException If the task failed reading or was interrupted
+	 * @throws NonConformantSceneFile If the task found a syntax error
+	 */
+	private static <T> T getResult(Future<T> future) 
+			throws IOException, NonConformantSceneFile {
 		try {
-			ds2[0] = Double.valueOf(args[0]);
-			ds2[1] = Double.valueOf(args[1]);
-			ds2[2] = Double.valueOf(args[2]);
-		} catch (Exception e) {
-			bfr.close();
-			throw new NonConformantSceneFile("Expected 3 double-point "
-					+ "precision values, but found \""+line+"\"");
-		}
-		Vector N = new Vector(ds2);
-		
-		line = bfr.readLine();
-		if (line == null) {
-			bfr.close();
-			throw new NonConformantSceneFile("Expected to find more "
-					+ "camera parameters, but found only 2");
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Loading was interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			//The pool wraps the checked exceptions thrown by the tasks
+			while (cause.getClass() == RuntimeException.class && 
+					cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof NonConformantSceneFile) {
+				throw (NonConformantSceneFile) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
 		}
-		args = line.split(" ");
-		
-		double[] ds3 = new double[3];
+	}
+	
+	/**
+	 * Returns the pool which runs the parallel loading tasks, 
+	 * creating it the first time.
+	 * @return the pool
+	 */
+	private ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+	
+	/**
+	 * Reads the next line, which must hold exactly <code>count</code> 
+	 * tokens, into an array of <code>double</code>s.
+	 * @param count		The expected number of values
+	 * @param missing	The error message in case there is no next line
+	 * @return The parsed values
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the line is missing or malformed
+	 */
+	private double[] readDoubles(int count, String missing) 
+			throws IOException, NonConformantSceneFile {
+		if (!tokenizer.nextLine()) {
+			throw new NonConformantSceneFile(missing);
+		}
+		return parseDoubles(count);
+	}
+	
+	/**
+	 * Parses the current line, which must hold at least <code>count</code> 
+	 * tokens, into an array of <code>double</code>s.
+	 * @param count The expected number of values
+	 * @return The parsed values
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	private double[] parseDoubles(int count) throws NonConformantSceneFile {
+		double[] ds = new double[count];
 		try {
-			ds3[0] = Double.valueOf(args[0]);
-			ds3[1] = Double.valueOf(args[1]);
-			ds3[2] = Double.valueOf(args[2]);
-		} catch (Exception e) {
-			bfr.close();
-			throw new NonConformantSceneFile("Expected 3 double-point "
-					+ "precision values, but found \""+line+"\"");
-		}
-		Vector V = new Vector(ds3);
+			if (tokenizer.tokenCount() < count) {
+				throw new NumberFormatException();
+			}
+			for (int i = 0; i < count; i++) {
+				ds[i] = tokenizer.getDouble(i);
+			}
+		} catch (NumberFormatException e) {
+			throw new NonConformantSceneFile("Expected "+count+" double-point "
+					+ "precision values, but found \""
+					+tokenizer.getLine()+"\"");
+		}
+		return ds;
+	}
+	
+	/**
+	 * Reads the next line, which must hold four <code>float</code>s, 
+	 * as a color specification of the light.
+	 * @return The parsed color
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the line is missing or malformed
+	 */
+	private float[] readColor() throws IOException, NonConformantSceneFile {
+		if (!tokenizer.nextLine()) {
+			throw new NonConformantSceneFile("Expected Light Color"
+					+ " specification, but found nothing");
+		}
+		if (tokenizer.tokenCount() != 4) {
+			throw new NonConformantSceneFile("Expected Light Color"
+					+ " specification, but found \""
+					+tokenizer.getLine()+"\"");
+		}
+		return parseColor();
+	}
+	
+	/**
+	 * Parses the current line as four <code>float</code>s.
+	 * @return The parsed color
+	 * @throws NonConformantSceneFile If the line is malformed
+	 */
+	private float[] parseColor() throws NonConformantSceneFile {
+		float[] color = new float[4];
+		try {
+			if (tokenizer.tokenCount() < 4) {
+				throw new NumberFormatException();
+			}
+			for (int i = 0; i < 4; i++) {
+				color[i] = tokenizer.getFloat(i);
+			}
+		} catch (NumberFormatException e) {
+			throw new NonConformantSceneFile("Expected four floats,"
+					+ " but found \""+tokenizer.getLine()+"\"");
+		}
+		return color;
+	}
+	
+	/**
+	 * Starting at the tokenizer's current line, loads the Camera and 
+	 * Light into memory depending on what is in the file. The program 
+	 * can't read light and camera separately. They need to be one after 
+	 * the other.
+	 * @param cameraOnly	Whether to stop at the first object, reading 
+	 * 						only the camera and light before it
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If there is a syntax error with the file
+	 */
+	private void loadCamera(boolean cameraOnly) 
+			throws IOException, NonConformantSceneFile {
+		//Reading camera
+		Vertex C = new Vertex(parseDoubles(3));
+		Vector N = new Vector(readDoubles(3, "Expected to find more "
+				+ "camera parameters, but found only 1"));
+		Vector V = new Vector(readDoubles(3, "Expected to find more "
+				+ "camera parameters, but found only 2"));
 		
-		line = bfr.readLine();
-		if (line == null) {
-			bfr.close();
+		if (!tokenizer.nextLine()) {
 			throw new NonConformantSceneFile("Expected to find more "
 					+ "camera parameters, but found only 3");
 		}
-		args = line.split(" ");
-		if (args.length != 4) {
-			bfr.close();
-			throw new NonConformantSceneFile("Expected 4 double-point "
-					+ "precision values, but found \""+line+"\"");
-		}
-		double fovy, aspect, near, far;
-		try {
-			fovy	= Double.valueOf(args[0]);
-			aspect	= Double.valueOf(args[1]);
-			near	= Double.valueOf(args[2]);
-			far		= Double.valueOf(args[3]);
-		} catch (Exception e) {
-			bfr.close();
+		if (tokenizer.tokenCount() != 4) {
 			throw new NonConformantSceneFile("Expected 4 double-point "
-					+ "precision values, but found \""+line+"\"");
+					+ "precision values, but found \""
+					+tokenizer.getLine()+"\"");
 		}
-		this.scene.setCamera(new Camera(C, N, V, fovy, aspect, near, far));
-		System.out.println("Camera = "+scene.getCamera().toString());
+		double[] perspective = parseDoubles(4);
+		double fovy		= perspective[0];
+		double aspect	= perspective[1];
+		double near		= perspective[2];
+		double far		= perspective[3];
+		this.loading.setCamera(new Camera(C, N, V, fovy, aspect, near, far));
+		System.out.println("Camera = "+loading.getCamera().toString());
 		
-		line = bfr.readLine();
-		if (line == null) {
+		if (!tokenizer.nextLine()) {
 			//If there is nothing else
 			return;
 		}
 		//But if there is and
-		args = line.split(" ");
-		if (args.length == 3) {
+		if (tokenizer.tokenCount() == 3) {
 			//Load Light
 			//In the current line, we find the light's position
-			float[] pls;
+			float[] pls = new float[3];
 			try {
-				pls = new float[] {
-					Float.parseFloat(args[0]),
-					Float.parseFloat(args[1]),
-					Float.parseFloat(args[2])
-				};
-			} catch (Exception e) {
+				for (int i = 0; i < 3; i++) {
+					pls[i] = tokenizer.getFloat(i);
+				}
+			} catch (NumberFormatException e) {
 				throw new NonConformantSceneFile("Expected three double-point "
 						+ "precision values for Origin of Light"
 						+ " vertex,"
-						+ " but found \""+line+"\"");
+						+ " but found \""+tokenizer.getLine()+"\"");
 			}
 			//Now get the iAmb, the light environment color
-			line = bfr.readLine();
-			if (line == null) {
+			if (!tokenizer.nextLine()) {
 				throw new NonConformantSceneFile("Expected Light Color"
 						+ " specification, but found nothing");
 			}
-			args = line.split(" ");
-			float[] iAmb = new float[4];
-			try {
-				iAmb[0] = Float.parseFloat(args[0]);
-				iAmb[1] = Float.parseFloat(args[1]);
-				iAmb[2] = Float.parseFloat(args[2]);
-				iAmb[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
+			float[] iAmb = parseColor();
 			//Now get iDiffuse, the light diffuse color
-			line = bfr.readLine();
-			if (line == null) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found nothing");
-			}
-			args = line.split(" ");
-			if (args.length != 4) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found \""+line+"\"");
-			}
-			float[] iDiffuse = new float[4];
-			try {
-				iDiffuse[0] = Float.parseFloat(args[0]);
-				iDiffuse[1] = Float.parseFloat(args[1]);
-				iDiffuse[2] = Float.parseFloat(args[2]);
-				iDiffuse[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
-			//
+			float[] iDiffuse = readColor();
 			//Now get iSpecular, the light specular color
-			line = bfr.readLine();
-			if (line == null) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found nothing");
-			}
-			args = line.split(" ");
-			if (args.length != 4) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found \""+line+"\"");
-			}
-			float[] iSpecular = new float[4];
-			try {
-				iSpecular[0] = Float.parseFloat(args[0]);
-				iSpecular[1] = Float.parseFloat(args[1]);
-				iSpecular[2] = Float.parseFloat(args[2]);
-				iSpecular[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
-			//
+			float[] iSpecular = readColor();
 			//Now get mAmb, the material environment color
-			line = bfr.readLine();
-			if (line == null) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found nothing");
-			}
-			args = line.split(" ");
-			if (args.length != 4) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found \""+line+"\"");
-			}
-			float[] mAmb = new float[4];
-			try {
-				mAmb[0] = Float.parseFloat(args[0]);
-				mAmb[1] = Float.parseFloat(args[1]);
-				mAmb[2] = Float.parseFloat(args[2]);
-				mAmb[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
-			//
+			float[] mAmb = readColor();
 			//Now get mDiffuse, the material diffuse color
-			line = bfr.readLine();
-			if (line == null) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found nothing");
-			}
-			args = line.split(" ");
-			if (args.length != 4) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found \""+line+"\"");
-			}
-			float[] mDiffuse = new float[4];
-			try {
-				mDiffuse[0] = Float.parseFloat(args[0]);
-				mDiffuse[1] = Float.parseFloat(args[1]);
-				mDiffuse[2] = Float.parseFloat(args[2]);
-				mDiffuse[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
-			//
+			float[] mDiffuse = readColor();
 			//Now get mSpecular, the material specular color
-			line = bfr.readLine();
-			if (line == null) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found nothing");
-			}
-			args = line.split(" ");
-			if (args.length != 4) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found \""+line+"\"");
-			}
-			float[] mSpecular = new float[4];
-			try {
-				mSpecular[0] = Float.parseFloat(args[0]);
-				mSpecular[1] = Float.parseFloat(args[1]);
-				mSpecular[2] = Float.parseFloat(args[2]);
-				mSpecular[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
-			//
+			float[] mSpecular = readColor();
 			//Now get mEmissive, the material emissive color
-			line = bfr.readLine();
-			if (line == null) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found nothing");
-			}
-			args = line.split(" ");
-			if (args.length != 4) {
-				throw new NonConformantSceneFile("Expected Light Color"
-						+ " specification, but found \""+line+"\"");
-			}
-			float[] mEmissive = new float[4];
-			try {
-				mEmissive[0] = Float.parseFloat(args[0]);
-				mEmissive[1] = Float.parseFloat(args[1]);
-				mEmissive[2] = Float.parseFloat(args[2]);
-				mEmissive[3] = Float.parseFloat(args[3]);
-			} catch (NumberFormatException e) {
-				throw new NonConformantSceneFile("Expected four floats,"
-						+ " but found \""+line+"\"");
-			}
-			//
+			float[] mEmissive = readColor();
 			//Now get eta, the Featured specular size
-			line = bfr.readLine();
-			if (line == null) {
+			if (!tokenizer.nextLine()) {
 				throw new NonConformantSceneFile("Expected Light Color"
 						+ " specification, but found nothing");
 			}
 			float eta;
 			try {
-				eta = Float.parseFloat(line);
+				if (tokenizer.tokenCount() != 1) {
+					throw new NumberFormatException();
+				}
+				eta = tokenizer.getFloat(0);
 			} catch (NumberFormatException e) {
 				throw new NonConformantSceneFile("Expected a double "
 						+ "precision-point value,"
-						+ " but found \""+line+"\"");
+						+ " but found \""+tokenizer.getLine()+"\"");
 			}
 			
-			this.scene.setLight(new Light(iAmb, iDiffuse, iSpecular, mAmb, 
+			this.loading.setLight(new Light(iAmb, iDiffuse, iSpecular, mAmb, 
 					mDiffuse, mSpecular, mEmissive, eta, pls));
 			
-		} else if (args.length == 2) {
-			loadObjects(line);
+		} else if (tokenizer.tokenCount() == 2 && !cameraOnly) {
+			loadObjects();
 		}
 	}
 	
@@ -477,10 +1404,7 @@ public class SceneController {
 	 * @return double The distance
 	 */
 	public static double d(Triangle t1) {
-		Vector v = t1.getCentroid().subtract(
-				getInstance().getScene().getCamera().getFocus()
-		);
-		return v.getNorm();
+		return d(t1.getCentroid());
 	}
 
 	/**
@@ -490,10 +1414,9 @@ public class SceneController {
 	 * @return double The distance
 	 */
 	public static double d(Vertex v) {
-		Vector vct = v.subtract(
-				getInstance().getScene().getCamera().getFocus()
-		);
-		return vct.getNorm();
+		Vec3 focus = Vec3.fromVertex(
+				getInstance().getScene().getCamera().getFocus());
+		return Vec3.fromVertex(v).sub(focus).getNorm();
 	}
 	
 	/**
@@ -504,7 +1427,7 @@ public class SceneController {
 		try {
 			sc.loadScene(new File("samples/camera4.byu")); //Make sure you have one
 			System.out.println(sc.getScene().toString());
-			System.out.println(sc.getScene().getTriangles().size());
+			System.out.println(sc.getScene().getTriangleCount());
 			System.out.println(sc.getScene().getCamera().toString());
 		} catch (IOException | NonConformantSceneFile e) {
 			// TODO Auto-generated catch block
@@ -0,0 +1,168 @@
+package com.gmail.vitortorreao.scene;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class watches a scene file, and tells a listener when it changes.
+ * Saving a file usually writes it in several steps, each one reported by
+ * the file system, so the listener is only told once no change was seen
+ * for a while. One save is reported exactly once.
+ * <p>
+ * The directory of the file is watched by a thread of its own, from
+ * which the listener is called.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class SceneFileWatcher implements Closeable {
+
+	/**
+	 * Default time without changes after which a file is taken as saved,
+	 * in milliseconds
+	 */
+	public static final long DEFAULT_QUIET_PERIOD = 300;
+
+	private final File file;
+	private final Path name;
+	private final long quietPeriod;
+	private final Runnable listener;
+	private final WatchService service;
+	private final Thread watcher;
+
+	/**
+	 * Starts watching a file, with the default quiet period.
+	 * @param file		The file to watch
+	 * @param listener	Run, from the watching thread, whenever the file
+	 * 					was changed
+	 * @throws IOException If the directory of the file can't be watched
+	 */
+	public SceneFileWatcher(File file, Runnable listener) throws IOException {
+		this(file, DEFAULT_QUIET_PERIOD, listener);
+	}
+
+	/**
+	 * Starts watching a file.
+	 * @param file			The file to watch
+	 * @param quietPeriod	How long, in milliseconds, the file must go
+	 * 						unchanged before the listener is told
+	 * @param listener		Run, from the watching thread, whenever the file
+	 * 						was changed
+	 * @throws IOException If the directory of the file can't be watched
+	 */
+	public SceneFileWatcher(File file, long quietPeriod, Runnable listener)
+			throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.name = this.file.toPath().getFileName();
+		this.quietPeriod = TimeUnit.MILLISECONDS.toNanos(quietPeriod);
+		this.listener = listener;
+		this.service = FileSystems.getDefault().newWatchService();
+		try {
+			this.file.getParentFile().toPath().register(service,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			service.close();
+			throw e;
+		}
+		this.watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					watch();
+				} catch (InterruptedException e) {
+					//Watching was stopped
+				} catch (ClosedWatchServiceException e) {
+					//Watching was stopped
+				}
+			}
+		}, "Scene watcher " + this.file.getName());
+		this.watcher.setDaemon(true);
+		this.watcher.start();
+	}
+
+	/**
+	 * Returns the file watched.
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Waits for changes to the file, and tells the listener about each
+	 * burst of them once it is over.
+	 * @throws InterruptedException If watching was stopped
+	 */
+	private void watch() throws InterruptedException {
+		//When the listener is told, if the file is left alone until then
+		long deadline = 0;
+		boolean pending = false;
+		while (true) {
+			WatchKey key;
+			if (!pending) {
+				key = service.take();
+			} else {
+				long wait = deadline - System.nanoTime();
+				key = wait > 0 ? service.poll(wait, TimeUnit.NANOSECONDS) : null;
+				if (key == null) {
+					pending = false;
+					listener.run();
+					continue;
+				}
+			}
+			if (changed(key)) {
+				pending = true;
+				deadline = System.nanoTime() + quietPeriod;
+			}
+			if (!key.reset()) {
+				//The directory is gone, and the file with it
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether some of the changes reported concern the file.
+	 * @param key The key of the directory, with the changes reported
+	 * @return <code>true</code> if the file may have changed
+	 */
+	private boolean changed(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW ||
+					name.equals(event.context())) {
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Stops watching the file. The listener isn't told about changes
+	 * still waiting for their quiet period.
+	 * @throws IOException If the watch service can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		watcher.interrupt();
+		service.close();
+	}
+
+}
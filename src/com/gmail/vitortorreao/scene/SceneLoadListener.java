@@ -0,0 +1,39 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.concurrent.Future;
+
+/**
+ * This interface is implemented by whoever wants to follow the loading 
+ * of a scene by the <code>SceneController</code>.
+ * <p>
+ * This code is available through the 
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at 
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de 
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public interface SceneLoadListener {
+	
+	/**
+	 * Called from the loading thread whenever part of the scene was 
+	 * loaded, such as a batch of triangles, and once more with 
+	 * <code>1.0</code> when loading finishes.
+	 * @param fraction How much of the file has been loaded, from 0 to 1
+	 */
+	public void progressed(double fraction);
+	
+	/**
+	 * Called from the loading thread once an asynchronous load has 
+	 * finished, whether it succeeded, failed or was cancelled. Loads made 
+	 * through <code>loadScene</code> don't call it, they return instead.
+	 * @param load	The finished load. Its <code>get</code> method returns 
+	 * 				the loaded scene or throws what made the load fail.
+	 * @see SceneController#loadSceneAsync(java.io.File, SceneLoadListener)
+	 */
+	public void finished(Future<Scene> load);
+
+}
@@ -1,5 +1,6 @@
 package com.gmail.vitortorreao.scene;
 
+import com.gmail.vitortorreao.math.Vec3;
 import com.gmail.vitortorreao.math.Vector;
 import com.gmail.vitortorreao.math.Vertex;
 
@@ -96,9 +97,10 @@ public class Triangle {
 	 * Calculates the normal of this <code>Triangle</code>.
 	 */
 	private void calculateNormal() {
-		Vector v1 = this.vertices[1].subtract(this.vertices[0]);
-		Vector v2 = this.vertices[2].subtract(this.vertices[0]);
-		this.normal = v1.vectorProduct(v2).normalize();
+		Vec3 v0 = Vec3.fromVertex(this.vertices[0]);
+		Vec3 v1 = Vec3.fromVertex(this.vertices[1]).sub(v0);
+		Vec3 v2 = Vec3.fromVertex(this.vertices[2]).sub(v0);
+		this.normal = v1.cross(v2).normalize().toVector();
 	}
 	
 	/**
@@ -0,0 +1,213 @@
+package com.gmail.vitortorreao.scene;
+
+import java.util.Arrays;
+
+/**
+ * This class implements the welding of the vertices of an object.
+ * Vertices closer to each other than an epsilon are merged into the
+ * first of them, so the faces which share them share their normals too.
+ * <p>
+ * The vertices are put into a grid of cells as large as the epsilon,
+ * kept in a hash table keyed by the cell's coordinates packed into a
+ * <code>long</code>. A vertex only has to be compared to the vertices of
+ * its cell and of the neighbouring ones, so welding takes linear time.
+ * The cells are made larger for coordinates so far from the origin that
+ * the number of a cell wouldn't fit in a <code>long</code>.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class VertexWelder {
+
+	/**
+	 * Marks an empty slot of the hash table, and the end of a list
+	 */
+	private static final int EMPTY = -1;
+
+	private double epsilon;
+	private double cellSize;
+	private int reach;
+	private long[] keys;
+	private int[] heads;
+	private int[] next;
+	private int mask;
+	private int shift;
+
+	/**
+	 * Instantiates a <code>VertexWelder</code>.
+	 * @param epsilon	The largest distance between two vertices which
+	 * 					are merged. With 0, only vertices with the very
+	 * 					same coordinates are merged.
+	 */
+	public VertexWelder(double epsilon) {
+		if (!(epsilon >= 0)) {
+			throw new IllegalArgumentException("The welding epsilon must "
+					+ "not be negative, but is "+epsilon);
+		}
+		this.epsilon = epsilon;
+		this.cellSize = epsilon > 0 ? epsilon : 1.0;
+		this.reach = epsilon > 0 ? 1 : 0;
+	}
+
+	/**
+	 * Welds the vertices of an object. The remaining vertices are moved
+	 * to the start of the array of coordinates, in their original order.
+	 * @param positions	The coordinates of the vertices, three per vertex
+	 * @param remap		Filled with the new index of each vertex
+	 * @return the number of vertices left
+	 */
+	public int weld(double[] positions, int[] remap) {
+		int numVertices = positions.length/3;
+		int capacity = Integer.highestOneBit(Math.max(2*numVertices, 2))*2;
+		keys = new long[capacity];
+		heads = new int[capacity];
+		Arrays.fill(heads, EMPTY);
+		next = new int[numVertices];
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+
+		//A few ulps of the largest coordinate keep the cell numbers
+		//within 2^50, and larger cells still hold the vertices to merge
+		double largest = 0;
+		for (double coord : positions) {
+			if (Math.abs(coord) > largest && !Double.isInfinite(coord)) {
+				largest = Math.abs(coord);
+			}
+		}
+		double cellSize = Math.max(this.cellSize, 4*Math.ulp(largest));
+
+		int unique = 0;
+		for (int i = 0; i < numVertices; i++) {
+			double x = positions[3*i];
+			double y = positions[3*i+1];
+			double z = positions[3*i+2];
+			long cx = (long) Math.floor(x / cellSize);
+			long cy = (long) Math.floor(y / cellSize);
+			long cz = (long) Math.floor(z / cellSize);
+			int found = find(positions, x, y, z, cx, cy, cz);
+			if (found >= 0) {
+				remap[i] = found;
+				continue;
+			}
+			positions[3*unique] = x;
+			positions[3*unique+1] = y;
+			positions[3*unique+2] = z;
+			insert(key(cx, cy, cz), unique);
+			remap[i] = unique++;
+		}
+		keys = null;
+		heads = null;
+		next = null;
+		return unique;
+	}
+
+	/**
+	 * Makes the indices of some triangles refer to welded vertices, 
+	 * dropping the triangles which collapse because two of their 
+	 * vertices were welded.
+	 * @param indices	The 0-based vertex indices, three per triangle
+	 * @param remap		The new index of each vertex, as filled by 
+	 * 					{@link #weld(double[], int[])}
+	 * @return the new indices, three per triangle
+	 */
+	public static int[] remap(int[] indices, int[] remap) {
+		int[] welded = new int[indices.length];
+		int size = 0;
+		for (int i = 0; i < indices.length; i += 3) {
+			int a = remap[indices[i]];
+			int b = remap[indices[i+1]];
+			int c = remap[indices[i+2]];
+			if (a != b && b != c && a != c) {
+				welded[size++] = a;
+				welded[size++] = b;
+				welded[size++] = c;
+			}
+		}
+		return size == welded.length ? welded : Arrays.copyOf(welded, size);
+	}
+
+	/**
+	 * Looks for a vertex within the epsilon of a point, in the point's
+	 * cell and the neighbouring cells.
+	 * @param positions	The coordinates of the vertices welded so far
+	 * @param x			The first coordinate of the point
+	 * @param y			The second coordinate of the point
+	 * @param z			The third coordinate of the point
+	 * @param cx		The first coordinate of the point's cell
+	 * @param cy		The second coordinate of the point's cell
+	 * @param cz		The third coordinate of the point's cell
+	 * @return the index of the vertex found, or -1 if there is none
+	 */
+	private int find(double[] positions, double x, double y, double z,
+			long cx, long cy, long cz) {
+		double epsilon2 = epsilon*epsilon;
+		for (long i = cx - reach; i <= cx + reach; i++) {
+			for (long j = cy - reach; j <= cy + reach; j++) {
+				for (long k = cz - reach; k <= cz + reach; k++) {
+					long key = key(i, j, k);
+					int slot = slot(key);
+					if (heads[slot] == EMPTY) {
+						continue;
+					}
+					for (int v = heads[slot]; v != EMPTY; v = next[v]) {
+						double dx = positions[3*v] - x;
+						double dy = positions[3*v+1] - y;
+						double dz = positions[3*v+2] - z;
+						if (dx*dx + dy*dy + dz*dz <= epsilon2) {
+							return v;
+						}
+					}
+				}
+			}
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Adds a vertex to the list of vertices of its cell.
+	 * @param key		The key of the cell
+	 * @param vertex	The index of the vertex
+	 */
+	private void insert(long key, int vertex) {
+		int slot = slot(key);
+		if (heads[slot] == EMPTY) {
+			keys[slot] = key;
+		}
+		next[vertex] = heads[slot];
+		heads[slot] = vertex;
+	}
+
+	/**
+	 * Finds the slot of the hash table which holds a cell, or the empty
+	 * slot where it would be put.
+	 * @param key The key of the cell
+	 * @return the slot
+	 */
+	private int slot(long key) {
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+		while (heads[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Packs the coordinates of a cell into a key. Cells far enough apart
+	 * may share a key, which only costs some extra comparisons.
+	 * @param cx The first coordinate of the cell
+	 * @param cy The second coordinate of the cell
+	 * @param cz The third coordinate of the cell
+	 * @return the key of the cell
+	 */
+	private static long key(long cx, long cy, long cz) {
+		return (cx * 73856093L) ^ (cy * 19349663L) ^ (cz * 83492791L);
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.gmail.vitortorreao.screen;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+import com.gmail.vitortorreao.scene.ClusterHierarchy;
+import com.gmail.vitortorreao.scene.Mesh;
+
+/**
+ * This class draws meshes from compiled display lists, for the OpenGL
+ * contexts whose vertex buffer objects are missing or broken. Each mesh
+ * is compiled once, and every frame its lists are called, instead of its
+ * triangles being sent again.
+ * <p>
+ * The triangles of a mesh are split into chunks of
+ * {@link #CHUNK_TRIANGLES}, each compiled into a list of its own, so that
+ * a huge mesh doesn't make a single list larger than drivers cope with.
+ * The chunks are the clusters of {@link ClusterHierarchy}, so the ones
+ * out of view aren't called.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class DisplayListRenderer
+		extends MeshRenderer<DisplayListRenderer.Lists> {
+
+	/**
+	 * Number of triangles compiled into each display list
+	 */
+	public static final int CHUNK_TRIANGLES =
+			ClusterHierarchy.CLUSTER_TRIANGLES;
+
+	/**
+	 * The display lists of a mesh.
+	 */
+	static class Lists extends MeshRenderer.Copy {
+
+		private int first;
+		private int count;
+
+	}
+
+	/**
+	 * Tells whether an OpenGL context can compile display lists, which
+	 * only compatibility contexts can.
+	 * @param gl The OpenGL context
+	 * @return <code>true</code> if display lists can be used
+	 */
+	public static boolean isSupported(GL gl) {
+		return gl.isFunctionAvailable("glGenLists")
+				&& gl.isFunctionAvailable("glNewList")
+				&& gl.isFunctionAvailable("glCallList")
+				&& gl.isFunctionAvailable("glDeleteLists");
+	}
+
+	@Override
+	protected Lists copy(GL2 gl, Mesh mesh) {
+		Lists lists = new Lists();
+		int count = mesh.getTriangleCount();
+		lists.count = (count + CHUNK_TRIANGLES - 1)/CHUNK_TRIANGLES;
+		if (lists.count == 0) {
+			return lists;
+		}
+		clearErrors(gl);
+		lists.first = gl.glGenLists(lists.count);
+		if (lists.first == 0) {
+			lists.failed = true;
+			return lists;
+		}
+		for (int c = 0; c < lists.count; c++) {
+			int first = c*CHUNK_TRIANGLES;
+			int last = Math.min(first + CHUNK_TRIANGLES, count);
+			gl.glNewList(lists.first + c, GL2.GL_COMPILE);
+			gl.glBegin(GL.GL_TRIANGLES);
+			for (int t = first; t < last; t++) {
+				for (int k = 0; k < 3; k++) {
+					int v = mesh.getIndex(t, k);
+					gl.glNormal3f((float) mesh.getNormal(v, 0),
+							(float) mesh.getNormal(v, 1),
+							(float) mesh.getNormal(v, 2));
+					gl.glVertex3f((float) mesh.getCoord(v, 0),
+							(float) mesh.getCoord(v, 1),
+							(float) mesh.getCoord(v, 2));
+				}
+			}
+			gl.glEnd();
+			gl.glEndList();
+		}
+		if (gl.glGetError() == GL.GL_OUT_OF_MEMORY) {
+			delete(gl, lists);
+			lists.failed = true;
+		}
+		return lists;
+	}
+
+	@Override
+	protected void draw(GL2 gl, Lists lists, int[] ranges, int rangeCount) {
+		for (int r = 0; r < rangeCount; r++) {
+			int first = ranges[2*r]/CHUNK_TRIANGLES;
+			long end = ((long) ranges[2*r] + ranges[2*r+1] + CHUNK_TRIANGLES
+					- 1)/CHUNK_TRIANGLES;
+			for (int c = first; c < Math.min(end, lists.count); c++) {
+				gl.glCallList(lists.first + c);
+			}
+		}
+	}
+
+	@Override
+	protected void delete(GL2 gl, Lists lists) {
+		if (lists.first != 0) {
+			gl.glDeleteLists(lists.first, lists.count);
+			lists.first = 0;
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.gmail.vitortorreao.screen;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+import com.gmail.vitortorreao.scene.Mesh;
+
+/**
+ * This class is the base of the ways of drawing meshes which keep a copy
+ * of them in OpenGL, so that they aren't sent again every frame. It keeps
+ * track of the copy of each mesh, makes it the first time the mesh is
+ * drawn, and makes it again only when the geometry of the mesh changes,
+ * which is told by {@link Mesh#getVersion()}.
+ * <p>
+ * A copy is only made once the normals of the vertices of a mesh are
+ * known, so while a mesh is loaded it has to be drawn some other way.
+ * The same goes for a mesh whose copy couldn't be made.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ * @param <C> The type of the copies
+ */
+public abstract class MeshRenderer<C extends MeshRenderer.Copy> {
+
+	/**
+	 * The copy of a mesh kept in OpenGL.
+	 */
+	protected static class Copy {
+
+		/**
+		 * The version of the mesh the copy was made of
+		 */
+		int version;
+
+		/**
+		 * Whether the copy couldn't be made, in which case it isn't tried
+		 * again until the mesh changes
+		 */
+		protected boolean failed;
+
+	}
+
+	private Map<Mesh, C> copies = new IdentityHashMap<Mesh, C>();
+
+	/**
+	 * Draws ranges of the triangles of a mesh from its copy, making the
+	 * copy first if the geometry of the mesh changed since it was last
+	 * made.
+	 * @param gl			The OpenGL context
+	 * @param mesh			The mesh
+	 * @param ranges		The first triangle and the number of triangles
+	 * 						of each range
+	 * @param rangeCount	The number of ranges
+	 * @return	<code>true</code> if the mesh was drawn, <code>false</code>
+	 * 			if it has to be drawn some other way, because its normals
+	 * 			aren't known yet or its copy couldn't be made
+	 */
+	public boolean draw(GL2 gl, Mesh mesh, int[] ranges, int rangeCount) {
+		//Normals are only known once the object is loaded
+		if (!mesh.hasNormals()) {
+			return false;
+		}
+		C copy = copies.get(mesh);
+		//The version is read before the geometry it stands for
+		int version = mesh.getVersion();
+		if (copy == null || copy.version != version) {
+			if (copy != null) {
+				delete(gl, copy);
+			}
+			copy = copy(gl, mesh);
+			copy.version = version;
+			copies.put(mesh, copy);
+		}
+		if (copy.failed) {
+			return false;
+		}
+		draw(gl, copy, ranges, rangeCount);
+		return true;
+	}
+
+	/**
+	 * Makes the copy of a mesh. If it can't be made, what was made of it
+	 * is deleted, and it is marked as failed.
+	 * @param gl	The OpenGL context
+	 * @param mesh	The mesh, whose normals are known
+	 * @return the copy
+	 */
+	protected abstract C copy(GL2 gl, Mesh mesh);
+
+	/**
+	 * Draws ranges of the triangles of a mesh from its copy. Triangles
+	 * past the ones copied are left out.
+	 * @param gl			The OpenGL context
+	 * @param copy			The copy, which didn't fail
+	 * @param ranges		The first triangle and the number of triangles
+	 * 						of each range
+	 * @param rangeCount	The number of ranges
+	 */
+	protected abstract void draw(GL2 gl, C copy, int[] ranges,
+			int rangeCount);
+
+	/**
+	 * Deletes the copy of a mesh.
+	 * @param gl	The OpenGL context
+	 * @param copy	The copy
+	 */
+	protected abstract void delete(GL2 gl, C copy);
+
+	/**
+	 * Deletes the copies of the meshes which aren't drawn anymore, such
+	 * as the ones of a scene which was replaced.
+	 * @param gl		The OpenGL context
+	 * @param meshes	The meshes whose copies are kept
+	 */
+	public void retain(GL2 gl, Collection<Mesh> meshes) {
+		Set<Mesh> kept = Collections.newSetFromMap(
+				new IdentityHashMap<Mesh, Boolean>());
+		kept.addAll(meshes);
+		Iterator<Map.Entry<Mesh, C>> it = copies.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Mesh, C> entry = it.next();
+			if (!kept.contains(entry.getKey())) {
+				delete(gl, entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the copies of all of the meshes.
+	 * @param gl The OpenGL context
+	 */
+	public void release(GL2 gl) {
+		for (C copy : copies.values()) {
+			delete(gl, copy);
+		}
+		copies.clear();
+	}
+
+	/**
+	 * Clears the errors raised so far by OpenGL, so that the ones raised
+	 * afterwards can be told apart.
+	 * @param gl The OpenGL context
+	 */
+	protected static void clearErrors(GL gl) {
+		while (gl.glGetError() != GL.GL_NO_ERROR) {
+		}
+	}
+
+}
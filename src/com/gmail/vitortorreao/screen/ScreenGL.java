@@ -1,11 +1,16 @@
 package com.gmail.vitortorreao.screen;
 import net.letskit.redbook.glskeleton;
 
+import java.awt.BorderLayout;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
@@ -14,14 +19,20 @@ import javax.media.opengl.*;
 import javax.media.opengl.awt.*;
 import javax.media.opengl.glu.*;
 
+import com.gmail.vitortorreao.math.Frustum;
+import com.gmail.vitortorreao.math.MutableVec3;
 import com.gmail.vitortorreao.math.Vector;
 import com.gmail.vitortorreao.math.Vertex;
 import com.gmail.vitortorreao.scene.Camera;
+import com.gmail.vitortorreao.scene.ClusterHierarchy;
+import com.gmail.vitortorreao.scene.DirectMesh;
 import com.gmail.vitortorreao.scene.Light;
+import com.gmail.vitortorreao.scene.Mesh;
 import com.gmail.vitortorreao.scene.NonConformantSceneFile;
 import com.gmail.vitortorreao.scene.Scene;
 import com.gmail.vitortorreao.scene.SceneController;
-import com.gmail.vitortorreao.scene.Triangle;
+import com.gmail.vitortorreao.scene.SceneFileWatcher;
+import com.gmail.vitortorreao.scene.SceneLoadListener;
 
 public class ScreenGL//
         extends glskeleton//
@@ -34,6 +45,11 @@ public class ScreenGL//
 	private static ScreenGL screen;
 	private static JFrame frame;
 	private static GLJPanel canvas;
+	private static JProgressBar progressBar;
+	private static JPanel progressPanel;
+	private static Future<Scene> load;
+	private static boolean reloading;
+	private static SceneFileWatcher watcher;
 	
 	private static final double Z_SPEED = 1.0;
 	private static final double X_SPEED = 1.0;
@@ -49,7 +65,19 @@ public class ScreenGL//
 	private Vertex pressed;
 	private Vector distanceVector;
 	
+	//Reused by the camera motion, which runs on every frame
+	private final MutableVec3 direction = new MutableVec3();
+	private final MutableVec3 up = new MutableVec3();
+	
 	private int mouseDown;
+	
+	//Chosen by init, null when meshes are sent again every frame
+	private MeshRenderer<?> renderer;
+	private Scene drawnScene;
+	private Frustum frustum;
+	private int[] ranges = new int[2];
+	//The parameters of the last gluPerspective, which GL still draws with
+	private double fovy, aspect, near, far;
     
     //
     /**
@@ -87,6 +115,26 @@ public class ScreenGL//
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.getContentPane().add(canvas);
         
+      //Create the loading progress bar, shown only while loading
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.setToolTipText("Stop loading and keep the current scene");
+        cancelButton.addActionListener(new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				if (load != null) {
+					load.cancel(true);
+				}
+			}
+		});
+        progressPanel = new JPanel(new BorderLayout());
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        progressPanel.setVisible(false);
+        frame.getContentPane().add(progressPanel, BorderLayout.SOUTH);
+        
       //Create menu bar
         JMenuBar menuBar = new JMenuBar();
         ImageIcon appIcon;
@@ -124,17 +172,63 @@ public class ScreenGL//
 				int returnVal = openFile.showOpenDialog(null);
 				
 				if (returnVal == JFileChooser.APPROVE_OPTION) {
-					File file = openFile.getSelectedFile();
-					try {
-						SceneController.getInstance().loadScene(file);
-				        screen.loadCamera();
-				        screen.loadLight();
-						screen.refresh();
-					} catch (IOException | NonConformantSceneFile e) {
-						JOptionPane.showMessageDialog(frame, 
-								e.getMessage(), "Error while opening file", 
-								JOptionPane.ERROR_MESSAGE);
+					final File file = openFile.getSelectedFile();
+					final JMenuItem openItem = (JMenuItem) arg0.getSource();
+					openItem.setEnabled(false);
+					progressBar.setValue(0);
+					progressPanel.setVisible(true);
+					frame.validate();
+					//A reload of the previous file is only in the way
+					if (load != null && !load.isDone() && reloading) {
+						load.cancel(true);
 					}
+					SceneController sc = SceneController.getInstance();
+					sc.setProgressive(true);
+					reloading = false;
+					//Load off the event thread, drawing triangles as they come
+					load = sc.loadSceneAsync(file, new SceneLoadListener() {
+						
+						@Override
+						public void progressed(final double fraction) {
+							SwingUtilities.invokeLater(new Runnable() {
+								
+								@Override
+								public void run() {
+									progressBar.setValue((int) (fraction*100));
+									screen.refresh();
+								}
+							});
+						}
+						
+						@Override
+						public void finished(final Future<Scene> load) {
+							SwingUtilities.invokeLater(new Runnable() {
+								
+								@Override
+								public void run() {
+									progressPanel.setVisible(false);
+									frame.validate();
+									openItem.setEnabled(true);
+									try {
+										load.get();
+										screen.loadCamera();
+										screen.loadLight();
+										watch(file);
+									} catch (CancellationException e) {
+										//The previous scene is kept
+									} catch (InterruptedException e) {
+										//Not thrown, the load is finished
+									} catch (ExecutionException e) {
+										JOptionPane.showMessageDialog(frame, 
+												e.getCause().getMessage(), 
+												"Error while opening file", 
+												JOptionPane.ERROR_MESSAGE);
+									}
+									screen.refresh();
+								}
+							});
+						}
+					});
 				}
 				
 			}
@@ -215,6 +309,95 @@ public class ScreenGL//
         canvas.requestFocusInWindow();
     }
 
+	/**
+	 * Watches the file of the scene, so that the scene is reloaded 
+	 * whenever the file is saved. The file watched before is let go.
+	 * @param file The file of the scene
+	 */
+	private static void watch(final File file) {
+		if (watcher != null) {
+			if (watcher.getFile().equals(file.getAbsoluteFile())) {
+				return;
+			}
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				//It is no longer watched either way
+			}
+			watcher = null;
+		}
+		try {
+			watcher = new SceneFileWatcher(file, new Runnable() {
+				
+				@Override
+				public void run() {
+					SwingUtilities.invokeLater(new Runnable() {
+						
+						@Override
+						public void run() {
+							reload(file);
+						}
+					});
+				}
+			});
+		} catch (IOException e) {
+			System.err.println("Changes to "+file+" won't be reloaded: "
+					+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Reloads the scene from its file in the background, after the file 
+	 * was saved. The old scene is drawn until the new one is loaded, 
+	 * objects which didn't change are kept, and so is the camera, 
+	 * wherever the user moved it. A reload still running is restarted, 
+	 * but a file being opened is left alone.
+	 * @param file The file of the scene
+	 */
+	private static void reload(File file) {
+		if (load != null && !load.isDone()) {
+			if (!reloading) {
+				return;
+			}
+			load.cancel(true);
+		}
+		SceneController sc = SceneController.getInstance();
+		sc.setProgressive(false);
+		reloading = true;
+		load = sc.loadSceneAsync(file, new SceneLoadListener() {
+			
+			@Override
+			public void progressed(double fraction) {
+			}
+			
+			@Override
+			public void finished(final Future<Scene> reload) {
+				SwingUtilities.invokeLater(new Runnable() {
+					
+					@Override
+					public void run() {
+						if (load == reload) {
+							reloading = false;
+						}
+						try {
+							reload.get();
+							screen.loadLight();
+						} catch (CancellationException e) {
+							//A newer reload replaced this one
+						} catch (InterruptedException e) {
+							//Not thrown, the load is finished
+						} catch (ExecutionException e) {
+							//The file may still be being written
+							System.err.println("Couldn't reload the scene: "
+									+e.getCause().getMessage());
+						}
+						screen.refresh();
+					}
+				});
+			}
+		});
+	}
+
 	/*
      * Initialize material property, light source, lighting model, and depth
      * buffer.
@@ -249,6 +432,16 @@ public class ScreenGL//
         gl.glEnable(GL2.GL_LIGHT0);
         gl.glEnable(GL2.GL_DEPTH_TEST);
         gl.glDepthFunc(GL.GL_LESS);
+        //
+        if (VertexBufferRenderer.isSupported(gl)) {
+        	renderer = new VertexBufferRenderer();
+        } else if (DisplayListRenderer.isSupported(gl)) {
+        	//Older contexts, with no or broken vertex buffer objects
+        	renderer = new DisplayListRenderer();
+        } else {
+        	renderer = null;
+        }
+        drawnScene = null;
     }
     
     public void display(GLAutoDrawable drawable) {
@@ -263,7 +456,7 @@ public class ScreenGL//
             if (camera != null) {
             	gl.glMatrixMode(GL2.GL_PROJECTION);
                 gl.glLoadIdentity();
-                glu.gluPerspective(camera.getFovy(), camera.getAspect(), 
+                perspective(camera.getFovy(), camera.getAspect(), 
                 		camera.getNear(), camera.getFar());
                 gl.glMatrixMode(GL2.GL_MODELVIEW);
                 
@@ -290,6 +483,7 @@ public class ScreenGL//
     	gl.glLoadIdentity();
     	glu.gluLookAt(eyex, eyey, eyez, centerx, 
     			centery, centerz, upx, upy, upz);
+    	updateFrustum();
     	//
         drawObjects();
         gl.glFlush();
@@ -340,43 +534,190 @@ public class ScreenGL//
 	private void drawObjects() {
 
         gl.glColor4d(1, 0, 0, 0);
-		ArrayList<Triangle> triangles = 
-				SceneController.getInstance().getScene().getTriangles();
-		for (Triangle t : triangles) {
-			gl.glBegin(GL2.GL_TRIANGLES);
-				for (Vertex v : t.getVertices()) {
-					gl.glNormal3d(v.getNormal().get(0), 
-							v.getNormal().get(1), 
-							v.getNormal().get(2));
-					gl.glVertex3d(v.getCoord(0), 
-							v.getCoord(1), v.getCoord(2));
+		//While a scene is loaded progressively, what is loaded so far is drawn
+		Scene scene = SceneController.getInstance().getLoadingScene();
+		if (scene == null) {
+			scene = SceneController.getInstance().getScene();
+		}
+		if (scene != drawnScene && renderer != null) {
+			//The copies of the meshes of the scene replaced are freed
+			renderer.retain(gl, scene.getMeshes());
+		}
+		drawnScene = scene;
+		for (Mesh mesh : scene.getMeshes()) {
+			int rangeCount = cull(mesh);
+			if (rangeCount == 0) {
+				continue;
+			}
+			if (renderer != null 
+					&& renderer.draw(gl, mesh, ranges, rangeCount)) {
+				continue;
+			}
+			if (mesh.isOffHeap()) {
+				drawDirectMesh((DirectMesh) mesh, rangeCount);
+			} else {
+				drawMesh(mesh, rangeCount);
+			}
+		}
+	}
+	
+	/**
+	 * Sets the projection with <code>gluPerspective</code>, keeping its 
+	 * parameters for the frustum.
+	 * @param fovy		The field of view, in degrees, in the y direction
+	 * @param aspect	The width of the view divided by its height
+	 * @param near		The distance from the eye to the near plane
+	 * @param far		The distance from the eye to the far plane
+	 */
+	private void perspective(double fovy, double aspect, double near, 
+			double far) {
+		glu.gluPerspective(fovy, aspect, near, far);
+		this.fovy = fovy;
+		this.aspect = aspect;
+		this.near = near;
+		this.far = far;
+	}
+	
+	/**
+	 * Builds the frustum of this frame from the parameters last given to 
+	 * <code>gluPerspective</code>, by the camera of the scene or by 
+	 * {@link #reshape(GLAutoDrawable, int, int, int, int)}, and to 
+	 * <code>gluLookAt</code>.
+	 */
+	private void updateFrustum() {
+		try {
+			frustum = Frustum.perspective(fovy, aspect, near, far, 
+					eyex, eyey, eyez, centerx, centery, centerz, 
+					upx, upy, upz);
+		} catch (IllegalArgumentException e) {
+			//Nothing is culled from a view volume which is empty
+			frustum = null;
+		}
+	}
+	
+	/**
+	 * Finds the triangles of an object which may be seen, as ranges of 
+	 * consecutive triangles put into {@link #ranges}. The clusters of 
+	 * an object still being loaded aren't known, so it is culled as a 
+	 * whole.
+	 * @param mesh The object
+	 * @return the number of ranges
+	 */
+	private int cull(Mesh mesh) {
+		int count = mesh.getTriangleCount();
+		int result = frustum == null || count == 0 ? Frustum.INSIDE : 
+				frustum.classify(mesh.getMin(), mesh.getMax());
+		if (result == Frustum.OUTSIDE || count == 0) {
+			return 0;
+		}
+		if (result == Frustum.INTERSECTS && mesh.hasNormals()) {
+			ClusterHierarchy clusters = mesh.getClusters();
+			if (ranges.length < 2*clusters.getClusterCount()) {
+				ranges = new int[2*clusters.getClusterCount()];
+			}
+			return clusters.cull(frustum, ranges);
+		}
+		ranges[0] = 0;
+		ranges[1] = count;
+		return 1;
+	}
+	
+	/**
+	 * Draws ranges of the triangles of an object stored off-heap 
+	 * published so far. Its buffers are handed to OpenGL as vertex 
+	 * arrays, without being copied, and the part of each range in each 
+	 * chunk of indices is drawn with a single call.
+	 * @param mesh			The object
+	 * @param rangeCount	The number of ranges in {@link #ranges}
+	 */
+	private void drawDirectMesh(DirectMesh mesh, int rangeCount) {
+		//Normals are only known once the object is loaded
+		FloatBuffer normals = mesh.getNormalBuffer();
+		int count = mesh.getTriangleCount();
+		gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		gl.glVertexPointer(3, GL.GL_FLOAT, 0, mesh.getPositionBuffer());
+		if (normals != null) {
+			gl.glEnableClientState(GL2.GL_NORMAL_ARRAY);
+			gl.glNormalPointer(GL.GL_FLOAT, 0, normals);
+		} else {
+			//Until then, it is lit as if it faced the eye
+			double dx = eyex - centerx;
+			double dy = eyey - centery;
+			double dz = eyez - centerz;
+			double length = Math.sqrt(dx*dx + dy*dy + dz*dz);
+			gl.glNormal3d(dx/length, dy/length, dz/length);
+		}
+		for (int r = 0; r < rangeCount; r++) {
+			int end = Math.min(ranges[2*r] + ranges[2*r+1], count);
+			int t = ranges[2*r];
+			while (t < end) {
+				int c = t/DirectMesh.CHUNK_TRIANGLES;
+				int offset = t - c*DirectMesh.CHUNK_TRIANGLES;
+				int triangles = Math.min(DirectMesh.CHUNK_TRIANGLES - offset, 
+						end - t);
+				IntBuffer chunk = mesh.getIndexChunk(c).duplicate();
+				chunk.position(3*offset);
+				gl.glDrawElements(GL2.GL_TRIANGLES, 3*triangles, 
+						GL.GL_UNSIGNED_INT, chunk);
+				t += triangles;
+			}
+		}
+		if (normals != null) {
+			gl.glDisableClientState(GL2.GL_NORMAL_ARRAY);
+		}
+		gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+	}
+	
+	/**
+	 * Draws ranges of the triangles of an object published so far, 
+	 * straight from its arrays.
+	 * @param mesh			The object
+	 * @param rangeCount	The number of ranges in {@link #ranges}
+	 */
+	private void drawMesh(Mesh mesh, int rangeCount) {
+		//Normals are only known once the object is loaded
+		double[] normals = mesh.getNormals();
+		int count = mesh.getTriangleCount();
+		int[] indices = mesh.getIndices();
+		double[] positions = mesh.getPositions();
+		double[] face = new double[3];
+		gl.glBegin(GL2.GL_TRIANGLES);
+		for (int r = 0; r < rangeCount; r++) {
+			int end = Math.min(ranges[2*r] + ranges[2*r+1], count);
+			for (int t = ranges[2*r]; t < end; t++) {
+				if (normals == null) {
+					mesh.faceNormal(t, face);
+					gl.glNormal3d(face[0], face[1], face[2]);
+				}
+				for (int i = 3*t; i < 3*t + 3; i++) {
+					int v = 3*indices[i];
+					if (normals != null) {
+						gl.glNormal3d(normals[v], normals[v+1], 
+								normals[v+2]);
+					}
+					gl.glVertex3d(positions[v], positions[v+1], 
+							positions[v+2]);
 				}
-			gl.glEnd();
+			}
 		}
+		gl.glEnd();
 	}
-
+	
 	private void calcRotation() {
     	if (distanceVector == null) {
     		return;
     	}
-    	Vertex oldCenter = new Vertex(new double[] {
-    			centerx, centery, centerz
-    	});
+    	double oldCenterx = centerx;
+    	double oldCentery = centery;
     	centerx += distanceVector.get(0);
     	centery += distanceVector.get(1);
-    	Vertex newCenter = new Vertex(new double[] {
-    			centerx, centery, centerz
-    	});
-    	Vector centerMov = newCenter.subtract(oldCenter);
     	
-    	Vector upVector = new Vector(new double[] {
-    			upx, upy, upz
-    	});
-    	Vector upMov = upVector.add(centerMov);
-    	upMov = upMov.normalize();
-    	upx = upMov.get(0);
-    	upy = upMov.get(1);
-    	upz = upMov.get(2);
+    	up.set(upx, upy, upz)
+    			.addInPlace(centerx - oldCenterx, centery - oldCentery, 0)
+    			.normalizeInPlace();
+    	upx = up.getX();
+    	upy = up.getY();
+    	upz = up.getZ();
     	
     	distanceVector = null;
     	
@@ -386,27 +727,15 @@ public class ScreenGL//
 		if (xMov == 0) {
 			return;
 		}
-		Vertex center = new Vertex(new double[] {
-				centerx, centery, centerz
-		});
-		Vertex eye = new Vertex(new double[] {
-				eyex, eyey, eyez
-		});
-		Vector N = center.subtract(eye);
-		N = N.normalize();
-		Vector up = new Vector(new double[] {
-				upx, upy, upz
-		});
-		Vector U = N.vectorProduct(up);
+		//U is the vector product of N, towards the center, and up
+		direction.set(centerx - eyex, centery - eyey, centerz - eyez)
+				.normalizeInPlace();
+		up.set(upx, upy, upz);
+		direction.setCross(direction, up);
 		if (xMov > 0) {
-			U = U.mult(-1.0);
+			direction.multInPlace(-1.0);
 		}
-		eyex += U.get(0);
-		eyey += U.get(1);
-		eyez += U.get(2);
-		centerx += U.get(0);
-		centery += U.get(1);
-		centerz += U.get(2);
+		moveCamera(direction);
 		
 		xMov = 0;
 	}
@@ -415,35 +744,36 @@ public class ScreenGL//
 		if (zMov == 0) {
 			return;
 		}
-		Vertex center = new Vertex(new double[] {
-				centerx, centery, centerz
-		});
-		Vertex eye = new Vertex(new double[] {
-				eyex, eyey, eyez
-		});
-		Vector dis = center.subtract(eye);
-		dis = dis.normalize();
+		direction.set(centerx - eyex, centery - eyey, centerz - eyez)
+				.normalizeInPlace();
 		if (zMov > 0) {
 			//Pressed S
-			dis = dis.mult(-1.0);
+			direction.multInPlace(-1.0);
 		}
-		
-		eyex += dis.get(0);
-		eyey += dis.get(1);
-		eyez += dis.get(2);
-		centerx += dis.get(0);
-		centery += dis.get(1);
-		centerz += dis.get(2);
+		moveCamera(direction);
 		
 		zMov = 0;
 	}
+	
+	/**
+	 * Moves both the eye and the center of the camera.
+	 * @param move How much to move them
+	 */
+	private void moveCamera(MutableVec3 move) {
+		eyex += move.getX();
+		eyey += move.getY();
+		eyez += move.getZ();
+		centerx += move.getX();
+		centery += move.getY();
+		centerz += move.getZ();
+	}
 
 	public void reshape(GLAutoDrawable drawable, int x, int y, int w, int h) {
         //
         gl.glViewport(0, 0, w, h);
         gl.glMatrixMode(GL2.GL_PROJECTION);
         gl.glLoadIdentity();
-        glu.gluPerspective(50, ((double) w)/h, 50, 10000);
+        perspective(50, ((double) w)/h, 50, 10000);
         gl.glMatrixMode(GL2.GL_MODELVIEW);
     }
     
@@ -495,6 +825,9 @@ public class ScreenGL//
     
     
     public void dispose(GLAutoDrawable drawable){
+    	if (renderer != null) {
+    		renderer.release(gl);
+    	}
     }
 
 	@Override
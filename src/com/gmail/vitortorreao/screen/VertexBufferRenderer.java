@@ -0,0 +1,221 @@
+package com.gmail.vitortorreao.screen;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+
+import com.gmail.vitortorreao.scene.Mesh;
+
+/**
+ * This class draws meshes from vertex buffer objects. The geometry of
+ * each mesh is uploaded to the graphics card once, its positions and
+ * normals interleaved as <code>float</code>s, and every frame each range
+ * of triangles drawn takes a single call.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class VertexBufferRenderer
+		extends MeshRenderer<VertexBufferRenderer.Buffers> {
+
+	/**
+	 * Number of <code>float</code>s of each vertex: its position, then
+	 * its normal
+	 */
+	private static final int FLOATS_PER_VERTEX = 6;
+
+	/**
+	 * Number of bytes of each vertex
+	 */
+	private static final int STRIDE = 4*FLOATS_PER_VERTEX;
+
+	/**
+	 * Number of vertices, or of triangles, copied at a time to the
+	 * graphics card, so that huge meshes don't need a copy as large as
+	 * themselves
+	 */
+	private static final int UPLOAD_BATCH = 1 << 16;
+
+	/**
+	 * Largest number of triangles drawn by a single call, whose count of
+	 * indices must fit in an <code>int</code>
+	 */
+	private static final int MAX_DRAWN_TRIANGLES = Integer.MAX_VALUE/3;
+
+	/**
+	 * The buffers of a mesh on the graphics card.
+	 */
+	static class Buffers extends MeshRenderer.Copy {
+
+		private int vertexBuffer;
+		private int indexBuffer;
+		private int triangleCount;
+
+	}
+
+	private FloatBuffer vertexBatch;
+	private IntBuffer indexBatch;
+
+	/**
+	 * Tells whether an OpenGL context can draw from vertex buffer objects,
+	 * which OpenGL has since version 1.5. Besides looking for the
+	 * functions, it uploads a small buffer, which some drivers which claim
+	 * to have them fail to do.
+	 * @param gl The OpenGL context
+	 * @return <code>true</code> if vertex buffer objects can be used
+	 */
+	public static boolean isSupported(GL gl) {
+		if (!gl.isFunctionAvailable("glGenBuffers")
+				|| !gl.isFunctionAvailable("glBindBuffer")
+				|| !gl.isFunctionAvailable("glBufferData")
+				|| !gl.isFunctionAvailable("glBufferSubData")
+				|| !gl.isFunctionAvailable("glDeleteBuffers")) {
+			return false;
+		}
+		clearErrors(gl);
+		int[] names = new int[1];
+		gl.glGenBuffers(1, names, 0);
+		if (names[0] == 0) {
+			return false;
+		}
+		FloatBuffer probe = ByteBuffer.allocateDirect(STRIDE)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, names[0]);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, STRIDE, probe, GL.GL_STATIC_DRAW);
+		gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, STRIDE, probe);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		gl.glDeleteBuffers(1, names, 0);
+		return gl.glGetError() == GL.GL_NO_ERROR;
+	}
+
+	@Override
+	protected Buffers copy(GL2 gl, Mesh mesh) {
+		Buffers b = new Buffers();
+		int[] names = new int[2];
+		gl.glGenBuffers(2, names, 0);
+		b.vertexBuffer = names[0];
+		b.indexBuffer = names[1];
+		upload(gl, mesh, b);
+		return b;
+	}
+
+	@Override
+	protected void draw(GL2 gl, Buffers b, int[] ranges, int rangeCount) {
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, b.vertexBuffer);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, b.indexBuffer);
+		gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL2.GL_NORMAL_ARRAY);
+		gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, 0);
+		gl.glNormalPointer(GL.GL_FLOAT, STRIDE, 12);
+		for (int r = 0; r < rangeCount; r++) {
+			long end = Math.min((long) ranges[2*r] + ranges[2*r+1],
+					b.triangleCount);
+			for (long first = ranges[2*r]; first < end;
+					first += MAX_DRAWN_TRIANGLES) {
+				int triangles = (int) Math.min(MAX_DRAWN_TRIANGLES,
+						end - first);
+				gl.glDrawElements(GL.GL_TRIANGLES, 3*triangles,
+						GL.GL_UNSIGNED_INT, 12*first);
+			}
+		}
+		gl.glDisableClientState(GL2.GL_NORMAL_ARRAY);
+		gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+		//Client-side vertex arrays can't be used while a buffer is bound
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Uploads the geometry of a mesh to its buffers, in batches. If the
+	 * graphics card runs out of memory, the buffers are emptied and
+	 * marked as failed.
+	 * @param gl	The OpenGL context
+	 * @param mesh	The mesh
+	 * @param b		The buffers of the mesh
+	 */
+	private void upload(GL2 gl, Mesh mesh, Buffers b) {
+		if (vertexBatch == null) {
+			vertexBatch = ByteBuffer.allocateDirect(STRIDE*UPLOAD_BATCH)
+					.order(ByteOrder.nativeOrder()).asFloatBuffer();
+			indexBatch = ByteBuffer.allocateDirect(12*UPLOAD_BATCH)
+					.order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		clearErrors(gl);
+
+		int vertices = mesh.getVertexCount();
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, b.vertexBuffer);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) STRIDE*vertices, null,
+				GL.GL_STATIC_DRAW);
+		for (int first = 0; first < vertices; first += UPLOAD_BATCH) {
+			int n = Math.min(UPLOAD_BATCH, vertices - first);
+			vertexBatch.clear();
+			for (int v = first; v < first + n; v++) {
+				for (int k = 0; k < 3; k++) {
+					vertexBatch.put((float) mesh.getCoord(v, k));
+				}
+				for (int k = 0; k < 3; k++) {
+					vertexBatch.put((float) mesh.getNormal(v, k));
+				}
+			}
+			vertexBatch.flip();
+			gl.glBufferSubData(GL.GL_ARRAY_BUFFER, (long) STRIDE*first,
+					(long) STRIDE*n, vertexBatch);
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+
+		int count = mesh.getTriangleCount();
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, b.indexBuffer);
+		gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, 12L*count, null,
+				GL.GL_STATIC_DRAW);
+		for (int first = 0; first < count; first += UPLOAD_BATCH) {
+			int n = Math.min(UPLOAD_BATCH, count - first);
+			indexBatch.clear();
+			for (int t = first; t < first + n; t++) {
+				for (int k = 0; k < 3; k++) {
+					indexBatch.put(mesh.getIndex(t, k));
+				}
+			}
+			indexBatch.flip();
+			gl.glBufferSubData(GL.GL_ELEMENT_ARRAY_BUFFER, 12L*first,
+					12L*n, indexBatch);
+		}
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		b.triangleCount = count;
+		b.failed = gl.glGetError() == GL.GL_OUT_OF_MEMORY;
+		if (b.failed) {
+			//Frees what was allocated
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, b.vertexBuffer);
+			gl.glBufferData(GL.GL_ARRAY_BUFFER, 0, null, GL.GL_STATIC_DRAW);
+			gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, b.indexBuffer);
+			gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, 0, null,
+					GL.GL_STATIC_DRAW);
+			gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		}
+	}
+
+	@Override
+	public void release(GL2 gl) {
+		super.release(gl);
+		vertexBatch = null;
+		indexBatch = null;
+	}
+
+	@Override
+	protected void delete(GL2 gl, Buffers b) {
+		gl.glDeleteBuffers(2, new int[] {b.vertexBuffer, b.indexBuffer}, 0);
+	}
+
+}
@@ -0,0 +1,294 @@
+package com.gmail.vitortorreao.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.gmail.vitortorreao.math.Frustum;
+import com.gmail.vitortorreao.scene.BoundingVolumeHierarchy;
+import com.gmail.vitortorreao.scene.Mesh;
+
+/**
+ * This class measures <code>BoundingVolumeHierarchy</code>: the time to
+ * build it on one thread and on all of them, and the throughput of its
+ * box, frustum and ray queries. The scene is half a fractal terrain and
+ * half triangles scattered in a cube, from a fixed seed, so that both
+ * even and uneven triangles are in it.
+ * <p>
+ * Every run is repeated a few times to warm the JVM up before it is
+ * measured, and the best and mean of the measured runs are printed. Before
+ * they are timed, the results of the first queries are checked against
+ * testing every triangle of the scene.
+ * <p>
+ * Usage: <code>java -Xmx8g
+ * com.gmail.vitortorreao.utils.HierarchyBenchmark [triangles ...]</code>.
+ * The default sizes are a million and ten million triangles.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class HierarchyBenchmark {
+
+	private static final int WARMUP_RUNS = 2;
+	private static final int RUNS = 3;
+
+	/**
+	 * Number of queries of each kind in a run
+	 */
+	private static final int QUERIES = 10000;
+
+	/**
+	 * Number of queries of each kind checked against every triangle
+	 */
+	private static final int CHECKED_QUERIES = 5;
+
+	/**
+	 * Holds the result of each run, so it can't be optimized away
+	 */
+	private static long sink;
+
+	/**
+	 * Something measured.
+	 */
+	private static abstract class Case {
+
+		private String name;
+
+		Case(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Does the work once.
+		 * @return a value depending on all of the results
+		 */
+		abstract long run();
+
+	}
+
+	/**
+	 * Warms a case up, measures it and prints the results.
+	 * @param c		The case
+	 * @param work	The number of triangles or queries of a run
+	 */
+	private static void measure(Case c, long work) {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			sink += c.run();
+		}
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		for (int i = 0; i < RUNS; i++) {
+			System.gc();
+			long start = System.nanoTime();
+			sink += c.run();
+			long elapsed = System.nanoTime() - start;
+			best = Math.min(best, elapsed);
+			total += elapsed;
+		}
+		System.out.printf("%-14s %10d %10.1f ms %14.0f %14.0f%n", c.name,
+				work, best / 1e6, work / (best / 1e9),
+				work * RUNS / (total / 1e9));
+	}
+
+	/**
+	 * Checks that two sets of triangles are the same.
+	 * @param kind		The kind of query
+	 * @param found		The triangles found by the hierarchy
+	 * @param expected	The triangles found by testing all of them
+	 */
+	private static void check(String kind, int[] found, int[] expected) {
+		Arrays.sort(found);
+		Arrays.sort(expected);
+		if (!Arrays.equals(found, expected)) {
+			throw new IllegalStateException(kind + " query found "
+					+ found.length + " triangles instead of " + expected.length);
+		}
+	}
+
+	/**
+	 * Returns the elements of a list.
+	 * @param list The list
+	 * @return the elements
+	 */
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Measures the building and the queries on a scene of about the given
+	 * size.
+	 * @param requested The number of triangles wanted
+	 */
+	private static void measureAll(int requested) {
+		MeshGenerator terrain = new MeshGenerator(MeshGenerator.Shape.TERRAIN,
+				Math.max(1, requested/2), 1);
+		MeshGenerator soup = new MeshGenerator(MeshGenerator.Shape.SOUP,
+				Math.max(1, requested/2), 2);
+		final List<Mesh> meshes = new ArrayList<Mesh>();
+		meshes.add(new Mesh(terrain.getPositions(), terrain.getIndices()));
+		meshes.add(new Mesh(soup.getPositions(), soup.getIndices()));
+		final int triangles = terrain.getTriangleCount()
+				+ soup.getTriangleCount();
+		terrain = null;
+		soup = null;
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = processors > 1 ? new int[] {1, processors}
+				: new int[] {1};
+		for (final int threads : threadCounts) {
+			final ForkJoinPool pool = new ForkJoinPool(threads);
+			measure(new Case("build " + threads) {
+				@Override
+				long run() {
+					return new BoundingVolumeHierarchy(meshes, pool)
+							.getNodeCount();
+				}
+			}, triangles);
+			pool.shutdown();
+		}
+		ForkJoinPool pool = new ForkJoinPool();
+		final BoundingVolumeHierarchy bvh =
+				new BoundingVolumeHierarchy(meshes, pool);
+		pool.shutdown();
+		System.out.printf("%d nodes, %d levels, cost %.1f%n",
+				bvh.getNodeCount(), bvh.getDepth(), bvh.getCost());
+
+		//The queries are spread over the bounds of the scene
+		final double[] box = new double[6];
+		Arrays.fill(box, 0, 3, Double.POSITIVE_INFINITY);
+		Arrays.fill(box, 3, 6, Double.NEGATIVE_INFINITY);
+		for (Mesh mesh : meshes) {
+			for (int k = 0; k < 3; k++) {
+				box[k] = Math.min(box[k], mesh.getMin().getCoord(k));
+				box[k+3] = Math.max(box[k+3], mesh.getMax().getCoord(k));
+			}
+		}
+		Random random = new Random(42);
+		final double[][] points = new double[QUERIES][6];
+		for (double[] p : points) {
+			for (int k = 0; k < 6; k++) {
+				p[k] = box[k % 3] + random.nextDouble()*(box[k % 3 + 3] - box[k % 3]);
+			}
+		}
+		//Boxes a hundredth of the width of the scene
+		final double size = (box[3] - box[0])/200;
+		//Frusta of 10 degrees, a quarter of the width of the scene deep,
+		//looking from a point to another
+		final Frustum[] frusta = new Frustum[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			double[] p = points[i];
+			frusta[i] = Frustum.perspective(10, 1, size, 50*size,
+					p[0], p[1], p[2], p[3], p[4], p[5], 0, 0, 1);
+		}
+
+		double[] bounds = new double[6];
+		double[] distance = new double[1];
+		for (int q = 0; q < CHECKED_QUERIES; q++) {
+			double[] p = points[q];
+			List<Integer> inBox = new ArrayList<Integer>();
+			List<Integer> inFrustum = new ArrayList<Integer>();
+			int nearest = -1;
+			double nearestDistance = Double.POSITIVE_INFINITY;
+			for (int t = 0; t < triangles; t++) {
+				bvh.getBounds(t, bounds);
+				if (bounds[0] <= p[0] + size && bounds[1] <= p[1] + size
+						&& bounds[2] <= p[2] + size && bounds[3] >= p[0] - size
+						&& bounds[4] >= p[1] - size && bounds[5] >= p[2] - size) {
+					inBox.add(t);
+				}
+				if (frusta[q].classify(bounds[0], bounds[1], bounds[2],
+						bounds[3], bounds[4], bounds[5]) != Frustum.OUTSIDE) {
+					inFrustum.add(t);
+				}
+				double d = bvh.intersect(t, p[0], p[1], p[2],
+						p[3] - p[0], p[4] - p[1], p[5] - p[2]);
+				if (d < nearestDistance) {
+					nearestDistance = d;
+					nearest = t;
+				}
+			}
+			check("box", bvh.findInBox(p[0] - size, p[1] - size, p[2] - size,
+					p[0] + size, p[1] + size, p[2] + size), toArray(inBox));
+			check("frustum", bvh.findInFrustum(frusta[q]), toArray(inFrustum));
+			distance[0] = Double.POSITIVE_INFINITY;
+			int hit = bvh.intersectRay(p[0], p[1], p[2],
+					p[3] - p[0], p[4] - p[1], p[5] - p[2], distance);
+			if (nearest >= 0 && distance[0] != nearestDistance
+					|| nearest < 0 && hit >= 0) {
+				throw new IllegalStateException("ray query hit triangle "
+						+ hit + " instead of " + nearest);
+			}
+		}
+
+		measure(new Case("box") {
+			@Override
+			long run() {
+				long found = 0;
+				for (double[] p : points) {
+					found += bvh.findInBox(p[0] - size, p[1] - size, p[2] - size,
+							p[0] + size, p[1] + size, p[2] + size).length;
+				}
+				return found;
+			}
+		}, QUERIES);
+		measure(new Case("frustum") {
+			@Override
+			long run() {
+				long found = 0;
+				for (Frustum frustum : frusta) {
+					found += bvh.findInFrustum(frustum).length;
+				}
+				return found;
+			}
+		}, QUERIES);
+		measure(new Case("ray") {
+			@Override
+			long run() {
+				long hits = 0;
+				double[] distance = new double[1];
+				for (double[] p : points) {
+					distance[0] = Double.POSITIVE_INFINITY;
+					hits += bvh.intersectRay(p[0], p[1], p[2],
+							p[3] - p[0], p[4] - p[1], p[5] - p[2], distance);
+				}
+				return hits;
+			}
+		}, QUERIES);
+	}
+
+	public static void main(String[] args) {
+		int[] sizes = {1000000, 10000000};
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.println(System.getProperty("java.vm.name") + " "
+				+ System.getProperty("java.version") + ", "
+				+ Runtime.getRuntime().availableProcessors() + " cpus, "
+				+ Runtime.getRuntime().maxMemory() / (1 << 20) + " MB heap");
+		System.out.printf("%-14s %10s %13s %14s %14s%n", "case", "work",
+				"best", "best /s", "mean /s");
+		for (int size : sizes) {
+			measureAll(size);
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.gmail.vitortorreao.utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.gmail.vitortorreao.scene.Mesh;
+import com.gmail.vitortorreao.scene.NonConformantSceneFile;
+import com.gmail.vitortorreao.scene.Scene;
+import com.gmail.vitortorreao.scene.SceneController;
+
+/**
+ * This class checks that importing an .obj file only takes the camera
+ * and light from the .byu file next to it, even when that file has
+ * objects too. It writes an empty .obj file and one with a triangle,
+ * each with a .byu file holding a camera and a square, with and without
+ * a light, to a temporary directory. It imports them one object at a
+ * time and in parallel, and checks that the scene has the camera and
+ * only the objects of the .obj file.
+ * <p>
+ * Usage: <code>java com.gmail.vitortorreao.utils.ImportCheck</code>.
+ * It throws an <code>IllegalStateException</code> at the first wrong
+ * scene.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class ImportCheck {
+
+	private static final String CAMERA =
+			"0 -500 500\n"
+			+ "0 1 -1\n"
+			+ "0 -1 -1\n"
+			+ "50 1 50 10000\n";
+
+	private static final String LIGHT =
+			"60 5 -10\n"
+			+ "0.2 0.2 0.2 1\n"
+			+ "1 1 1 1\n"
+			+ "1 1 1 1\n"
+			+ "0.1 0.1 0.1 1\n"
+			+ "0.8 0.2 0.2 1\n"
+			+ "1 1 1 1\n"
+			+ "0 0 0 1\n"
+			+ "20\n";
+
+	private static final String SQUARE =
+			"4 2\n"
+			+ "0 0 0\n"
+			+ "1 0 0\n"
+			+ "1 1 0\n"
+			+ "0 1 0\n"
+			+ "1 2 3\n"
+			+ "1 3 4\n";
+
+	private static final String TRIANGLE =
+			"v 0 0 0\n"
+			+ "v 1 0 0\n"
+			+ "v 0 1 0\n"
+			+ "f 1 2 3\n";
+
+	/**
+	 * Writes a file.
+	 * @param file		The file
+	 * @param contents	What to write in it
+	 * @throws IOException If the file can't be written
+	 */
+	private static void write(File file, String contents)
+			throws IOException {
+		Writer w = new FileWriter(file);
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Imports an .obj file and checks the scene.
+	 * @param obj		The .obj file
+	 * @param triangles	The number of triangles of the .obj file
+	 * @param light		Whether the .byu file has a light
+	 * @param parallel	Whether to parse in parallel
+	 * @throws IOException If a file can't be read
+	 * @throws NonConformantSceneFile If a file is malformed
+	 */
+	private static void check(File obj, int triangles, boolean light,
+			boolean parallel) throws IOException, NonConformantSceneFile {
+		SceneController sc = SceneController.getInstance();
+		sc.setParallel(parallel);
+		sc.loadScene(obj);
+		Scene scene = sc.getScene();
+		int found = 0;
+		for (Mesh mesh : scene.getMeshes()) {
+			found += mesh.getTriangleCount();
+		}
+		if (scene.getCamera() == null || light && scene.getLight() == null
+				|| found != triangles) {
+			throw new IllegalStateException(obj.getName()
+					+ (parallel ? " in parallel" : "") + " has "
+					+ (scene.getCamera() == null ? "no" : "a") + " camera, "
+					+ (scene.getLight() == null ? "no" : "a") + " light and "
+					+ found + " triangles instead of " + triangles);
+		}
+		System.out.println(obj.getName() + (parallel ? " in parallel" : "")
+				+ ": camera and " + found + " triangles");
+	}
+
+	public static void main(String[] args)
+			throws IOException, NonConformantSceneFile {
+		File directory = File.createTempFile("import", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Could not create " + directory);
+		}
+		SceneController.getInstance().setCacheEnabled(false);
+		String[] sidecars = {CAMERA + SQUARE, CAMERA + LIGHT + SQUARE};
+		//A file without objects keeps the objects of the scene, so the
+		//empty ones are imported first, while there are none
+		String[] objs = {"", TRIANGLE};
+		for (int o = 0; o < objs.length; o++) {
+			for (int s = 0; s < sidecars.length; s++) {
+				String name = (s == 0 ? "camera" : "light")
+						+ (o == 0 ? "-empty" : "");
+				File obj = new File(directory, name + ".obj");
+				File byu = new File(directory, name + ".byu");
+				write(obj, objs[o]);
+				write(byu, sidecars[s]);
+				try {
+					check(obj, o == 0 ? 0 : 1, s == 1, false);
+					check(obj, o == 0 ? 0 : 1, s == 1, true);
+				} finally {
+					obj.delete();
+					byu.delete();
+				}
+			}
+		}
+		directory.delete();
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.gmail.vitortorreao.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import com.gmail.vitortorreao.scene.NonConformantSceneFile;
+import com.gmail.vitortorreao.scene.SceneController;
+
+/**
+ * This class compares the ways <code>SceneController</code> can read a
+ * .byu file. It writes synthetic grid meshes of the requested sizes to a
+ * temporary directory and loads each of them through a stream,
+ * memory-mapped, and memory-mapped with parallel parsing, printing the
+ * time taken and the throughput.
+ * <p>
+ * Usage: <code>java -Xmx8g com.gmail.vitortorreao.utils.LoadBenchmark
+ * [sizeInMB ...]</code>. The default sizes are 100 MB and 1 GB.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class LoadBenchmark {
+
+	private static final int RUNS = 3;
+
+	/**
+	 * Approximate number of bytes written per vertex of the grid,
+	 * counting its line and the lines of its two triangles.
+	 */
+	private static final int BYTES_PER_VERTEX = 70;
+
+	/**
+	 * Writes a square grid mesh of roughly the given size.
+	 * @param file	The file to write
+	 * @param bytes	The approximate size of the file
+	 * @throws IOException If the file can't be written
+	 */
+	public static void writeGrid(File file, long bytes) throws IOException {
+		writeSquareGrid(file, (int) Math.sqrt(bytes / BYTES_PER_VERTEX));
+	}
+
+	/**
+	 * Writes a square grid mesh of <code>n</code> by <code>n</code> cells,
+	 * two triangles each, with random heights from a seed of <code>n</code>.
+	 * @param file	The file to write
+	 * @param n		The number of cells along each side
+	 * @throws IOException If the file can't be written
+	 */
+	public static void writeSquareGrid(File file, int n) throws IOException {
+		Random random = new Random(n);
+		BufferedWriter w = new BufferedWriter(new FileWriter(file), 1 << 16);
+		try {
+			w.write((n+1)*(n+1) + " " + 2*n*n + "\n");
+			for (int i = 0; i <= n; i++) {
+				for (int j = 0; j <= n; j++) {
+					w.write(i + ".5 " + j + ".25 "
+							+ random.nextInt(100000) / 1000.0 + "\n");
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					int a = i*(n+1) + j + 1;
+					int c = a + n + 1;
+					w.write(a + " " + (a+1) + " " + (c+1) + "\n");
+					w.write(a + " " + (c+1) + " " + c + "\n");
+				}
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Loads a file a few times and prints the best time.
+	 * @param file		The file to load
+	 * @param mapped	Whether the file should be memory-mapped
+	 * @param parallel	Whether the objects should be parsed in parallel
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file is malformed
+	 */
+	private static void time(File file, boolean mapped, boolean parallel)
+			throws IOException, NonConformantSceneFile {
+		SceneController sc = SceneController.getInstance();
+		sc.setMemoryMapped(mapped);
+		sc.setParallel(parallel);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			System.gc();
+			long start = System.nanoTime();
+			sc.loadScene(file);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		double seconds = best / 1e9;
+		System.out.printf("%-8s %-10s %8.1f MB %10.1f ms %8.1f MB/s%n",
+				mapped ? "mapped" : "stream",
+				parallel ? "parallel" : "sequential", file.length() / 1e6,
+				best / 1e6, file.length() / 1e6 / seconds);
+	}
+
+	public static void main(String[] args)
+			throws IOException, NonConformantSceneFile {
+		long[] sizes = {100, 1024};
+		if (args.length > 0) {
+			sizes = new long[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Long.parseLong(args[i]);
+			}
+		}
+		for (long size : sizes) {
+			File file = File.createTempFile("grid", ".byu");
+			try {
+				writeGrid(file, size << 20);
+				time(file, false, false);
+				time(file, true, false);
+				time(file, true, true);
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+}
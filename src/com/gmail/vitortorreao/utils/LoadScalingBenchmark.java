@@ -0,0 +1,101 @@
+package com.gmail.vitortorreao.utils;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.gmail.vitortorreao.scene.NonConformantSceneFile;
+import com.gmail.vitortorreao.scene.SceneController;
+
+/**
+ * This class checks that the time <code>SceneController</code> takes to
+ * load a .byu file grows linearly with the size of the mesh. It writes
+ * grid meshes with 1, 2 and 4 times as many triangles to a temporary
+ * directory, loads each of them a few times, and prints the best time
+ * and its ratio to the time of the smallest grid.
+ * <p>
+ * Usage: <code>java com.gmail.vitortorreao.utils.LoadScalingBenchmark
+ * [cellsPerSide]</code>. The smallest grid has <code>cellsPerSide</code>
+ * by <code>cellsPerSide</code> cells, 300 by default. It throws an
+ * <code>IllegalStateException</code> if loading 4 times as many triangles
+ * takes more than 8 times as long, as a quadratic pass would take 16.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class LoadScalingBenchmark {
+
+	private static final int WARMUP = 2;
+
+	private static final int RUNS = 5;
+
+	private static final double[] SCALES = {1, 2, 4};
+
+	/**
+	 * The largest ratio of the time of the largest grid to the time of the
+	 * smallest one, per ratio of their triangles, taken as linear.
+	 */
+	private static final double MAX_RATIO = 2;
+
+	/**
+	 * Loads a file a few times and returns the best time.
+	 * @param file	The file to load
+	 * @return The best time, in nanoseconds
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file is malformed
+	 */
+	private static long time(File file)
+			throws IOException, NonConformantSceneFile {
+		SceneController sc = SceneController.getInstance();
+		for (int i = 0; i < WARMUP; i++) {
+			sc.loadScene(file);
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			System.gc();
+			long start = System.nanoTime();
+			sc.loadScene(file);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	public static void main(String[] args)
+			throws IOException, NonConformantSceneFile {
+		int cells = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		SceneController sc = SceneController.getInstance();
+		sc.setCacheEnabled(false);
+		long[] triangles = new long[SCALES.length];
+		long[] times = new long[SCALES.length];
+		for (int i = 0; i < SCALES.length; i++) {
+			int n = (int) Math.round(cells * Math.sqrt(SCALES[i]));
+			triangles[i] = 2L*n*n;
+			File file = File.createTempFile("grid", ".byu");
+			try {
+				LoadBenchmark.writeSquareGrid(file, n);
+				times[i] = time(file);
+			} finally {
+				file.delete();
+			}
+			System.out.printf("%4.0fx %10d triangles %10.1f ms %6.2fx time "
+					+ "%6.2fx per triangle%n", SCALES[i], triangles[i],
+					times[i] / 1e6, (double) times[i] / times[0],
+					(double) times[i] / times[0] * triangles[0] / triangles[i]);
+		}
+		int last = SCALES.length - 1;
+		double ratio = (double) times[last] / times[0]
+				* triangles[0] / triangles[last];
+		if (ratio > MAX_RATIO) {
+			throw new IllegalStateException("Loading " + triangles[last]
+					+ " triangles took " + ratio + " times as long per "
+					+ "triangle as loading " + triangles[0]);
+		}
+	}
+
+}
@@ -0,0 +1,589 @@
+package com.gmail.vitortorreao.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import com.gmail.vitortorreao.math.Vector;
+import com.gmail.vitortorreao.math.Vertex;
+import com.gmail.vitortorreao.scene.Camera;
+import com.gmail.vitortorreao.scene.Light;
+import com.gmail.vitortorreao.scene.Mesh;
+import com.gmail.vitortorreao.scene.Scene;
+
+/**
+ * This class generates synthetic objects with any number of triangles,
+ * to test loading and drawing at scale. The same shape, number of
+ * triangles and seed always give the very same object.
+ * <p>
+ * Objects can be written to a .byu file, after a camera and a light which
+ * frame them, or turned straight into a <code>Scene</code>, so benchmarks
+ * can skip the disk.
+ * <p>
+ * Usage: <code>java com.gmail.vitortorreao.utils.MeshGenerator
+ * shape triangles seed file</code>, where the shape is one of
+ * <code>sphere</code>, <code>grid</code>, <code>terrain</code> and
+ * <code>soup</code>. Files whose names end in <code>.gz</code> are
+ * compressed.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class MeshGenerator {
+
+	/**
+	 * The shapes which can be generated.
+	 */
+	public enum Shape {
+		/** A tessellated sphere, slightly bumpy */
+		SPHERE,
+		/** A flat grid, with slightly jittered heights */
+		GRID,
+		/** A grid with heights from fractal noise */
+		TERRAIN,
+		/** Unconnected triangles scattered in a cube */
+		SOUP
+	}
+
+	/**
+	 * Half of the width of the generated objects
+	 */
+	private static final double EXTENT = 100;
+
+	/**
+	 * Number of octaves of the terrain's noise
+	 */
+	private static final int OCTAVES = 5;
+
+	private Shape shape;
+	private long seed;
+	private Random random;
+	private double[] positions;
+	private int[] indices;
+	private int numVertices;
+	private int numTriangles;
+
+	/**
+	 * Generates an object.
+	 * @param shape		The shape of the object
+	 * @param triangles	The number of triangles of the object
+	 * @param seed		The seed of the random numbers used
+	 */
+	public MeshGenerator(Shape shape, int triangles, long seed) {
+		if (triangles < 1) {
+			throw new IllegalArgumentException("An object must have at "
+					+ "least 1 triangle, but "+triangles+" were requested");
+		}
+		this.shape = shape;
+		this.seed = seed;
+		this.random = new Random(seed);
+		switch (shape) {
+		case SPHERE:
+			sphere(triangles);
+			break;
+		case GRID:
+		case TERRAIN:
+			grid(triangles, shape == Shape.TERRAIN);
+			break;
+		case SOUP:
+			soup(triangles);
+			break;
+		}
+		removeUnusedVertices();
+		this.random = null;
+	}
+
+	/**
+	 * Returns the shape of the object.
+	 * @return the shape
+	 */
+	public Shape getShape() {
+		return shape;
+	}
+
+	/**
+	 * Returns the coordinates of the vertices of the object.
+	 * @return the coordinates, three per vertex
+	 */
+	public double[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Returns the 0-based indices of the vertices of each triangle.
+	 * @return the indices, three per triangle
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Returns the number of vertices of the object.
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return numVertices;
+	}
+
+	/**
+	 * Returns the number of triangles of the object.
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return numTriangles;
+	}
+
+	/**
+	 * Generates a sphere, tessellated into rings of quads between two
+	 * caps of triangles. Its radius varies slightly from vertex to vertex.
+	 * If the number of triangles doesn't close the sphere, the last ring
+	 * is left open.
+	 * @param triangles The number of triangles
+	 */
+	private void sphere(int triangles) {
+		int bands = (int) Math.ceil(Math.sqrt(triangles / 4.0)) + 1;
+		int slices = Math.max(3, 2*bands);
+		int rings = bands - 1;
+		start(2 + rings*slices, triangles);
+		int north = addVertex(0, 0, radius());
+		for (int r = 1; r <= rings; r++) {
+			double phi = Math.PI * r / bands;
+			for (int s = 0; s < slices; s++) {
+				double theta = 2*Math.PI * s / slices;
+				double radius = radius();
+				addVertex(radius * Math.sin(phi) * Math.cos(theta),
+						radius * Math.sin(phi) * Math.sin(theta),
+						radius * Math.cos(phi));
+			}
+		}
+		int south = addVertex(0, 0, -radius());
+		for (int s = 0; s < slices; s++) {
+			addTriangle(north, 1 + s, 1 + (s+1) % slices);
+		}
+		for (int r = 0; r < rings - 1; r++) {
+			for (int s = 0; s < slices; s++) {
+				int a = 1 + r*slices + s;
+				int b = 1 + r*slices + (s+1) % slices;
+				addTriangle(a, a + slices, b + slices);
+				addTriangle(a, b + slices, b);
+			}
+		}
+		int last = 1 + (rings-1)*slices;
+		for (int s = 0; s < slices; s++) {
+			addTriangle(last + s, south, last + (s+1) % slices);
+		}
+	}
+
+	/**
+	 * Returns the radius of the next vertex of a sphere.
+	 * @return the radius
+	 */
+	private double radius() {
+		return EXTENT * (1 + 0.02*(random.nextDouble() - 0.5));
+	}
+
+	/**
+	 * Generates a grid of square cells, two triangles each, as close to
+	 * a square as the number of triangles allows.
+	 * @param triangles	The number of triangles
+	 * @param terrain	<code>true</code> for heights from fractal noise,
+	 * 					<code>false</code> for a slightly jittered plane
+	 */
+	private void grid(int triangles, boolean terrain) {
+		int columns = Math.max(1, (int) Math.ceil(Math.sqrt(triangles / 2.0)));
+		int rows = (int) Math.ceil(triangles / (2.0*columns));
+		double spacing = 2*EXTENT / columns;
+		start((rows+1)*(columns+1), triangles);
+		for (int i = 0; i <= rows; i++) {
+			for (int j = 0; j <= columns; j++) {
+				double x = j*spacing - EXTENT;
+				double y = i*spacing - EXTENT;
+				double z = terrain ?
+						EXTENT/2 * noise(x / EXTENT, y / EXTENT) :
+						spacing/10 * (random.nextDouble() - 0.5);
+				addVertex(x, y, z);
+			}
+		}
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				int a = i*(columns+1) + j;
+				int c = a + columns + 1;
+				addTriangle(a, a + 1, c + 1);
+				addTriangle(a, c + 1, c);
+			}
+		}
+	}
+
+	/**
+	 * Generates unconnected triangles scattered in a cube, each with
+	 * vertices of its own.
+	 * @param triangles The number of triangles
+	 */
+	private void soup(int triangles) {
+		double size = 2*EXTENT / Math.cbrt(triangles);
+		start(3*triangles, triangles);
+		for (int t = 0; t < triangles; t++) {
+			double x = EXTENT * (2*random.nextDouble() - 1);
+			double y = EXTENT * (2*random.nextDouble() - 1);
+			double z = EXTENT * (2*random.nextDouble() - 1);
+			int first = numVertices;
+			for (int k = 0; k < 3; k++) {
+				addVertex(x + size * (random.nextDouble() - 0.5),
+						y + size * (random.nextDouble() - 0.5),
+						z + size * (random.nextDouble() - 0.5));
+			}
+			addTriangle(first, first + 1, first + 2);
+		}
+	}
+
+	/**
+	 * Fractal value noise, the sum of a few octaves of smoothly
+	 * interpolated random values on a lattice.
+	 * @param x The first coordinate of the point
+	 * @param y The second coordinate of the point
+	 * @return the noise, between -1 and 1
+	 */
+	private double noise(double x, double y) {
+		double sum = 0;
+		double amplitude = 0.5;
+		double frequency = 2;
+		for (int o = 0; o < OCTAVES; o++) {
+			sum += amplitude * valueNoise(x * frequency, y * frequency, o);
+			amplitude /= 2;
+			frequency *= 2;
+		}
+		return sum;
+	}
+
+	/**
+	 * One octave of value noise.
+	 * @param x			The first coordinate of the point
+	 * @param y			The second coordinate of the point
+	 * @param octave	The octave, so each has its own random values
+	 * @return the noise, between -1 and 1
+	 */
+	private double valueNoise(double x, double y, int octave) {
+		long ix = (long) Math.floor(x);
+		long iy = (long) Math.floor(y);
+		double fx = smooth(x - ix);
+		double fy = smooth(y - iy);
+		double v00 = lattice(ix, iy, octave);
+		double v10 = lattice(ix + 1, iy, octave);
+		double v01 = lattice(ix, iy + 1, octave);
+		double v11 = lattice(ix + 1, iy + 1, octave);
+		double v0 = v00 + (v10 - v00)*fx;
+		double v1 = v01 + (v11 - v01)*fx;
+		return v0 + (v1 - v0)*fy;
+	}
+
+	/**
+	 * Eases the interpolation between lattice points.
+	 * @param t The fraction of the way between the points
+	 * @return the eased fraction
+	 */
+	private static double smooth(double t) {
+		return t*t*(3 - 2*t);
+	}
+
+	/**
+	 * Returns the random value of a lattice point, mixed out of the
+	 * seed and the point's coordinates.
+	 * @param ix		The first coordinate of the point
+	 * @param iy		The second coordinate of the point
+	 * @param octave	The octave
+	 * @return the value, between -1 and 1
+	 */
+	private double lattice(long ix, long iy, int octave) {
+		long h = seed ^ (ix * 0x9E3779B97F4A7C15L) ^ (iy * 0xC2B2AE3D27D4EB4FL)
+				^ (octave * 0x165667B19E3779F9L);
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		return (h >>> 11) * 0x1.0p-52 - 1;
+	}
+
+	/**
+	 * Allocates the arrays of an object.
+	 * @param vertices	The number of vertices
+	 * @param triangles	The number of triangles
+	 */
+	private void start(int vertices, int triangles) {
+		positions = new double[3*vertices];
+		indices = new int[3*triangles];
+		numVertices = 0;
+		numTriangles = 0;
+	}
+
+	/**
+	 * Adds a vertex to the object.
+	 * @param x The first coordinate of the vertex
+	 * @param y The second coordinate of the vertex
+	 * @param z The third coordinate of the vertex
+	 * @return the index of the vertex
+	 */
+	private int addVertex(double x, double y, double z) {
+		positions[3*numVertices] = x;
+		positions[3*numVertices+1] = y;
+		positions[3*numVertices+2] = z;
+		return numVertices++;
+	}
+
+	/**
+	 * Adds a triangle to the object, unless it already has all of
+	 * the triangles requested.
+	 * @param a The index of the first vertex
+	 * @param b The index of the second vertex
+	 * @param c The index of the third vertex
+	 */
+	private void addTriangle(int a, int b, int c) {
+		if (3*numTriangles == indices.length) {
+			return;
+		}
+		indices[3*numTriangles] = a;
+		indices[3*numTriangles+1] = b;
+		indices[3*numTriangles+2] = c;
+		numTriangles++;
+	}
+
+	/**
+	 * Removes the vertices left out of every triangle, when the number
+	 * of triangles requested didn't complete the shape.
+	 */
+	private void removeUnusedVertices() {
+		int[] remap = new int[numVertices];
+		for (int i = 0; i < 3*numTriangles; i++) {
+			remap[indices[i]] = 1;
+		}
+		int used = 0;
+		for (int i = 0; i < numVertices; i++) {
+			if (remap[i] == 0) {
+				continue;
+			}
+			System.arraycopy(positions, 3*i, positions, 3*used, 3);
+			remap[i] = used++;
+		}
+		for (int i = 0; i < 3*numTriangles; i++) {
+			indices[i] = remap[indices[i]];
+		}
+		if (used < numVertices || 3*numVertices < positions.length) {
+			double[] trimmed = new double[3*used];
+			System.arraycopy(positions, 0, trimmed, 0, trimmed.length);
+			positions = trimmed;
+		}
+		numVertices = used;
+	}
+
+	/**
+	 * Creates a <code>Camera</code> which looks down at some objects
+	 * from above their front, with all of them in view.
+	 * @param objects The objects
+	 * @return the camera
+	 */
+	public static Camera frame(MeshGenerator... objects) {
+		double[] min = {
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY
+		};
+		double[] max = {
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY
+		};
+		for (MeshGenerator object : objects) {
+			double[] ps = object.positions;
+			for (int i = 0; i < ps.length; i++) {
+				min[i % 3] = Math.min(min[i % 3], ps[i]);
+				max[i % 3] = Math.max(max[i % 3], ps[i]);
+			}
+		}
+		double radius = 0;
+		double[] center = new double[3];
+		for (int k = 0; k < 3; k++) {
+			center[k] = (min[k] + max[k]) / 2;
+			radius = Math.max(radius, (max[k] - min[k]) / 2);
+		}
+		double distance = 2.5*Math.max(radius, 1);
+		Vertex eye = new Vertex(new double[] {
+				center[0],
+				center[1] - distance,
+				center[2] + distance
+		});
+		Vector n = new Vector(new double[] {0, 1, -1});
+		Vector v = new Vector(new double[] {0, 1, 1});
+		return new Camera(eye, n, v, 50, 1, distance / 100, distance * 4);
+	}
+
+	/**
+	 * Creates a white <code>Light</code> above a <code>Camera</code>,
+	 * over a reddish material.
+	 * @param camera The camera
+	 * @return the light
+	 */
+	public static Light light(Camera camera) {
+		float[] position = new float[3];
+		for (int k = 0; k < 3; k++) {
+			position[k] = (float) camera.getFocus().getCoord(k);
+		}
+		position[2] += (float) camera.getFar() / 8;
+		return new Light(
+				new float[] {0.2f, 0.2f, 0.2f, 1},
+				new float[] {1, 1, 1, 1},
+				new float[] {1, 1, 1, 1},
+				new float[] {0.1f, 0.1f, 0.1f, 1},
+				new float[] {0.8f, 0.2f, 0.2f, 1},
+				new float[] {1, 1, 1, 1},
+				new float[] {0, 0, 0, 1},
+				20, position);
+	}
+
+	/**
+	 * Builds a <code>Scene</code> out of some objects, with the same
+	 * camera and light they would have if written to a file.
+	 * @param objects The objects
+	 * @return the scene
+	 */
+	public static Scene toScene(MeshGenerator... objects) {
+		Camera camera = frame(objects);
+		Scene scene = new Scene(camera);
+		scene.setLight(light(camera));
+		for (MeshGenerator object : objects) {
+			scene.addMesh(object.toMesh());
+		}
+		return scene;
+	}
+
+	/**
+	 * Builds the <code>Mesh</code> of this object, with the normals of
+	 * its vertices.
+	 * @return the mesh
+	 */
+	public Mesh toMesh() {
+		Mesh mesh = new Mesh(positions, indices);
+		mesh.calculateNormals();
+		return mesh;
+	}
+
+	/**
+	 * Writes some objects to a .byu file, after a camera and a light which
+	 * frame them. The file is compressed if its name ends in
+	 * <code>.gz</code>.
+	 * @param file		The file to write
+	 * @param objects	The objects
+	 * @throws IOException If the file can't be written
+	 */
+	public static void write(File file, MeshGenerator... objects)
+			throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			out = new GZIPOutputStream(out, 1 << 16);
+		}
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, "US-ASCII"),
+				1 << 16);
+		try {
+			Camera camera = frame(objects);
+			writeCamera(w, camera);
+			writeLight(w, light(camera));
+			for (MeshGenerator object : objects) {
+				object.write(w);
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Writes this object, with its header, its vertices and its polygons.
+	 * The last index of each polygon is negative.
+	 * @param w The writer
+	 * @throws IOException If the file can't be written
+	 */
+	private void write(Writer w) throws IOException {
+		w.write(numVertices + " " + numTriangles + "\n");
+		for (int i = 0; i < numVertices; i++) {
+			w.write(positions[3*i] + " " + positions[3*i+1] + " "
+					+ positions[3*i+2] + "\n");
+		}
+		for (int t = 0; t < numTriangles; t++) {
+			w.write((indices[3*t] + 1) + " " + (indices[3*t+1] + 1) + " "
+					+ -(indices[3*t+2] + 1) + "\n");
+		}
+	}
+
+	/**
+	 * Writes the lines of a <code>Camera</code>, as read by
+	 * <code>SceneController</code>.
+	 * @param w			The writer
+	 * @param camera	The camera
+	 * @throws IOException If the file can't be written
+	 */
+	private static void writeCamera(Writer w, Camera camera)
+			throws IOException {
+		Vertex c = camera.getFocus();
+		w.write(c.getCoord(0) + " " + c.getCoord(1) + " " + c.getCoord(2)
+				+ "\n");
+		writeVector(w, camera.getN());
+		writeVector(w, camera.getV());
+		w.write(camera.getFovy() + " " + camera.getAspect() + " "
+				+ camera.getNear() + " " + camera.getFar() + "\n");
+	}
+
+	/**
+	 * Writes a vector in a line of its own.
+	 * @param w The writer
+	 * @param v The vector
+	 * @throws IOException If the file can't be written
+	 */
+	private static void writeVector(Writer w, Vector v) throws IOException {
+		w.write(v.get(0) + " " + v.get(1) + " " + v.get(2) + "\n");
+	}
+
+	/**
+	 * Writes the lines of a <code>Light</code>, as read by
+	 * <code>SceneController</code>.
+	 * @param w		The writer
+	 * @param light	The light
+	 * @throws IOException If the file can't be written
+	 */
+	private static void writeLight(Writer w, Light light) throws IOException {
+		float[] p = light.getpL();
+		w.write(p[0] + " " + p[1] + " " + p[2] + "\n");
+		float[][] colors = {
+				light.getiAmb(), light.getiDiffuse(), light.getiSpecular(),
+				light.getmAmb(), light.getmDiffuse(), light.getmSpecular(),
+				light.getmEmissive()
+		};
+		for (float[] color : colors) {
+			w.write(color[0] + " " + color[1] + " " + color[2] + " "
+					+ color[3] + "\n");
+		}
+		w.write(light.getN() + "\n");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err.println("Usage: MeshGenerator "
+					+ "sphere|grid|terrain|soup triangles seed file");
+			System.exit(1);
+		}
+		MeshGenerator object = new MeshGenerator(
+				Shape.valueOf(args[0].toUpperCase()),
+				Integer.parseInt(args[1]), Long.parseLong(args[2]));
+		write(new File(args[3]), object);
+		System.out.println(object.getShape() + ": "
+				+ object.getVertexCount() + " vertices, "
+				+ object.getTriangleCount() + " triangles");
+	}
+
+}
@@ -0,0 +1,277 @@
+package com.gmail.vitortorreao.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import com.gmail.vitortorreao.scene.BYUTokenizer;
+import com.gmail.vitortorreao.scene.Mesh;
+import com.gmail.vitortorreao.scene.NonConformantSceneFile;
+import com.gmail.vitortorreao.scene.PolygonTriangulator;
+import com.gmail.vitortorreao.scene.SceneController;
+
+/**
+ * This class measures each stage of loading a .byu file on its own:
+ * parsing, building the mesh, calculating the normals, and the whole
+ * of <code>SceneController.loadScene</code>. For each size of grid mesh
+ * requested, it prints the throughput of every stage in triangles per
+ * second, and how much it allocates, per triangle and per second.
+ * <p>
+ * Every stage is run a few times to warm the JVM up before it is measured.
+ * Runs which would be too short to time are repeated. The grids come from
+ * a fixed seed and everything runs on the calling thread, so allocations
+ * are counted exactly by the thread's allocation counter, and results are
+ * comparable from one run of the benchmark to the next.
+ * <p>
+ * Usage: <code>java -Xmx8g com.gmail.vitortorreao.utils.PipelineBenchmark
+ * [triangles ...]</code>. The default sizes go from a thousand to ten
+ * million triangles.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class PipelineBenchmark {
+
+	private static final int WARMUP_RUNS = 3;
+	private static final int RUNS = 5;
+
+	/**
+	 * Minimum number of triangles processed by each measured run
+	 */
+	private static final long MIN_TRIANGLES_PER_RUN = 1000000;
+
+	/**
+	 * Holds the result of each run, so it can't be optimized away
+	 */
+	private static Object sink;
+
+	/**
+	 * One of the stages of loading a file.
+	 */
+	private static abstract class Stage {
+
+		private String name;
+
+		Stage(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Runs the stage once.
+		 * @return the result of the stage
+		 * @throws IOException If the file can't be read
+		 * @throws NonConformantSceneFile If the file is malformed
+		 */
+		abstract Object run() throws IOException, NonConformantSceneFile;
+
+	}
+
+	/**
+	 * The coordinates and triangle indices of an object, as parsed.
+	 */
+	private static class Geometry {
+
+		private double[] positions;
+		private int[] indices;
+
+	}
+
+	/**
+	 * Parses the single object of a .byu file, without forming triangles.
+	 * @param file The file
+	 * @return the parsed object
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file is malformed
+	 */
+	private static Geometry parse(File file)
+			throws IOException, NonConformantSceneFile {
+		BYUTokenizer t = new BYUTokenizer(new FileInputStream(file));
+		try {
+			t.nextLine();
+			int numVertices = t.getInt(0);
+			int numPolygons = t.getInt(1);
+			Geometry g = new Geometry();
+			g.positions = new double[3*numVertices];
+			for (int i = 0; i < numVertices; i++) {
+				t.nextLine();
+				SceneController.parseVertex(t, g.positions, i);
+			}
+			PolygonTriangulator polygons =
+					new PolygonTriangulator(numVertices, numPolygons);
+			while (polygons.getPolygonCount() < numPolygons && t.nextLine()) {
+				polygons.readLine(t, numPolygons);
+			}
+			g.indices = polygons.toArray();
+			return g;
+		} finally {
+			t.close();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the current thread.
+	 * @return the number of bytes, or -1 if the JVM doesn't count them
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads =
+				ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean counter =
+					(com.sun.management.ThreadMXBean) threads;
+			if (counter.isThreadAllocatedMemorySupported()
+					&& counter.isThreadAllocatedMemoryEnabled()) {
+				return counter.getThreadAllocatedBytes(
+						Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of garbage collections so far.
+	 * @return the number of collections
+	 */
+	private static long collections() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(gc.getCollectionCount(), 0);
+		}
+		return count;
+	}
+
+	/**
+	 * Warms a stage up, measures it and prints the results.
+	 * @param stage		The stage
+	 * @param triangles	The number of triangles the stage processes
+	 * @throws IOException If the file can't be read
+	 * @throws NonConformantSceneFile If the file is malformed
+	 */
+	private static void measure(Stage stage, long triangles)
+			throws IOException, NonConformantSceneFile {
+		long repetitions = Math.max(1, MIN_TRIANGLES_PER_RUN / triangles);
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			sink = stage.run();
+		}
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		long allocated = 0;
+		long gcs = 0;
+		for (int i = 0; i < RUNS; i++) {
+			sink = null;
+			System.gc();
+			long gcsBefore = collections();
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			for (long r = 0; r < repetitions; r++) {
+				sink = stage.run();
+			}
+			long elapsed = System.nanoTime() - start;
+			allocated += allocatedBytes() - allocatedBefore;
+			gcs += collections() - gcsBefore;
+			best = Math.min(best, elapsed);
+			total += elapsed;
+		}
+		double processed = (double) triangles * repetitions;
+		double bestRate = processed / (best / 1e9);
+		double meanRate = processed * RUNS / (total / 1e9);
+		if (allocatedBytes() < 0) {
+			System.out.printf("%-10s %10d %14.0f %14.0f %12s %12s %6d%n",
+					stage.name, triangles, bestRate, meanRate, "n/a", "n/a",
+					gcs);
+		} else {
+			System.out.printf("%-10s %10d %14.0f %14.0f %12.1f %12.1f %6d%n",
+					stage.name, triangles, bestRate, meanRate,
+					allocated / (processed * RUNS),
+					allocated / 1e6 / (total / 1e9), gcs);
+		}
+	}
+
+	/**
+	 * Measures every stage on a grid mesh of about the given size.
+	 * @param requested The number of triangles wanted
+	 * @throws IOException If the file can't be written or read
+	 * @throws NonConformantSceneFile If the file is malformed
+	 */
+	private static void measureAll(long requested)
+			throws IOException, NonConformantSceneFile {
+		int n = Math.max(1, (int) Math.ceil(Math.sqrt(requested / 2.0)));
+		long triangles = 2L*n*n;
+		final File file = File.createTempFile("grid", ".byu");
+		try {
+			LoadBenchmark.writeSquareGrid(file, n);
+			measure(new Stage("parse") {
+				@Override
+				Object run() throws IOException, NonConformantSceneFile {
+					return parse(file);
+				}
+			}, triangles);
+
+			final Geometry g = parse(file);
+			measure(new Stage("mesh") {
+				@Override
+				Object run() {
+					return new Mesh(g.positions, g.indices);
+				}
+			}, triangles);
+
+			final Mesh mesh = new Mesh(g.positions, g.indices);
+			measure(new Stage("normals") {
+				@Override
+				Object run() {
+					mesh.calculateNormals();
+					return mesh.getNormals();
+				}
+			}, triangles);
+
+			final SceneController sc = SceneController.getInstance();
+			measure(new Stage("load") {
+				@Override
+				Object run() throws IOException, NonConformantSceneFile {
+					sc.loadScene(file);
+					return sc.getScene();
+				}
+			}, triangles);
+		} finally {
+			file.delete();
+		}
+	}
+
+	public static void main(String[] args)
+			throws IOException, NonConformantSceneFile {
+		long[] sizes = {1000, 10000, 100000, 1000000, 10000000};
+		if (args.length > 0) {
+			sizes = new long[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Long.parseLong(args[i]);
+			}
+		}
+		//Everything must run on this thread for allocations to be counted
+		SceneController sc = SceneController.getInstance();
+		sc.setMemoryMapped(false);
+		sc.setParallel(false);
+		sc.setProgressive(false);
+		sc.setWelding(false);
+		sc.setCacheEnabled(false);
+		System.out.println(System.getProperty("java.vm.name") + " "
+				+ System.getProperty("java.version") + ", "
+				+ Runtime.getRuntime().availableProcessors() + " cpus, "
+				+ Runtime.getRuntime().maxMemory() / (1 << 20) + " MB heap");
+		System.out.printf("%-10s %10s %14s %14s %12s %12s %6s%n", "stage",
+				"triangles", "best tri/s", "mean tri/s", "B/triangle",
+				"alloc MB/s", "gcs");
+		for (long size : sizes) {
+			measureAll(size);
+		}
+	}
+
+}
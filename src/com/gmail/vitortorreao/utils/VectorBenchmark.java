@@ -0,0 +1,260 @@
+package com.gmail.vitortorreao.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.gmail.vitortorreao.math.MutableVec3;
+import com.gmail.vitortorreao.math.Vec3;
+import com.gmail.vitortorreao.math.Vector;
+import com.gmail.vitortorreao.math.Vertex;
+
+/**
+ * This class compares <code>Vector</code> with <code>Vec3</code> and
+ * <code>MutableVec3</code> on the work of the hot paths which use them:
+ * the normals of triangles, accumulated on their vertices, and the
+ * distance of points to the camera, by which triangles are sorted.
+ * For each implementation, it prints the time per triangle or point,
+ * and how much it allocates per triangle or point.
+ * <p>
+ * Every implementation is run a few times to warm the JVM up before it
+ * is measured, on the same random data from a fixed seed. Everything
+ * runs on the calling thread, so allocations are counted exactly by the
+ * thread's allocation counter.
+ * <p>
+ * Usage: <code>java com.gmail.vitortorreao.utils.VectorBenchmark
+ * [triangles]</code>. By default, a million triangles are used.
+ * <p>
+ * This code is available through the
+ * <a href="http://www.gnu.org/licenses/gpl-2.0.html">GNU GPL v2.0</a> license.
+ * <br>
+ * You can acess the full project at
+ * <a href="https://github.com/vitordeatorreao/bcgproject1">GitHub</a>.
+ * @author	<a href="https://github.com/vitordeatorreao/">V&iacute;tor de
+ * 			Albuquerque Torre&atilde;o</a>
+ * @version 1.0
+ * @since 1.0
+ */
+public class VectorBenchmark {
+
+	private static final int WARMUP_RUNS = 5;
+	private static final int RUNS = 10;
+
+	/**
+	 * Holds the result of each run, so it can't be optimized away
+	 */
+	private static double sink;
+
+	/**
+	 * One of the implementations of the work measured.
+	 */
+	private static abstract class Case {
+
+		private String name;
+
+		Case(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Does the work once.
+		 * @return a value depending on all of the results
+		 */
+		abstract double run();
+
+	}
+
+	private static int numTriangles;
+	private static double[] positions;
+	private static Vertex[] vertices;
+	private static Vector[] vectors;
+	private static Vec3[] vec3s;
+	private static double[] normals;
+
+	/**
+	 * Creates the triangles, as points in each of the representations.
+	 * @param triangles The number of triangles
+	 */
+	private static void createData(int triangles) {
+		numTriangles = triangles;
+		Random random = new Random(42);
+		positions = new double[9*triangles];
+		vertices = new Vertex[3*triangles];
+		vectors = new Vector[3*triangles];
+		vec3s = new Vec3[3*triangles];
+		for (int i = 0; i < vertices.length; i++) {
+			double[] coords = {
+					random.nextDouble(), random.nextDouble(),
+					random.nextDouble()
+			};
+			System.arraycopy(coords, 0, positions, 3*i, 3);
+			vertices[i] = new Vertex(coords);
+			vectors[i] = new Vector(coords);
+			vec3s[i] = new Vec3(coords[0], coords[1], coords[2]);
+		}
+		normals = new double[9*triangles];
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the current thread.
+	 * @return the number of bytes, or -1 if the JVM doesn't count them
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads =
+				ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean counter =
+					(com.sun.management.ThreadMXBean) threads;
+			if (counter.isThreadAllocatedMemorySupported()
+					&& counter.isThreadAllocatedMemoryEnabled()) {
+				return counter.getThreadAllocatedBytes(
+						Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Warms an implementation up, measures it and prints the results.
+	 * @param c		The implementation
+	 * @param items	The number of triangles or points it processes
+	 */
+	private static void measure(Case c, long items) {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			sink += c.run();
+		}
+		long best = Long.MAX_VALUE;
+		long allocated = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			sink += c.run();
+			best = Math.min(best, System.nanoTime() - start);
+			allocated += allocatedBytes() - allocatedBefore;
+		}
+		if (allocatedBytes() < 0) {
+			System.out.printf("%-24s %10.2f %12s%n", c.name,
+					(double) best / items, "n/a");
+		} else {
+			System.out.printf("%-24s %10.2f %12.1f%n", c.name,
+					(double) best / items, (double) allocated / RUNS / items);
+		}
+	}
+
+	/**
+	 * Measures every implementation of the normals of the triangles,
+	 * accumulated on their vertices.
+	 */
+	private static void measureNormals() {
+		measure(new Case("normals Vector") {
+			@Override
+			double run() {
+				Vector sum = new Vector(new double[3]);
+				for (int t = 0; t < numTriangles; t++) {
+					Vector a = vertices[3*t+1].subtract(vertices[3*t]);
+					Vector b = vertices[3*t+2].subtract(vertices[3*t]);
+					Vector n = a.vectorProduct(b).normalize();
+					sum = sum.add(n);
+				}
+				return sum.getNorm();
+			}
+		}, numTriangles);
+		measure(new Case("normals Vec3") {
+			@Override
+			double run() {
+				Vec3 sum = Vec3.ZERO;
+				for (int t = 0; t < numTriangles; t++) {
+					Vec3 a = vec3s[3*t+1].sub(vec3s[3*t]);
+					Vec3 b = vec3s[3*t+2].sub(vec3s[3*t]);
+					sum = sum.add(a.cross(b).normalize());
+				}
+				return sum.getNorm();
+			}
+		}, numTriangles);
+		measure(new Case("normals MutableVec3") {
+			private MutableVec3 a = new MutableVec3();
+			private MutableVec3 b = new MutableVec3();
+			private MutableVec3 sum = new MutableVec3();
+
+			@Override
+			double run() {
+				sum.set(0, 0, 0);
+				for (int t = 0; t < numTriangles; t++) {
+					int i = 9*t;
+					a.set(positions[i+3] - positions[i],
+							positions[i+4] - positions[i+1],
+							positions[i+5] - positions[i+2]);
+					b.set(positions[i+6] - positions[i],
+							positions[i+7] - positions[i+1],
+							positions[i+8] - positions[i+2]);
+					sum.addInPlace(a.setCross(a, b).normalizeInPlace());
+				}
+				return sum.getNorm();
+			}
+		}, numTriangles);
+	}
+
+	/**
+	 * Measures every implementation of the distance of the points to the
+	 * camera's focus.
+	 */
+	private static void measureDistances() {
+		final Vertex focus = new Vertex(new double[] {0.5, -10, 10});
+		measure(new Case("distance Vector") {
+			@Override
+			double run() {
+				double sum = 0;
+				for (Vertex v : vertices) {
+					sum += v.subtract(focus).getNorm();
+				}
+				return sum;
+			}
+		}, vertices.length);
+		measure(new Case("distance Vec3") {
+			@Override
+			double run() {
+				Vec3 f = Vec3.fromVertex(focus);
+				double sum = 0;
+				for (Vec3 v : vec3s) {
+					sum += v.sub(f).getNorm();
+				}
+				return sum;
+			}
+		}, vertices.length);
+		measure(new Case("distance MutableVec3") {
+			private MutableVec3 d = new MutableVec3();
+
+			@Override
+			double run() {
+				double sum = 0;
+				for (int i = 0; i < positions.length; i += 3) {
+					sum += d.set(positions[i], positions[i+1],
+							positions[i+2])
+							.addInPlace(-focus.getCoord(0),
+									-focus.getCoord(1), -focus.getCoord(2))
+							.getNorm();
+				}
+				return sum;
+			}
+		}, vertices.length);
+	}
+
+	public static void main(String[] args) {
+		int triangles = 1000000;
+		if (args.length > 0) {
+			triangles = Integer.parseInt(args[0]);
+		}
+		createData(triangles);
+		System.out.println(System.getProperty("java.vm.name") + " "
+				+ System.getProperty("java.version") + ", "
+				+ triangles + " triangles");
+		System.out.printf("%-24s %10s %12s%n", "case", "ns/item",
+				"B/item");
+		measureNormals();
+		measureDistances();
+		//Keeps the results alive
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+}